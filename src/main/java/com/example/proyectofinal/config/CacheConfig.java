@@ -0,0 +1,15 @@
+package com.example.proyectofinal.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String PERFUMES = "perfumes";
+    public static final String CATEGORIAS = "categorias";
+    public static final String NOTAS_OLFATIVAS = "notasOlfativas";
+
+    // Tamaño y TTL se configuran en application.properties (spring.cache.caffeine.spec)
+}
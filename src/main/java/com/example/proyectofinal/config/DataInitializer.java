@@ -14,8 +14,10 @@ import com.example.proyectofinal.repository.CategoriaRepository;
 import com.example.proyectofinal.repository.NotaOlfativaRepository;
 import com.example.proyectofinal.repository.PerfumeRepository;
 import com.example.proyectofinal.service.UsuarioService;
+import lombok.extern.slf4j.Slf4j;
 
 @Component
+@Slf4j
 public class DataInitializer implements CommandLineRunner {
 
     @Autowired
@@ -33,6 +35,11 @@ public class DataInitializer implements CommandLineRunner {
     @Override
     @Transactional
     public void run(String... args) throws Exception {
+        // Con una base de datos persistente los datos de ejemplo solo se cargan la primera vez
+        if (categoriaRepository.count() > 0) {
+            log.info("La base de datos ya tiene datos, se omite la inicialización");
+            return;
+        }
         try {
             // Crear categorías
             Categoria categoria1 = new Categoria();
@@ -219,10 +226,9 @@ public class DataInitializer implements CommandLineRunner {
             usuario.setRol("USUARIO");
             usuarioService.save(usuario);
             
-            System.out.println("Inicialización de datos completada con éxito");
+            log.info("Inicialización de datos completada con éxito");
         } catch (Exception e) {
-            System.err.println("Error al inicializar datos: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al inicializar datos: {}", e.getMessage(), e);
         }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.example.proyectofinal.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+    // Tareas periódicas: escritura diferida de carritos (CarritoMemoriaService), limpieza de
+    // carritos (LimpiezaCarritosService) y bandeja de salida del checkout (BandejaSalidaService)
+}
@@ -42,8 +42,8 @@ public class SecurityConfig {
             "http://localhost:5179", "http://localhost:5180"
         ));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
-        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Cache-Control", "Content-Type"));
-        configuration.setExposedHeaders(Arrays.asList("Authorization", "Content-Type"));
+        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Cache-Control", "Content-Type", "X-Correlation-Id", "Idempotency-Key"));
+        configuration.setExposedHeaders(Arrays.asList("Authorization", "Content-Type", "X-Correlation-Id", "Idempotent-Replayed"));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
         
@@ -7,8 +7,10 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import lombok.extern.slf4j.Slf4j;
 
 @Configuration
+@Slf4j
 public class StaticResourceConfig implements WebMvcConfigurer {
 
     @Value("${upload.dir}")
@@ -29,8 +31,8 @@ public class StaticResourceConfig implements WebMvcConfigurer {
                 .setCachePeriod(86400) // Cache por 1 día
                 .resourceChain(true);
         
-        System.out.println("Configuración de recursos estáticos cargada.");
-        System.out.println("Directorio de uploads: " + uploadAbsolutePath);
-        System.out.println("Path absoluto para imágenes: " + Paths.get(uploadAbsolutePath).toAbsolutePath().toString());
+        log.info("Configuración de recursos estáticos cargada.");
+        log.info("Directorio de uploads: {}", uploadAbsolutePath);
+        log.info("Path absoluto para imágenes: {}", Paths.get(uploadAbsolutePath).toAbsolutePath().toString());
     }
 } 
\ No newline at end of file
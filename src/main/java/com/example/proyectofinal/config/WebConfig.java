@@ -35,8 +35,8 @@ public class WebConfig implements WebMvcConfigurer {
                     "http://127.0.0.1:5175"
                 )
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH")
-                .allowedHeaders("Origin", "Content-Type", "Accept", "Authorization", "X-Requested-With")
-                .exposedHeaders("Authorization", "Content-Type")
+                .allowedHeaders("Origin", "Content-Type", "Accept", "Authorization", "X-Requested-With", "X-Correlation-Id")
+                .exposedHeaders("Authorization", "Content-Type", "Content-Disposition", "X-Correlation-Id")
                 .allowCredentials(true)
                 .maxAge(3600);
         
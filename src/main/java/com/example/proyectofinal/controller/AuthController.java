@@ -15,6 +15,7 @@ import org.springframework.web.bind.annotation.RestController;
 import com.example.proyectofinal.dto.LoginDTO;
 import com.example.proyectofinal.model.Usuario;
 import com.example.proyectofinal.service.UsuarioService;
+import lombok.extern.slf4j.Slf4j;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -22,6 +23,7 @@ import com.example.proyectofinal.service.UsuarioService;
                         "http://localhost:5176", "http://localhost:5177", "http://localhost:5178", 
                         "http://localhost:5179", "http://localhost:5180"}, 
              allowCredentials = "true")
+@Slf4j
 public class AuthController {
 
     @Autowired
@@ -31,7 +33,7 @@ public class AuthController {
     public ResponseEntity<?> login(@RequestBody LoginDTO loginDTO) {
         try {
             // Registrar la solicitud para depuración
-            System.out.println("Intento de login para: " + loginDTO.getCorreo());
+            log.debug("Intento de login para: {}", loginDTO.getCorreo());
             
             // Verificar credenciales
             if (loginDTO.getCorreo() == null || loginDTO.getContrasena() == null) {
@@ -45,7 +47,7 @@ public class AuthController {
                 loginDTO.getCorreo(), loginDTO.getContrasena());
             
             if (!credencialesValidas) {
-                System.out.println("Credenciales inválidas para: " + loginDTO.getCorreo());
+                log.debug("Credenciales inválidas para: {}", loginDTO.getCorreo());
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of(
                     "mensaje", "Credenciales incorrectas"
                 ));
@@ -66,12 +68,11 @@ public class AuthController {
             respuesta.put("correo", usuario.getCorreo());
             respuesta.put("rol", usuario.getRol());
             
-            System.out.println("Login exitoso para: " + loginDTO.getCorreo());
+            log.debug("Login exitoso para: {}", loginDTO.getCorreo());
             return ResponseEntity.ok(respuesta);
             
         } catch (Exception e) {
-            System.err.println("Error en login: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error en login: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
                 "mensaje", "Error interno del servidor",
                 "error", e.getMessage()
@@ -83,7 +84,7 @@ public class AuthController {
     public ResponseEntity<?> register(@RequestBody Usuario usuario) {
         try {
             // Registrar la solicitud para depuración
-            System.out.println("Intento de registro para: " + usuario.getCorreo());
+            log.debug("Intento de registro para: {}", usuario.getCorreo());
             
             // Validar datos básicos
             if (usuario.getNombre() == null || usuario.getCorreo() == null || usuario.getContrasena() == null) {
@@ -94,7 +95,7 @@ public class AuthController {
             
             // Verificar si el correo ya existe
             if (usuarioService.findByCorreo(usuario.getCorreo()).isPresent()) {
-                System.out.println("Correo ya existe: " + usuario.getCorreo());
+                log.debug("Correo ya existe: {}", usuario.getCorreo());
                 return ResponseEntity.badRequest().body(Map.of(
                     "mensaje", "Este correo ya está registrado"
                 ));
@@ -119,12 +120,11 @@ public class AuthController {
             respuesta.put("correo", nuevoUsuario.getCorreo());
             respuesta.put("rol", nuevoUsuario.getRol());
             
-            System.out.println("Registro exitoso para: " + usuario.getCorreo());
+            log.debug("Registro exitoso para: {}", usuario.getCorreo());
             return ResponseEntity.status(HttpStatus.CREATED).body(respuesta);
             
         } catch (Exception e) {
-            System.err.println("Error en registro: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error en registro: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
                 "mensaje", "Error interno del servidor",
                 "error", e.getMessage()
@@ -0,0 +1,47 @@
+package com.example.proyectofinal.controller;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.proyectofinal.service.BandejaSalidaService;
+
+@RestController
+@RequestMapping("/api/bandeja-salida")
+public class BandejaSalidaController {
+
+    @Autowired
+    private BandejaSalidaService bandejaSalidaService;
+
+    @GetMapping
+    public ResponseEntity<?> getEstadisticas() {
+        return ResponseEntity.ok(bandejaSalidaService.getEstadisticas());
+    }
+
+    // Tareas que agotaron sus reintentos, de la más reciente a la más antigua
+    @GetMapping("/fallidos")
+    public ResponseEntity<?> getFallidos(@RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(bandejaSalidaService.getFallidos(Math.max(1, Math.min(limit, 500))));
+    }
+
+    @PostMapping("/{id}/reintentar")
+    public ResponseEntity<?> reintentar(@PathVariable Long id) {
+        if (!bandejaSalidaService.reintentar(id)) {
+            Map<String, String> response = new HashMap<>();
+            response.put("message", "No hay ninguna tarea fallida con ID: " + id);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        Map<String, String> response = new HashMap<>();
+        response.put("message", "Tarea ID: " + id + " en cola de nuevo");
+        return ResponseEntity.ok(response);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.proyectofinal.controller;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.proyectofinal.service.CatalogoCacheService;
+
+@RestController
+@RequestMapping("/api/cache")
+public class CacheController {
+
+    @Autowired
+    private CatalogoCacheService catalogoCacheService;
+
+    @GetMapping
+    public ResponseEntity<?> getEstadisticas() {
+        return ResponseEntity.ok(catalogoCacheService.getEstadisticas());
+    }
+
+    @DeleteMapping
+    public ResponseEntity<?> invalidarTodo() {
+        catalogoCacheService.invalidarTodo();
+        Map<String, String> response = new HashMap<>();
+        response.put("message", "Cachés del catálogo invalidadas");
+        return ResponseEntity.ok(response);
+    }
+}
@@ -5,24 +5,34 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.proyectofinal.dto.CambiosCarritoDTO;
+import com.example.proyectofinal.dto.ResumenCarritoDTO;
 import com.example.proyectofinal.model.Carrito;
 import com.example.proyectofinal.model.DetalleCarrito;
 import com.example.proyectofinal.model.Factura;
 import com.example.proyectofinal.model.Usuario;
+import com.example.proyectofinal.service.CarritoMemoriaService;
 import com.example.proyectofinal.service.CarritoService;
+import com.example.proyectofinal.service.IdempotenciaService;
 import com.fasterxml.jackson.annotation.JsonView;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
 
 @RestController
 @RequestMapping("/api/carrito")
@@ -30,44 +40,30 @@ import java.util.Map;
                        "http://localhost:5176", "http://localhost:5177", "http://localhost:5178", 
                        "http://localhost:5179", "http://localhost:5180"}, 
              allowCredentials = "true")
+@Slf4j
 public class CarritoController {
 
     @Autowired
     private CarritoService carritoService;
+
+    // Solo existe con carrito.memoria.enabled=true; entonces atiende todas las operaciones del carrito
+    @Autowired(required = false)
+    private CarritoMemoriaService carritoMemoriaService;
+
+    @Autowired
+    private IdempotenciaService idempotenciaService;
     
     @GetMapping
     public ResponseEntity<?> getCarrito(@RequestParam Long usuarioId) {
         try {
-            System.out.println("Obteniendo carrito para usuario ID: " + usuarioId);
-            Carrito carrito = carritoService.getCarritoActivo(usuarioId);
-            
-            // Crear un mapa con los datos necesarios para evitar ciclos de referencia
-            Map<String, Object> carritoResponse = new HashMap<>();
-            carritoResponse.put("id", carrito.getId());
-            
-            // Crear un objeto simplificado de usuario para evitar ciclos
-            Map<String, Object> usuarioSimple = new HashMap<>();
-            Usuario usuario = carrito.getUsuario();
-            usuarioSimple.put("id", usuario.getId());
-            usuarioSimple.put("nombre", usuario.getNombre());
-            usuarioSimple.put("correo", usuario.getCorreo());
-            usuarioSimple.put("rol", usuario.getRol());
-            carritoResponse.put("usuario", usuarioSimple);
-            
-            carritoResponse.put("fechaCreacion", carrito.getFechaCreacion());
-            carritoResponse.put("estado", carrito.getEstado());
-            
-            // Añadir detalles sin ciclos de referencia
-            if (carrito.getDetalles() != null) {
-                carritoResponse.put("detalles", carrito.getDetalles());
-            } else {
-                carritoResponse.put("detalles", new ArrayList<>());
-            }
+            log.debug("Obteniendo carrito para usuario ID: {}", usuarioId);
+            Carrito carrito = carritoMemoriaService != null
+                    ? carritoMemoriaService.getCarritoActivo(usuarioId)
+                    : carritoService.getCarritoActivo(usuarioId);
             
-            return ResponseEntity.ok(carritoResponse);
+            return ResponseEntity.ok(respuestaCarrito(carrito));
         } catch (Exception e) {
-            System.err.println("Error al obtener carrito: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al obtener carrito: {}", e.getMessage(), e);
             
             Map<String, String> response = new HashMap<>();
             response.put("message", "Error al obtener el carrito: " + e.getMessage());
@@ -75,18 +71,82 @@ public class CarritoController {
         }
     }
     
+    // Conflictos de concurrencia en las modificaciones del carrito y reintentos hechos
+    @GetMapping("/concurrencia")
+    public ResponseEntity<?> getEstadisticasConcurrencia() {
+        return ResponseEntity.ok(carritoService.getEstadisticasConcurrencia());
+    }
+    
+    /**
+     * Número de artículos y total del carrito activo leídos de la fila del carrito, sin cargar
+     * las líneas. Pensado para el contador de la cabecera, que se consulta en cada página.
+     */
+    @GetMapping("/resumen")
+    public ResponseEntity<?> getResumen(@RequestParam Long usuarioId) {
+        try {
+            ResumenCarritoDTO resumen = carritoMemoriaService != null
+                    ? carritoMemoriaService.getResumen(usuarioId)
+                    : carritoService.getResumen(usuarioId);
+            return ResponseEntity.ok(resumen);
+        } catch (Exception e) {
+            log.error("Error al obtener resumen del carrito: {}", e.getMessage(), e);
+            
+            Map<String, String> response = new HashMap<>();
+            response.put("message", "Error al obtener el resumen del carrito: " + e.getMessage());
+            return ResponseEntity.status(500).body(response);
+        }
+    }
+    
+    /**
+     * Aplica en una transacción una lista ordenada de cambios y devuelve el carrito resultante:
+     * {"usuarioId": 1, "operaciones": [{"tipo": "AGREGAR", "perfumeId": 2, "cantidad": 1},
+     * {"tipo": "ACTUALIZAR", "detalleId": 5, "cantidad": 3}, {"tipo": "ELIMINAR", "detalleId": 7}]}.
+     * Si una operación falla no se aplica ninguna.
+     */
+    @PatchMapping
+    public ResponseEntity<?> aplicarOperaciones(@RequestBody CambiosCarritoDTO cambios) {
+        try {
+            if (cambios.getUsuarioId() == null || cambios.getOperaciones() == null) {
+                Map<String, String> response = new HashMap<>();
+                response.put("message", "Faltan los campos 'usuarioId' u 'operaciones'");
+                return ResponseEntity.badRequest().body(response);
+            }
+            
+            Carrito carrito = carritoMemoriaService != null
+                    ? carritoMemoriaService.aplicarOperaciones(cambios.getUsuarioId(), cambios.getOperaciones())
+                    : carritoService.aplicarOperaciones(cambios.getUsuarioId(), cambios.getOperaciones());
+            return ResponseEntity.ok(respuestaCarrito(carrito));
+        } catch (IllegalArgumentException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            log.error("Error al aplicar operaciones al carrito: {}", e.getMessage(), e);
+            
+            Map<String, String> response = new HashMap<>();
+            response.put("message", "Error al aplicar operaciones al carrito: " + e.getMessage());
+            return ResponseEntity.status(500).body(response);
+        }
+    }
+    
     @PostMapping("/items")
     public ResponseEntity<?> agregarItem(@RequestBody Map<String, Object> requestData) {
         try {
             Long usuarioId = Long.valueOf(requestData.get("usuarioId").toString());
-            Long perfumeId = Long.valueOf(requestData.get("perfumeId").toString());
-            Integer cantidad = Integer.valueOf(requestData.get("cantidad").toString());
+            // Si faltan, los valida el servicio y se responde 400
+            Long perfumeId = requestData.get("perfumeId") != null ? Long.valueOf(requestData.get("perfumeId").toString()) : null;
+            Integer cantidad = requestData.get("cantidad") != null ? Integer.valueOf(requestData.get("cantidad").toString()) : null;
             
-            DetalleCarrito detalle = carritoService.agregarItem(usuarioId, perfumeId, cantidad);
+            DetalleCarrito detalle = carritoMemoriaService != null
+                    ? carritoMemoriaService.agregarItem(usuarioId, perfumeId, cantidad)
+                    : carritoService.agregarItem(usuarioId, perfumeId, cantidad);
             return ResponseEntity.ok(detalle);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
-            System.err.println("Error al agregar item al carrito: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al agregar item al carrito: {}", e.getMessage(), e);
             
             Map<String, String> response = new HashMap<>();
             response.put("message", "Error al agregar item al carrito: " + e.getMessage());
@@ -94,14 +154,56 @@ public class CarritoController {
         }
     }
     
+    /**
+     * Añade varios perfumes de una vez: {"usuarioId": 1, "items": [{"perfumeId": 2, "cantidad": 1}, ...]}.
+     * Un perfume repetido en la petición o que ya está en el carrito suma cantidad a su línea.
+     */
+    @PostMapping("/items/lote")
+    public ResponseEntity<?> agregarItems(@RequestBody Map<String, Object> requestData) {
+        try {
+            Long usuarioId = Long.valueOf(requestData.get("usuarioId").toString());
+            if (!(requestData.get("items") instanceof List<?> items) || items.isEmpty()) {
+                Map<String, String> response = new HashMap<>();
+                response.put("message", "Falta la lista 'items'");
+                return ResponseEntity.badRequest().body(response);
+            }
+
+            Map<Long, Integer> cantidadesPorPerfume = new LinkedHashMap<>();
+            for (Object item : items) {
+                Map<?, ?> datos = (Map<?, ?>) item;
+                Long perfumeId = Long.valueOf(datos.get("perfumeId").toString());
+                Integer cantidad = Integer.valueOf(datos.get("cantidad").toString());
+                cantidadesPorPerfume.merge(perfumeId, cantidad, Integer::sum);
+            }
+
+            List<DetalleCarrito> detalles = carritoMemoriaService != null
+                    ? carritoMemoriaService.agregarItems(usuarioId, cantidadesPorPerfume)
+                    : carritoService.agregarItems(usuarioId, cantidadesPorPerfume);
+            return ResponseEntity.ok(detalles);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            log.error("Error al agregar items al carrito: {}", e.getMessage(), e);
+            
+            Map<String, String> response = new HashMap<>();
+            response.put("message", "Error al agregar items al carrito: " + e.getMessage());
+            return ResponseEntity.status(500).body(response);
+        }
+    }
+    
     @DeleteMapping("/items/{detalleId}")
     public ResponseEntity<?> eliminarItem(@PathVariable Long detalleId, @RequestParam Long usuarioId) {
         try {
-            carritoService.eliminarItem(usuarioId, detalleId);
+            if (carritoMemoriaService != null) {
+                carritoMemoriaService.eliminarItem(usuarioId, detalleId);
+            } else {
+                carritoService.eliminarItem(usuarioId, detalleId);
+            }
             return ResponseEntity.ok().build();
         } catch (Exception e) {
-            System.err.println("Error al eliminar item del carrito: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al eliminar item del carrito: {}", e.getMessage(), e);
             
             Map<String, String> response = new HashMap<>();
             response.put("message", "Error al eliminar item del carrito: " + e.getMessage());
@@ -109,16 +211,24 @@ public class CarritoController {
         }
     }
     
+    // Con la cabecera Idempotency-Key un reintento de la misma compra devuelve la factura ya creada
     @PostMapping("/checkout")
-    public ResponseEntity<?> checkout(@RequestBody Map<String, Object> requestData) {
+    public ResponseEntity<?> checkout(@RequestBody Map<String, Object> requestData,
+                                      @RequestHeader(value = IdempotenciaService.CABECERA, required = false) String idempotencyKey) {
+        return idempotenciaService.ejecutar("carrito-checkout", idempotencyKey, requestData, () -> procesarCheckout(requestData));
+    }
+    
+    private ResponseEntity<?> procesarCheckout(Map<String, Object> requestData) {
         try {
             Long usuarioId = Long.valueOf(requestData.get("usuarioId").toString());
             String direccionEnvio = requestData.get("direccionEnvio").toString();
             String metodoPago = requestData.get("metodoPago").toString();
             
-            System.out.println("Procesando checkout con datos: " + requestData);
+            log.debug("Procesando checkout con datos: {}", requestData);
             
-            Factura factura = carritoService.checkout(usuarioId, direccionEnvio, metodoPago);
+            Factura factura = carritoMemoriaService != null
+                    ? carritoMemoriaService.checkout(usuarioId, direccionEnvio, metodoPago)
+                    : carritoService.checkout(usuarioId, direccionEnvio, metodoPago);
             
             Map<String, Object> response = new HashMap<>();
             response.put("id", factura.getId());
@@ -127,9 +237,12 @@ public class CarritoController {
             response.put("mensaje", "Compra procesada correctamente");
             
             return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
-            System.err.println("Error al procesar checkout: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al procesar checkout: {}", e.getMessage(), e);
             
             Map<String, String> response = new HashMap<>();
             response.put("message", "Error al procesar la compra: " + e.getMessage());
@@ -140,8 +253,8 @@ public class CarritoController {
     @PutMapping("/items/{detalleId}")
     public ResponseEntity<?> actualizarCantidadItem(@PathVariable Long detalleId, @RequestBody Map<String, Object> requestData) {
         try {
-            System.out.println("Actualizando cantidad del ítem con ID: " + detalleId);
-            System.out.println("Datos recibidos: " + requestData);
+            log.debug("Actualizando cantidad del ítem con ID: {}", detalleId);
+            log.debug("Datos recibidos: {}", requestData);
             
             // Validar datos
             if (!requestData.containsKey("cantidad")) {
@@ -153,16 +266,50 @@ public class CarritoController {
             Integer cantidad = Integer.valueOf(requestData.get("cantidad").toString());
             
             // Obtener el detalle del carrito
-            DetalleCarrito detalle = carritoService.actualizarCantidadItem(detalleId, cantidad);
+            DetalleCarrito detalle = carritoMemoriaService != null
+                    ? carritoMemoriaService.actualizarCantidadItem(detalleId, cantidad)
+                    : carritoService.actualizarCantidadItem(detalleId, cantidad);
             
             return ResponseEntity.ok(detalle);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
-            System.err.println("Error al actualizar cantidad del ítem: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al actualizar cantidad del ítem: {}", e.getMessage(), e);
             
             Map<String, String> response = new HashMap<>();
             response.put("message", "Error al actualizar cantidad del ítem: " + e.getMessage());
             return ResponseEntity.status(500).body(response);
         }
     }
-} 
\ No newline at end of file
+
+    // Crea un mapa con los datos necesarios para evitar ciclos de referencia
+    private Map<String, Object> respuestaCarrito(Carrito carrito) {
+        Map<String, Object> carritoResponse = new HashMap<>();
+        carritoResponse.put("id", carrito.getId());
+        
+        // Crear un objeto simplificado de usuario para evitar ciclos
+        Map<String, Object> usuarioSimple = new HashMap<>();
+        Usuario usuario = carrito.getUsuario();
+        usuarioSimple.put("id", usuario.getId());
+        usuarioSimple.put("nombre", usuario.getNombre());
+        usuarioSimple.put("correo", usuario.getCorreo());
+        usuarioSimple.put("rol", usuario.getRol());
+        carritoResponse.put("usuario", usuarioSimple);
+        
+        carritoResponse.put("fechaCreacion", carrito.getFechaCreacion());
+        carritoResponse.put("estado", carrito.getEstado());
+        carritoResponse.put("cantidadArticulos", carrito.getCantidadArticulos());
+        carritoResponse.put("total", BigDecimal.valueOf(carrito.getTotalCentimos(), 2));
+        
+        // Añadir detalles sin ciclos de referencia
+        if (carrito.getDetalles() != null) {
+            carritoResponse.put("detalles", carrito.getDetalles());
+        } else {
+            carritoResponse.put("detalles", new ArrayList<>());
+        }
+        
+        return carritoResponse;
+    }
+}
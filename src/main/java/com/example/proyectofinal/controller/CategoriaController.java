@@ -1,19 +1,20 @@
 package com.example.proyectofinal.controller;
 
+import com.example.proyectofinal.event.CatalogoModificadoEvent.Tipo;
 import com.example.proyectofinal.model.Categoria;
+import com.example.proyectofinal.service.CatalogoVersionService;
 import com.example.proyectofinal.service.CategoriaService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
 
 @RestController
 @RequestMapping("/api/categorias")
@@ -21,6 +22,7 @@ import java.util.stream.Collectors;
                         "http://localhost:5176", "http://localhost:5177", "http://localhost:5178", 
                         "http://localhost:5179", "http://localhost:5180"}, 
              allowCredentials = "true")
+@Slf4j
 public class CategoriaController {
 
     @Autowired
@@ -29,26 +31,18 @@ public class CategoriaController {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private CatalogoVersionService catalogoVersionService;
+
     @GetMapping
-    public ResponseEntity<?> getAllCategorias() {
+    public ResponseEntity<?> getAllCategorias(WebRequest request) {
+        // Si el cliente ya tiene esta versión se responde 304 sin consultar la base de datos
+        if (request.checkNotModified(catalogoVersionService.getEtag(Tipo.CATEGORIA),
+                catalogoVersionService.getLastModified(Tipo.CATEGORIA))) {
+            return null;
+        }
         try {
-            List<Categoria> categorias = categoriaService.findAll();
-            
-            if (categorias == null) {
-                categorias = new ArrayList<>();
-            }
-            
-            // Simplificar la respuesta para evitar recursión
-            List<Map<String, Object>> simplifiedCategorias = categorias.stream()
-                .map(cat -> {
-                    Map<String, Object> simplifiedCat = new HashMap<>();
-                    simplifiedCat.put("id", cat.getId());
-                    simplifiedCat.put("nombre", cat.getNombre());
-                    return simplifiedCat;
-                })
-                .collect(Collectors.toList());
-            
-            return ResponseEntity.ok(simplifiedCategorias);
+            return ResponseEntity.ok(categoriaService.findAllDTO());
         } catch (Exception e) {
             Map<String, String> response = new HashMap<>();
             response.put("message", "Error al obtener categorías: " + e.getMessage());
@@ -103,11 +97,11 @@ public class CategoriaController {
     @PutMapping("/{id}")
     public ResponseEntity<?> updateCategoria(@PathVariable Long id, @RequestBody Categoria categoria) {
         try {
-            System.out.println("Actualizando categoría con ID: " + id);
+            log.debug("Actualizando categoría con ID: {}", id);
             Categoria updatedCategoria = categoriaService.update(id, categoria);
             
             if (updatedCategoria != null) {
-                System.out.println("Categoría actualizada: " + updatedCategoria.getNombre());
+                log.debug("Categoría actualizada: {}", updatedCategoria.getNombre());
                 
                 // Simplificar la respuesta
                 Map<String, Object> simplifiedCat = new HashMap<>();
@@ -116,14 +110,13 @@ public class CategoriaController {
                 
                 return ResponseEntity.ok(simplifiedCat);
             } else {
-                System.out.println("Categoría con ID " + id + " no encontrada para actualizar");
+                log.debug("Categoría con ID {} no encontrada para actualizar", id);
                 Map<String, String> response = new HashMap<>();
                 response.put("message", "Categoría no encontrada con ID: " + id);
                 return ResponseEntity.status(404).body(response);
             }
         } catch (Exception e) {
-            System.err.println("Error al actualizar categoría: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al actualizar categoría: {}", e.getMessage(), e);
             
             Map<String, String> response = new HashMap<>();
             response.put("message", "Error al actualizar categoría: " + e.getMessage());
@@ -0,0 +1,135 @@
+package com.example.proyectofinal.controller;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.proyectofinal.service.VentasAgregadasService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Paneles de ventas. Todo se lee de las ventas agregadas (VentasAgregadasService), nunca de
+ * facturas ni detalles_factura. Las fechas son días, ambos incluidos.
+ */
+@RestController
+@RequestMapping("/api/estadisticas")
+@Slf4j
+public class EstadisticasController {
+
+    @Autowired
+    private VentasAgregadasService ventasAgregadasService;
+
+    private static final int DIAS_POR_DEFECTO = 30;
+    private static final int MAX_DIAS = 366 * 5;
+    private static final int LIMITE_POR_DEFECTO = 10;
+    private static final int LIMITE_MAXIMO = 100;
+
+    // Sin fechas, los últimos 30 días hasta hoy
+    @GetMapping("/ventas/diarias")
+    public ResponseEntity<?> getVentasDiarias(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        try {
+            LocalDate fin = hasta != null ? hasta : LocalDate.now();
+            LocalDate inicio = desde != null ? desde : fin.minusDays(DIAS_POR_DEFECTO - 1);
+            validarRango(inicio, fin);
+            if (inicio.plusDays(MAX_DIAS).isBefore(fin)) {
+                throw new IllegalArgumentException("El rango no puede superar " + MAX_DIAS + " días");
+            }
+            return ResponseEntity.ok(ventasAgregadasService.findVentasDiarias(inicio, fin));
+        } catch (IllegalArgumentException e) {
+            return badRequest(e);
+        } catch (Exception e) {
+            log.error("Error al obtener ventas diarias: {}", e.getMessage(), e);
+            return error("Error al obtener las ventas diarias: " + e.getMessage());
+        }
+    }
+
+    // Sin fechas, desde siempre
+    @GetMapping("/ventas/perfumes")
+    public ResponseEntity<?> getPerfumesMasVendidos(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "unidades") String orden,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            validarRango(desde, hasta);
+            return ResponseEntity.ok(ventasAgregadasService.findPerfumesMasVendidos(desde, hasta, orden, limite(limit)));
+        } catch (IllegalArgumentException e) {
+            return badRequest(e);
+        } catch (Exception e) {
+            log.error("Error al obtener perfumes más vendidos: {}", e.getMessage(), e);
+            return error("Error al obtener los perfumes más vendidos: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/ventas/usuarios")
+    public ResponseEntity<?> getMejoresClientes(
+            @RequestParam(defaultValue = "importe") String orden,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(ventasAgregadasService.findMejoresClientes(orden, limite(limit)));
+        } catch (IllegalArgumentException e) {
+            return badRequest(e);
+        } catch (Exception e) {
+            log.error("Error al obtener mejores clientes: {}", e.getMessage(), e);
+            return error("Error al obtener los mejores clientes: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/ventas/usuarios/{usuarioId}")
+    public ResponseEntity<?> getVentasUsuario(@PathVariable Long usuarioId) {
+        try {
+            return ventasAgregadasService.findVentasUsuario(usuarioId)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (Exception e) {
+            log.error("Error al obtener ventas del usuario: {}", e.getMessage(), e);
+            return error("Error al obtener las ventas del usuario: " + e.getMessage());
+        }
+    }
+
+    // Recalcula todo desde las facturas; para el histórico o tras cambios fuera del checkout
+    @PostMapping("/ventas/reconstruir")
+    public ResponseEntity<?> reconstruir() {
+        try {
+            return ResponseEntity.ok(ventasAgregadasService.reconstruir());
+        } catch (Exception e) {
+            log.error("Error al reconstruir ventas agregadas: {}", e.getMessage(), e);
+            return error("Error al reconstruir las ventas agregadas: " + e.getMessage());
+        }
+    }
+
+    private static void validarRango(LocalDate desde, LocalDate hasta) {
+        if (desde != null && hasta != null && desde.isAfter(hasta)) {
+            throw new IllegalArgumentException("La fecha 'desde' no puede ser posterior a 'hasta'");
+        }
+    }
+
+    private static int limite(Integer limit) {
+        return limit == null ? LIMITE_POR_DEFECTO : Math.max(1, Math.min(limit, LIMITE_MAXIMO));
+    }
+
+    private static ResponseEntity<?> badRequest(IllegalArgumentException e) {
+        Map<String, String> response = new HashMap<>();
+        response.put("message", e.getMessage());
+        return ResponseEntity.badRequest().body(response);
+    }
+
+    private static ResponseEntity<?> error(String mensaje) {
+        Map<String, String> response = new HashMap<>();
+        response.put("message", mensaje);
+        return ResponseEntity.status(500).body(response);
+    }
+}
@@ -1,39 +1,54 @@
 package com.example.proyectofinal.controller;
 
-import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
+import org.apache.catalina.Globals;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.example.proyectofinal.dto.FacturaDTO;
 import com.example.proyectofinal.dto.FacturaDTO.DetalleFacturaDTO;
-import com.example.proyectofinal.model.Carrito;
-import com.example.proyectofinal.model.DetalleCarrito;
-import com.example.proyectofinal.model.DetalleFactura;
+import com.example.proyectofinal.dto.PaginaDTO;
 import com.example.proyectofinal.model.Factura;
-import com.example.proyectofinal.model.Perfume;
-import com.example.proyectofinal.model.PerfumePersonalizado;
 import com.example.proyectofinal.model.Usuario;
-import com.example.proyectofinal.repository.CarritoRepository;
-import com.example.proyectofinal.repository.PerfumePersonalizadoRepository;
-import com.example.proyectofinal.repository.PerfumeRepository;
 import com.example.proyectofinal.repository.UsuarioRepository;
+import com.example.proyectofinal.service.CarritoMemoriaService;
+import com.example.proyectofinal.service.CarritoService;
+import com.example.proyectofinal.service.DocumentoFacturaService;
+import com.example.proyectofinal.service.ExportacionFacturasService;
 import com.example.proyectofinal.service.FacturaService;
+import com.example.proyectofinal.service.IdempotenciaService;
+import com.example.proyectofinal.util.CursorCodec;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
 
 @RestController
 @RequestMapping("/api/facturas")
@@ -41,6 +56,7 @@ import com.example.proyectofinal.service.FacturaService;
                        "http://localhost:5176", "http://localhost:5177", "http://localhost:5178", 
                        "http://localhost:5179", "http://localhost:5180"}, 
             allowCredentials = "true")
+@Slf4j
 public class FacturaController {
 
     @Autowired
@@ -50,33 +66,116 @@ public class FacturaController {
     private UsuarioRepository usuarioRepository;
     
     @Autowired
-    private CarritoRepository carritoRepository;
+    private CarritoService carritoService;
     
+    // Solo existe con carrito.memoria.enabled=true
+    @Autowired(required = false)
+    private CarritoMemoriaService carritoMemoriaService;
+
     @Autowired
-    private PerfumeRepository perfumeRepository;
+    private IdempotenciaService idempotenciaService;
     
     @Autowired
-    private PerfumePersonalizadoRepository perfumePersonalizadoRepository;
+    private ExportacionFacturasService exportacionFacturasService;
+    
+    @Autowired
+    private DocumentoFacturaService documentoFacturaService;
     
     // En una aplicación real, se obtendría el ID del usuario de la sesión
     private static final Long DEFAULT_USER_ID = 1L;
     
+    private static final int LIMITE_POR_DEFECTO = 20;
+    private static final int LIMITE_MAXIMO = 100;
+    
+    /**
+     * Facturas de la más reciente a la más antigua, por páginas de {@code limit} con paginación
+     * por clave: {@code after} es el cursor nextCursor de la página anterior. Se pueden filtrar
+     * por usuario y por fecha de emisión (días, ambos incluidos).
+     */
     @GetMapping
-    public ResponseEntity<?> getAllFacturas() {
+    public ResponseEntity<?> getAllFacturas(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Long usuarioId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
         try {
-            List<Factura> facturas = facturaService.findAll();
-            List<FacturaDTO> facturasDTO = facturas.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+            Long antesDeId = CursorCodec.decode(after);
+            if (desde != null && hasta != null && desde.isAfter(hasta)) {
+                throw new IllegalArgumentException("La fecha 'desde' no puede ser posterior a 'hasta'");
+            }
             
-            return ResponseEntity.ok(facturasDTO);
+            int pageSize = limit == null ? LIMITE_POR_DEFECTO : Math.max(1, Math.min(limit, LIMITE_MAXIMO));
+            // Se pide un elemento extra para saber si existe una página siguiente
+            List<FacturaDTO> items = facturaService.findPaginaDTO(antesDeId, pageSize + 1, usuarioId, desde, hasta);
+            boolean hasMore = items.size() > pageSize;
+            if (hasMore) {
+                items = items.subList(0, pageSize);
+            }
+            
+            String nextCursor = hasMore ? CursorCodec.encode(items.get(items.size() - 1).getId()) : null;
+            return ResponseEntity.ok(new PaginaDTO<>(items, nextCursor, hasMore, pageSize));
+        } catch (IllegalArgumentException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
-            System.err.println("Error al obtener facturas: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al obtener facturas: {}", e.getMessage(), e);
             return ResponseEntity.status(500).body("Error al obtener facturas: " + e.getMessage());
         }
     }
     
+    /**
+     * Descarga las líneas de las facturas emitidas entre {@code desde} y {@code hasta} (días,
+     * ambos incluidos) en CSV o NDJSON, opcionalmente comprimidas con gzip. La respuesta se
+     * escribe a medida que se leen las filas, sin cargar el rango entero en memoria.
+     */
+    @GetMapping("/exportar")
+    public ResponseEntity<StreamingResponseBody> exportarFacturas(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "csv") String formato,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        if (desde.isAfter(hasta)) {
+            throw new IllegalArgumentException("La fecha 'desde' no puede ser posterior a 'hasta'");
+        }
+        ExportacionFacturasService.Formato tipo = switch (formato.toLowerCase()) {
+            case "csv" -> ExportacionFacturasService.Formato.CSV;
+            case "ndjson" -> ExportacionFacturasService.Formato.NDJSON;
+            default -> throw new IllegalArgumentException("Formato no soportado: " + formato + " (csv o ndjson)");
+        };
+        
+        MediaType contentType = gzip ? MediaType.parseMediaType("application/gzip")
+                : tipo == ExportacionFacturasService.Formato.CSV ? MediaType.parseMediaType("text/csv;charset=UTF-8")
+                : MediaType.parseMediaType("application/x-ndjson");
+        String fichero = "facturas-" + desde + "_" + hasta + "." + formato.toLowerCase() + (gzip ? ".gz" : "");
+        
+        // Se ejecuta fuera del hilo de la petición, cuando ya se han enviado las cabeceras:
+        // un fallo a mitad solo puede cortar la descarga
+        StreamingResponseBody cuerpo = salida -> {
+            try {
+                exportacionFacturasService.exportar(desde, hasta, tipo, gzip, salida);
+            } catch (Exception e) {
+                log.error("Error al exportar facturas: {}", e.getMessage(), e);
+                throw e;
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fichero).build().toString())
+                .body(cuerpo);
+    }
+    
+    // La exportación no puede devolver un Map en su ResponseEntity (el cuerpo tiene que ser
+    // StreamingResponseBody para que Spring lo envíe por partes), así que sus errores de
+    // parámetros llegan aquí. El resto de métodos capturan los suyos
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleIllegalArgument(IllegalArgumentException e) {
+        Map<String, String> response = new HashMap<>();
+        response.put("message", e.getMessage());
+        return ResponseEntity.badRequest().body(response);
+    }
+    
     @GetMapping("/{id}")
     public ResponseEntity<?> getFacturaById(@PathVariable Long id) {
         try {
@@ -84,12 +183,66 @@ public class FacturaController {
                     .map(factura -> ResponseEntity.ok(convertToDTO(factura)))
                     .orElse(ResponseEntity.notFound().build());
         } catch (Exception e) {
-            System.err.println("Error al obtener factura por ID: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al obtener factura por ID: {}", e.getMessage(), e);
             return ResponseEntity.status(500).body("Error al obtener factura: " + e.getMessage());
         }
     }
     
+    /**
+     * Documento imprimible (HTML) de la factura. Se genera la primera vez y después se sirve
+     * el fichero guardado; su huella va en el ETag, así que un navegador que ya lo tiene recibe
+     * un 304. Con {@code descargar=true} se pide como adjunto en lugar de abrirlo.
+     */
+    @GetMapping("/{id}/documento")
+    public ResponseEntity<?> getDocumentoFactura(@PathVariable Long id,
+                                                 @RequestParam(defaultValue = "false") boolean descargar,
+                                                 WebRequest webRequest,
+                                                 HttpServletRequest request) {
+        try {
+            DocumentoFacturaService.Documento documento = documentoFacturaService.obtener(id).orElse(null);
+            if (documento == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Factura no encontrada");
+            }
+            
+            String etag = "\"" + documento.huella() + "\"";
+            // Admite listas y etiquetas débiles; si coincide deja preparado el 304 con su ETag
+            if (webRequest.checkNotModified(etag)) {
+                return null;
+            }
+            
+            String nombre = "factura-" + id + ".html";
+            ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("text/html;charset=UTF-8"))
+                    .contentLength(documento.tamano())
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .header(HttpHeaders.CONTENT_DISPOSITION, (descargar ? ContentDisposition.attachment() : ContentDisposition.inline())
+                            .filename(nombre).build().toString());
+            
+            // Con sendfile, Tomcat envía el fichero directamente del disco al socket tras las
+            // cabeceras, sin copiarlo por la aplicación; si no está disponible se copia
+            if (Boolean.TRUE.equals(request.getAttribute(Globals.SENDFILE_SUPPORTED_ATTR))) {
+                request.setAttribute(Globals.SENDFILE_FILENAME_ATTR, documento.fichero().toString());
+                request.setAttribute(Globals.SENDFILE_FILE_START_ATTR, 0L);
+                request.setAttribute(Globals.SENDFILE_FILE_END_ATTR, documento.tamano());
+                return respuesta.build();
+            }
+            return respuesta.body(new FileSystemResource(documento.fichero()));
+        } catch (RejectedExecutionException | TimeoutException e) {
+            log.warn("Documento de la factura ID: {} no disponible ahora: {}", id, e.toString());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body("El documento de la factura se está generando, inténtalo de nuevo en unos segundos");
+        } catch (Exception e) {
+            log.error("Error al obtener el documento de la factura: {}", e.getMessage(), e);
+            return ResponseEntity.status(500).body("Error al obtener el documento de la factura: " + e.getMessage());
+        }
+    }
+    
+    @GetMapping("/documentos/estadisticas")
+    public ResponseEntity<?> getEstadisticasDocumentos() {
+        return ResponseEntity.ok(documentoFacturaService.getEstadisticas());
+    }
+    
     @GetMapping("/usuario/{usuarioId}")
     public ResponseEntity<?> getFacturasByUsuario(@PathVariable Long usuarioId) {
         try {
@@ -100,8 +253,7 @@ public class FacturaController {
             
             return ResponseEntity.ok(facturasDTO);
         } catch (Exception e) {
-            System.err.println("Error al obtener facturas por usuario: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al obtener facturas por usuario: {}", e.getMessage(), e);
             return ResponseEntity.status(500).body("Error al obtener facturas: " + e.getMessage());
         }
     }
@@ -112,8 +264,7 @@ public class FacturaController {
             Factura savedFactura = facturaService.save(factura);
             return ResponseEntity.ok(convertToDTO(savedFactura));
         } catch (Exception e) {
-            System.err.println("Error al crear factura: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al crear factura: {}", e.getMessage(), e);
             return ResponseEntity.status(500).body("Error al crear factura: " + e.getMessage());
         }
     }
@@ -124,8 +275,7 @@ public class FacturaController {
             facturaService.deleteById(id);
             return ResponseEntity.ok().build();
         } catch (Exception e) {
-            System.err.println("Error al eliminar factura: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al eliminar factura: {}", e.getMessage(), e);
             return ResponseEntity.status(500).build();
         }
     }
@@ -145,14 +295,19 @@ public class FacturaController {
             
             return ResponseEntity.ok(facturasDTO);
         } catch (Exception e) {
-            System.err.println("Error al obtener facturas del usuario: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al obtener facturas del usuario: {}", e.getMessage(), e);
             return ResponseEntity.status(500).body("Error al obtener facturas: " + e.getMessage());
         }
     }
     
+    // Con la cabecera Idempotency-Key un reintento de la misma compra devuelve la factura ya creada
     @PostMapping("/procesar-compra")
-    public ResponseEntity<?> procesarCompra(@RequestBody Map<String, Object> data) {
+    public ResponseEntity<?> procesarCompra(@RequestBody Map<String, Object> data,
+                                            @RequestHeader(value = IdempotenciaService.CABECERA, required = false) String idempotencyKey) {
+        return idempotenciaService.ejecutar("procesar-compra", idempotencyKey, data, () -> registrarCompra(data));
+    }
+    
+    private ResponseEntity<?> registrarCompra(Map<String, Object> data) {
         try {
             if (!data.containsKey("metodoPago") || !data.containsKey("direccionEnvio")) {
                 return ResponseEntity.badRequest().body("Faltan datos requeridos");
@@ -161,68 +316,20 @@ public class FacturaController {
             String metodoPago = data.get("metodoPago").toString();
             String direccionEnvio = data.get("direccionEnvio").toString();
             
-            // Obtener el usuario
-            Usuario usuario = usuarioRepository.findById(DEFAULT_USER_ID).orElse(null);
-            if (usuario == null) {
+            if (!usuarioRepository.existsById(DEFAULT_USER_ID)) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Usuario no encontrado");
             }
             
-            // Obtener el carrito del usuario
-            Optional<Carrito> optionalCarrito = carritoRepository.findByUsuarioAndEstado(usuario, "ACTIVO");
-            if (!optionalCarrito.isPresent() || optionalCarrito.get().getDetalles().isEmpty()) {
-                return ResponseEntity.badRequest().body("El carrito está vacío");
-            }
-            
-            Carrito carrito = optionalCarrito.get();
-            
-            // Crear la factura
-            Factura factura = new Factura();
-            factura.setUsuario(usuario);
-            factura.setFechaEmision(LocalDateTime.now());
-            factura.setMetodoPago(metodoPago);
-            factura.setDireccionEnvio(direccionEnvio);
-            factura.setTotal(0.0); // Se calculará a continuación
-            
-            List<DetalleFactura> detallesFactura = new ArrayList<>();
-            double total = 0.0;
-            
-            // Convertir detalles del carrito a detalles de factura
-            for (DetalleCarrito detalleCarrito : carrito.getDetalles()) {
-                DetalleFactura detalleFactura = new DetalleFactura();
-                detalleFactura.setFactura(factura);
-                detalleFactura.setCantidad(detalleCarrito.getCantidad());
-                detalleFactura.setPrecioUnitario(detalleCarrito.getPrecioUnitario());
-                detalleFactura.setSubtotal(detalleCarrito.getSubtotal());
-                
-                // Asignar perfume o perfume personalizado según corresponda
-                if (detalleCarrito.getPerfume() != null) {
-                    Perfume perfume = detalleCarrito.getPerfume();
-                    detalleFactura.setPerfume(perfume);
-                    detalleFactura.setNombreProducto(perfume.getNombre());
-                } else if (detalleCarrito.getPerfumePersonalizado() != null) {
-                    PerfumePersonalizado perfumePersonalizado = detalleCarrito.getPerfumePersonalizado();
-                    detalleFactura.setPerfumePersonalizado(perfumePersonalizado);
-                    detalleFactura.setNombreProducto(perfumePersonalizado.getNombre() + " (Personalizado)");
-                }
-                
-                detallesFactura.add(detalleFactura);
-                total += detalleFactura.getSubtotal();
-            }
-            
-            factura.setDetalles(detallesFactura);
-            factura.setTotal(total);
-            
-            // Guardar la factura
-            Factura facturaGuardada = facturaService.save(factura);
-            
-            // Vaciar el carrito
-            carrito.getDetalles().clear();
-            carritoRepository.save(carrito);
+            // Mismo camino que POST /api/carrito/checkout
+            Factura factura = carritoMemoriaService != null
+                    ? carritoMemoriaService.checkout(DEFAULT_USER_ID, direccionEnvio, metodoPago)
+                    : carritoService.checkout(DEFAULT_USER_ID, direccionEnvio, metodoPago);
             
-            return ResponseEntity.status(HttpStatus.CREATED).body(convertToDTO(facturaGuardada));
+            return ResponseEntity.status(HttpStatus.CREATED).body(convertToDTO(factura));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
-            System.err.println("Error al procesar la compra: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al procesar la compra: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error al procesar la compra: " + e.getMessage());
         }
     }
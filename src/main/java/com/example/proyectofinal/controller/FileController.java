@@ -12,6 +12,7 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import lombok.extern.slf4j.Slf4j;
 
 @RestController
 @CrossOrigin(origins = {"http://localhost:5173", "http://localhost:5174", "http://localhost:5175", 
@@ -19,6 +20,7 @@ import java.nio.file.Paths;
                         "http://localhost:5179", "http://localhost:5180"}, 
              allowCredentials = "false")
 @RequestMapping("/uploads")
+@Slf4j
 public class FileController {
 
     @Value("${upload.dir}")
@@ -36,7 +38,7 @@ public class FileController {
                 // Determinar el tipo de contenido basado en la extensión del archivo
                 String contentType = determineContentType(filename);
                 
-                System.out.println("Sirviendo archivo: " + filePath.toString() + " con tipo MIME: " + contentType);
+                log.debug("Sirviendo archivo: {} con tipo MIME: {}", filePath.toString(), contentType);
                 
                 // Construir la respuesta con los headers adecuados
                 return ResponseEntity.ok()
@@ -45,14 +47,14 @@ public class FileController {
                         .contentType(MediaType.parseMediaType(contentType))
                         .body(resource);
             } else {
-                System.err.println("Archivo no encontrado o no legible: " + filePath.toString());
+                log.warn("Archivo no encontrado o no legible: {}", filePath.toString());
                 return ResponseEntity.notFound().build();
             }
         } catch (MalformedURLException e) {
-            System.err.println("Error al construir URL para el archivo: " + e.getMessage());
+            log.error("Error al construir URL para el archivo: {}", e.getMessage());
             return ResponseEntity.badRequest().build();
         } catch (Exception e) {
-            System.err.println("Error al servir el archivo: " + e.getMessage());
+            log.error("Error al servir el archivo: {}", e.getMessage());
             return ResponseEntity.internalServerError().build();
         }
     }
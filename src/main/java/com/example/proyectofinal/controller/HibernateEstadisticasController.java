@@ -0,0 +1,35 @@
+package com.example.proyectofinal.controller;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.proyectofinal.service.HibernateEstadisticasService;
+
+@RestController
+@RequestMapping("/api/hibernate/estadisticas")
+public class HibernateEstadisticasController {
+
+    @Autowired
+    private HibernateEstadisticasService hibernateEstadisticasService;
+
+    @GetMapping
+    public ResponseEntity<?> getEstadisticas(@RequestParam(defaultValue = "20") int limite) {
+        return ResponseEntity.ok(hibernateEstadisticasService.getEstadisticas(Math.max(limite, 0)));
+    }
+
+    @DeleteMapping
+    public ResponseEntity<?> reiniciar() {
+        hibernateEstadisticasService.reiniciar();
+        Map<String, String> response = new HashMap<>();
+        response.put("message", "Estadísticas de Hibernate reiniciadas");
+        return ResponseEntity.ok(response);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.proyectofinal.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.proyectofinal.service.LimpiezaCarritosService;
+
+@RestController
+@RequestMapping("/api/carrito/limpieza")
+public class LimpiezaCarritosController {
+
+    @Autowired
+    private LimpiezaCarritosService limpiezaCarritosService;
+
+    @GetMapping
+    public ResponseEntity<?> getEstadisticas() {
+        return ResponseEntity.ok(limpiezaCarritosService.getEstadisticas());
+    }
+
+    // Ejecuta la limpieza ahora sin esperar a la siguiente programada
+    @PostMapping
+    public ResponseEntity<?> ejecutar() {
+        return ResponseEntity.ok(limpiezaCarritosService.ejecutar());
+    }
+}
@@ -1,10 +1,13 @@
 package com.example.proyectofinal.controller;
 
+import com.example.proyectofinal.event.CatalogoModificadoEvent.Tipo;
 import com.example.proyectofinal.model.NotaOlfativa;
+import com.example.proyectofinal.service.CatalogoVersionService;
 import com.example.proyectofinal.service.NotaOlfativaService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -22,14 +25,18 @@ public class NotaOlfativaController {
     @Autowired
     private NotaOlfativaService notaOlfativaService;
 
+    @Autowired
+    private CatalogoVersionService catalogoVersionService;
+
     @GetMapping
-    public ResponseEntity<?> getAllNotasOlfativas() {
+    public ResponseEntity<?> getAllNotasOlfativas(WebRequest request) {
+        // Si el cliente ya tiene esta versión se responde 304 sin consultar la base de datos
+        if (request.checkNotModified(catalogoVersionService.getEtag(Tipo.NOTA_OLFATIVA),
+                catalogoVersionService.getLastModified(Tipo.NOTA_OLFATIVA))) {
+            return null;
+        }
         try {
-            List<NotaOlfativa> notas = notaOlfativaService.findAll();
-            if (notas == null) {
-                notas = new ArrayList<>();
-            }
-            return ResponseEntity.ok(notas);
+            return ResponseEntity.ok(notaOlfativaService.findAllDTO());
         } catch (Exception e) {
             Map<String, String> response = new HashMap<>();
             response.put("message", "Error al obtener notas olfativas: " + e.getMessage());
@@ -19,10 +19,18 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import com.example.proyectofinal.dto.PaginaDTO;
 import com.example.proyectofinal.dto.PerfumeDTO;
+import com.example.proyectofinal.event.CatalogoModificadoEvent.Tipo;
 import com.example.proyectofinal.model.Perfume;
+import com.example.proyectofinal.service.CatalogoVersionService;
+import com.example.proyectofinal.service.PerfumeFacetIndex;
+import com.example.proyectofinal.service.PerfumeSearchIndex;
 import com.example.proyectofinal.service.PerfumeService;
+import com.example.proyectofinal.util.CursorCodec;
+import lombok.extern.slf4j.Slf4j;
 
 @RestController
 @RequestMapping("/api/perfumes")
@@ -30,17 +38,56 @@ import com.example.proyectofinal.service.PerfumeService;
                         "http://localhost:5176", "http://localhost:5177", "http://localhost:5178", 
                         "http://localhost:5179", "http://localhost:5180"}, 
              allowCredentials = "true")
+@Slf4j
 public class PerfumeController {
 
+    private static final int LIMITE_POR_DEFECTO = 20;
+    private static final int LIMITE_MAXIMO = 100;
+
     @Autowired
     private PerfumeService perfumeService;
 
+    @Autowired
+    private PerfumeSearchIndex perfumeSearchIndex;
+
+    @Autowired
+    private PerfumeFacetIndex perfumeFacetIndex;
+
+    @Autowired
+    private CatalogoVersionService catalogoVersionService;
+
     @GetMapping
-    public ResponseEntity<List<PerfumeDTO>> getAllPerfumes() {
-        List<Perfume> perfumes = perfumeService.findAll();
-        return ResponseEntity.ok(perfumes.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList()));
+    public ResponseEntity<?> getAllPerfumes(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            WebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
+        // Sin parámetros de paginación se mantiene la respuesta completa para los clientes existentes
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(perfumeService.findAllDTO());
+        }
+
+        Long afterId;
+        try {
+            afterId = CursorCodec.decode(after);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        int pageSize = limit == null ? LIMITE_POR_DEFECTO : Math.max(1, Math.min(limit, LIMITE_MAXIMO));
+        // Se pide un elemento extra para saber si existe una página siguiente
+        List<PerfumeDTO> items = perfumeService.findPageDTO(afterId, pageSize + 1);
+        boolean hasMore = items.size() > pageSize;
+        if (hasMore) {
+            items = items.subList(0, pageSize);
+        }
+
+        String nextCursor = hasMore ? CursorCodec.encode(items.get(items.size() - 1).getId()) : null;
+        return ResponseEntity.ok(new PaginaDTO<>(items, nextCursor, hasMore, pageSize));
     }
 
     @GetMapping("/{id}")
@@ -52,19 +99,43 @@ public class PerfumeController {
     }
 
     @GetMapping("/categoria/{categoriaId}")
-    public ResponseEntity<List<PerfumeDTO>> getPerfumesByCategoria(@PathVariable Long categoriaId) {
-        List<Perfume> perfumes = perfumeService.findByCategoria(categoriaId);
-        return ResponseEntity.ok(perfumes.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList()));
+    public ResponseEntity<List<PerfumeDTO>> getPerfumesByCategoria(@PathVariable Long categoriaId, WebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
+        return ResponseEntity.ok(perfumeService.findDTOByCategoria(categoriaId));
     }
 
     @GetMapping("/buscar")
-    public ResponseEntity<List<PerfumeDTO>> buscarPerfumes(@RequestParam String nombre) {
-        List<Perfume> perfumes = perfumeService.findByNombre(nombre);
-        return ResponseEntity.ok(perfumes.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList()));
+    public ResponseEntity<List<PerfumeDTO>> buscarPerfumes(
+            @RequestParam String nombre,
+            @RequestParam(defaultValue = "50") int limit,
+            WebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
+        return ResponseEntity.ok(perfumeSearchIndex.buscar(nombre, Math.max(1, Math.min(limit, LIMITE_MAXIMO))));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<?> buscarConFacetas(
+            @RequestParam(required = false) List<Long> categorias,
+            @RequestParam(required = false) List<Long> notas,
+            @RequestParam(required = false) Double precioMin,
+            @RequestParam(required = false) Double precioMax,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "" + LIMITE_POR_DEFECTO) int size,
+            WebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
+        if (page < 0 || (precioMin != null && precioMax != null && precioMin > precioMax)) {
+            Map<String, String> response = new HashMap<>();
+            response.put("message", "Parámetros de búsqueda inválidos");
+            return ResponseEntity.badRequest().body(response);
+        }
+        return ResponseEntity.ok(perfumeFacetIndex.buscar(categorias, notas, precioMin, precioMax,
+                page, Math.max(1, Math.min(size, LIMITE_MAXIMO))));
     }
 
     @PostMapping
@@ -77,13 +148,12 @@ public class PerfumeController {
     @PutMapping("/{id}")
     public ResponseEntity<?> updatePerfume(@PathVariable Long id, @RequestBody Perfume perfume) {
         try {
-            System.out.println("Actualizando perfume con ID: " + id);
+            log.debug("Actualizando perfume con ID: {}", id);
             Perfume updatedPerfume = perfumeService.update(id, perfume);
-            System.out.println("Perfume actualizado con éxito: " + updatedPerfume.getNombre());
+            log.debug("Perfume actualizado con éxito: {}", updatedPerfume.getNombre());
             return ResponseEntity.ok(updatedPerfume);
         } catch (Exception e) {
-            System.err.println("Error al actualizar perfume: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al actualizar perfume: {}", e.getMessage(), e);
             return ResponseEntity.status(500).body("Error al actualizar el perfume: " + e.getMessage());
         }
     }
@@ -91,13 +161,12 @@ public class PerfumeController {
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deletePerfume(@PathVariable Long id) {
         try {
-            System.out.println("Eliminando perfume con ID: " + id);
+            log.debug("Eliminando perfume con ID: {}", id);
             perfumeService.deleteById(id);
-            System.out.println("Perfume eliminado correctamente");
+            log.debug("Perfume eliminado correctamente");
             return ResponseEntity.ok().build();
         } catch (Exception e) {
-            System.err.println("Error al eliminar perfume: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al eliminar perfume: {}", e.getMessage(), e);
             
             // Detectar específicamente errores de integridad referencial
             String errorMsg = e.getMessage();
@@ -123,8 +192,8 @@ public class PerfumeController {
             @PathVariable Long id, 
             @RequestBody Map<String, Object> datos) {
         try {
-            System.out.println("Actualizando perfume (simple) con ID: " + id);
-            System.out.println("Datos recibidos: " + datos);
+            log.debug("Actualizando perfume (simple) con ID: {}", id);
+            log.debug("Datos recibidos: {}", datos);
             
             // Verificar que el perfume existe
             Optional<Perfume> perfumeOpt = perfumeService.findById(id);
@@ -156,7 +225,7 @@ public class PerfumeController {
                         perfumeExistente.setPrecio(nuevoPrecio);
                     }
                 } catch (NumberFormatException e) {
-                    System.err.println("Error al parsear precio: " + e.getMessage());
+                    log.warn("Error al parsear precio: {}", e.getMessage());
                 }
             }
             
@@ -179,8 +248,7 @@ public class PerfumeController {
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
-            System.err.println("Error al actualizar perfume (simple): " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al actualizar perfume (simple): {}", e.getMessage(), e);
             return ResponseEntity.status(500).body("Error al actualizar el perfume: " + e.getMessage());
         }
     }
@@ -188,7 +256,7 @@ public class PerfumeController {
     @PutMapping("/{id}/safe-update")
     public ResponseEntity<?> safeUpdatePerfume(@PathVariable Long id, @RequestBody Map<String, Object> datos) {
         try {
-            System.out.println("Actualizando perfume (safe) con ID: " + id);
+            log.debug("Actualizando perfume (safe) con ID: {}", id);
             
             // Verificar que el perfume existe
             Optional<Perfume> perfumeOpt = perfumeService.findById(id);
@@ -218,7 +286,7 @@ public class PerfumeController {
                         perfumeExistente.setPrecio(nuevoPrecio);
                     }
                 } catch (NumberFormatException e) {
-                    System.err.println("Error al parsear precio: " + e.getMessage());
+                    log.warn("Error al parsear precio: {}", e.getMessage());
                 }
             }
             
@@ -253,8 +321,7 @@ public class PerfumeController {
                         perfumeService.actualizarCategorias(perfumeExistente, categoriasIds);
                     }
                 } catch (Exception e) {
-                    System.err.println("Error al procesar categorías: " + e.getMessage());
-                    e.printStackTrace();
+                    log.error("Error al procesar categorías: {}", e.getMessage(), e);
                 }
             }
             
@@ -284,8 +351,7 @@ public class PerfumeController {
                         perfumeService.actualizarNotasOlfativas(perfumeExistente, notasIds);
                     }
                 } catch (Exception e) {
-                    System.err.println("Error al procesar notas olfativas: " + e.getMessage());
-                    e.printStackTrace();
+                    log.error("Error al procesar notas olfativas: {}", e.getMessage(), e);
                 }
             }
             
@@ -303,12 +369,18 @@ public class PerfumeController {
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
-            System.err.println("Error al actualizar perfume (safe): " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al actualizar perfume (safe): {}", e.getMessage(), e);
             return ResponseEntity.status(500).body("Error al actualizar el perfume: " + e.getMessage());
         }
     }
 
+    // Los listados incluyen nombres de categorías y notas, así que dependen de las tres versiones.
+    // Si el cliente ya tiene esta versión se responde 304 sin consultar ni serializar nada.
+    private boolean notModified(WebRequest request) {
+        Tipo[] tipos = {Tipo.PERFUME, Tipo.CATEGORIA, Tipo.NOTA_OLFATIVA};
+        return request.checkNotModified(catalogoVersionService.getEtag(tipos), catalogoVersionService.getLastModified(tipos));
+    }
+
     private PerfumeDTO convertToDTO(Perfume perfume) {
         return new PerfumeDTO(
             perfume.getId(),
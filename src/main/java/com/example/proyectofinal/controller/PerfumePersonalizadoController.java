@@ -20,6 +20,7 @@ import com.example.proyectofinal.model.Usuario;
 import com.example.proyectofinal.repository.NotaOlfativaRepository;
 import com.example.proyectofinal.repository.UsuarioRepository;
 import com.example.proyectofinal.service.PerfumePersonalizadoService;
+import lombok.extern.slf4j.Slf4j;
 
 @RestController
 @RequestMapping("/api/perfumes-personalizados")
@@ -27,6 +28,7 @@ import com.example.proyectofinal.service.PerfumePersonalizadoService;
                         "http://localhost:5176", "http://localhost:5177", "http://localhost:5178", 
                         "http://localhost:5179", "http://localhost:5180"}, 
              allowCredentials = "true")
+@Slf4j
 public class PerfumePersonalizadoController {
 
     @Autowired
@@ -47,7 +49,7 @@ public class PerfumePersonalizadoController {
             }
             return ResponseEntity.ok(perfumes);
         } catch (Exception e) {
-            System.err.println("Error al obtener todos los perfumes personalizados: " + e.getMessage());
+            log.error("Error al obtener todos los perfumes personalizados: {}", e.getMessage());
             return ResponseEntity.ok(new ArrayList<>());
         }
     }
@@ -59,7 +61,7 @@ public class PerfumePersonalizadoController {
                     .map(ResponseEntity::ok)
                     .orElse(ResponseEntity.notFound().build());
         } catch (Exception e) {
-            System.err.println("Error al obtener perfume personalizado por ID: " + e.getMessage());
+            log.error("Error al obtener perfume personalizado por ID: {}", e.getMessage());
             return ResponseEntity.notFound().build();
         }
     }
@@ -73,7 +75,7 @@ public class PerfumePersonalizadoController {
             }
             return ResponseEntity.ok(perfumes);
         } catch (Exception e) {
-            System.err.println("Error al obtener perfumes personalizados por usuario: " + e.getMessage());
+            log.error("Error al obtener perfumes personalizados por usuario: {}", e.getMessage());
             return ResponseEntity.ok(new ArrayList<>());
         }
     }
@@ -87,7 +89,7 @@ public class PerfumePersonalizadoController {
             }
             return ResponseEntity.ok(perfumes);
         } catch (Exception e) {
-            System.err.println("Error al obtener perfumes personalizados aprobados: " + e.getMessage());
+            log.error("Error al obtener perfumes personalizados aprobados: {}", e.getMessage());
             return ResponseEntity.ok(new ArrayList<>());
         }
     }
@@ -95,7 +97,7 @@ public class PerfumePersonalizadoController {
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> createPerfumePersonalizadoJson(@RequestBody Map<String, Object> perfumeData) {
         try {
-            System.out.println("Recibiendo solicitud JSON para crear perfume personalizado: " + perfumeData);
+            log.debug("Recibiendo solicitud JSON para crear perfume personalizado: {}", perfumeData);
             
             // 1. Validar datos básicos
             String nombre = (String) perfumeData.get("nombre");
@@ -129,7 +131,7 @@ public class PerfumePersonalizadoController {
                 
                 perfumePersonalizado.setUsuario(usuario);
             } catch (Exception e) {
-                System.err.println("Error al procesar usuario: " + e.getMessage());
+                log.error("Error al procesar usuario: {}", e.getMessage());
                 return ResponseEntity.badRequest().body("Error al procesar el usuario: " + e.getMessage());
             }
             
@@ -163,7 +165,7 @@ public class PerfumePersonalizadoController {
                 
                 perfumePersonalizado.setNotas(notas);
             } catch (Exception e) {
-                System.err.println("Error al procesar notas olfativas: " + e.getMessage());
+                log.error("Error al procesar notas olfativas: {}", e.getMessage());
                 return ResponseEntity.badRequest().body("Error al procesar las notas olfativas: " + e.getMessage());
             }
             
@@ -199,11 +201,11 @@ public class PerfumePersonalizadoController {
                 
                 return ResponseEntity.ok(response);
             } catch (Exception e) {
-                System.err.println("Error al guardar perfume personalizado: " + e.getMessage());
+                log.error("Error al guardar perfume personalizado: {}", e.getMessage());
                 return ResponseEntity.status(500).body("Error al guardar el perfume: " + e.getMessage());
             }
         } catch (Exception e) {
-            System.err.println("Error general al crear perfume personalizado: " + e.getMessage());
+            log.error("Error general al crear perfume personalizado: {}", e.getMessage());
             return ResponseEntity.status(500).body("Error interno del servidor: " + e.getMessage());
         }
     }
@@ -216,18 +218,18 @@ public class PerfumePersonalizadoController {
             @RequestParam(value = "notasIds", required = true) List<Long> notasIds,
             @RequestParam(value = "imagenUrl", required = false) String imagenUrl) {
         try {
-            System.out.println("==== Inicio de procesamiento de creación de perfume personalizado (multipart) ====");
-            System.out.println("Parámetros recibidos:");
-            System.out.println("- nombre: " + (nombre != null ? nombre : "NULL"));
-            System.out.println("- descripcion: " + (descripcion != null ? descripcion : "NULL"));
-            System.out.println("- usuarioId: " + usuarioId);
-            System.out.println("- notasIds size: " + (notasIds != null ? notasIds.size() : "NULL"));
-            System.out.println("- notasIds: " + (notasIds != null ? notasIds.toString() : "NULL"));
-            System.out.println("- imagenUrl: " + (imagenUrl != null ? imagenUrl : "No incluida"));
+            log.debug("==== Inicio de procesamiento de creación de perfume personalizado (multipart) ====");
+            log.debug("Parámetros recibidos:");
+            log.debug("- nombre: {}", (nombre != null ? nombre : "NULL"));
+            log.debug("- descripcion: {}", (descripcion != null ? descripcion : "NULL"));
+            log.debug("- usuarioId: {}", usuarioId);
+            log.debug("- notasIds size: {}", (notasIds != null ? notasIds.size() : "NULL"));
+            log.debug("- notasIds: {}", (notasIds != null ? notasIds.toString() : "NULL"));
+            log.debug("- imagenUrl: {}", (imagenUrl != null ? imagenUrl : "No incluida"));
             
             // 1. Validar datos básicos
             if (nombre == null || nombre.trim().isEmpty()) {
-                System.out.println("Error: Nombre vacío o nulo");
+                log.warn("Error: Nombre vacío o nulo");
                 return ResponseEntity.badRequest().body(Map.of(
                     "message", "El nombre del perfume es obligatorio",
                     "status", 400,
@@ -244,11 +246,11 @@ public class PerfumePersonalizadoController {
             
             // 3. Obtener y verificar usuario
             try {
-                System.out.println("Buscando usuario con ID: " + usuarioId);
+                log.debug("Buscando usuario con ID: {}", usuarioId);
                 Optional<Usuario> usuarioOpt = usuarioRepository.findById(usuarioId);
                 
                 if (!usuarioOpt.isPresent()) {
-                    System.out.println("Error: Usuario no encontrado con ID: " + usuarioId);
+                    log.warn("Error: Usuario no encontrado con ID: {}", usuarioId);
                     return ResponseEntity.badRequest().body(Map.of(
                         "message", "Usuario no encontrado con ID: " + usuarioId,
                         "status", 400,
@@ -257,10 +259,9 @@ public class PerfumePersonalizadoController {
                 }
                 
                 perfumePersonalizado.setUsuario(usuarioOpt.get());
-                System.out.println("Usuario asignado correctamente: " + usuarioOpt.get().getNombre());
+                log.debug("Usuario asignado correctamente: {}", usuarioOpt.get().getNombre());
             } catch (Exception e) {
-                System.err.println("Error al procesar usuario: " + e.getMessage());
-                e.printStackTrace();
+                log.error("Error al procesar usuario: {}", e.getMessage(), e);
                 return ResponseEntity.badRequest().body(Map.of(
                     "message", "Error al procesar el usuario: " + e.getMessage(),
                     "status", 400,
@@ -271,7 +272,7 @@ public class PerfumePersonalizadoController {
             // 4. Procesar notas olfativas
             try {
                 if (notasIds == null || notasIds.isEmpty()) {
-                    System.out.println("Error: No se proporcionaron notas olfativas");
+                    log.warn("Error: No se proporcionaron notas olfativas");
                     return ResponseEntity.badRequest().body(Map.of(
                         "message", "Debe seleccionar al menos una nota olfativa",
                         "status", 400,
@@ -280,22 +281,22 @@ public class PerfumePersonalizadoController {
                 }
                 
                 List<NotaOlfativa> notas = new ArrayList<>();
-                System.out.println("Procesando " + notasIds.size() + " notas olfativas");
+                log.debug("Procesando {} notas olfativas", notasIds.size());
                 
                 for (Long notaId : notasIds) {
-                    System.out.println("Buscando nota con ID: " + notaId);
+                    log.debug("Buscando nota con ID: {}", notaId);
                     Optional<NotaOlfativa> notaOpt = notaOlfativaRepository.findById(notaId);
                     
                     if (notaOpt.isPresent()) {
                         notas.add(notaOpt.get());
-                        System.out.println("Nota añadida: " + notaOpt.get().getNombre());
+                        log.debug("Nota añadida: {}", notaOpt.get().getNombre());
                     } else {
-                        System.out.println("Nota no encontrada con ID: " + notaId);
+                        log.debug("Nota no encontrada con ID: {}", notaId);
                     }
                 }
                 
                 if (notas.isEmpty()) {
-                    System.out.println("Error: No se encontraron notas olfativas válidas");
+                    log.warn("Error: No se encontraron notas olfativas válidas");
                     return ResponseEntity.badRequest().body(Map.of(
                         "message", "No se encontraron notas olfativas válidas",
                         "status", 400,
@@ -304,10 +305,9 @@ public class PerfumePersonalizadoController {
                 }
                 
                 perfumePersonalizado.setNotas(notas);
-                System.out.println("Añadidas " + notas.size() + " notas al perfume");
+                log.debug("Añadidas {} notas al perfume", notas.size());
             } catch (Exception e) {
-                System.err.println("Error al procesar notas olfativas: " + e.getMessage());
-                e.printStackTrace();
+                log.error("Error al procesar notas olfativas: {}", e.getMessage(), e);
                 return ResponseEntity.badRequest().body(Map.of(
                     "message", "Error al procesar las notas olfativas: " + e.getMessage(),
                     "status", 400,
@@ -317,10 +317,10 @@ public class PerfumePersonalizadoController {
             
             // 5. Procesar URL de imagen si existe
             if (imagenUrl != null && !imagenUrl.trim().isEmpty()) {
-                System.out.println("Guardando URL de imagen externa: " + imagenUrl);
+                log.debug("Guardando URL de imagen externa: {}", imagenUrl);
                 perfumePersonalizado.setImagenUrl(imagenUrl.trim());
             } else {
-                System.out.println("No se proporcionó URL de imagen");
+                log.debug("No se proporcionó URL de imagen");
                 // Asignar imagen por defecto de placeholder.com con tamaño 300x300 si no hay URL
                 perfumePersonalizado.setImagenUrl("https://via.placeholder.com/300?text=Perfume+Personalizado");
             }
@@ -329,13 +329,13 @@ public class PerfumePersonalizadoController {
             double precioBase = 50.0;
             precioBase += perfumePersonalizado.getNotas().size() * 10.0;
             perfumePersonalizado.setPrecio(precioBase);
-            System.out.println("Precio calculado: " + precioBase + " euros");
+            log.debug("Precio calculado: {} euros", precioBase);
             
             // 7. Guardar el perfume personalizado
             try {
-                System.out.println("Guardando perfume personalizado en la base de datos...");
+                log.debug("Guardando perfume personalizado en la base de datos...");
                 PerfumePersonalizado savedPerfume = perfumePersonalizadoService.save(perfumePersonalizado);
-                System.out.println("Perfume guardado con éxito. ID asignado: " + savedPerfume.getId());
+                log.debug("Perfume guardado con éxito. ID asignado: {}", savedPerfume.getId());
                 
                 // 8. Construir respuesta simplificada
                 Map<String, Object> response = new HashMap<>();
@@ -348,11 +348,10 @@ public class PerfumePersonalizadoController {
                 response.put("status", 200);
                 response.put("imagenUrl", savedPerfume.getImagenUrl());
                 
-                System.out.println("==== Fin de procesamiento de creación de perfume personalizado (multipart) ====");
+                log.debug("==== Fin de procesamiento de creación de perfume personalizado (multipart) ====");
                 return ResponseEntity.ok(response);
             } catch (Exception e) {
-                System.err.println("Error al guardar perfume personalizado: " + e.getMessage());
-                e.printStackTrace();
+                log.error("Error al guardar perfume personalizado: {}", e.getMessage(), e);
                 return ResponseEntity.status(500).body(Map.of(
                     "message", "Error al guardar el perfume: " + e.getMessage(),
                     "status", 500,
@@ -360,8 +359,7 @@ public class PerfumePersonalizadoController {
                 ));
             }
         } catch (Exception e) {
-            System.err.println("Error general al crear perfume personalizado: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error general al crear perfume personalizado: {}", e.getMessage(), e);
             return ResponseEntity.status(500).body(Map.of(
                 "message", "Error interno del servidor: " + e.getMessage(),
                 "status", 500,
@@ -373,25 +371,25 @@ public class PerfumePersonalizadoController {
     @PutMapping("/{id}")
     public ResponseEntity<?> updatePerfumePersonalizado(@PathVariable Long id, @RequestBody Map<String, Object> datos) {
         try {
-            System.out.println("========== INICIO ACTUALIZACIÓN PERFUME PERSONALIZADO ==========");
-            System.out.println("Actualizando perfume personalizado con ID: " + id);
-            System.out.println("Datos recibidos: " + datos);
+            log.debug("========== INICIO ACTUALIZACIÓN PERFUME PERSONALIZADO ==========");
+            log.debug("Actualizando perfume personalizado con ID: {}", id);
+            log.debug("Datos recibidos: {}", datos);
             
             // Verificar que el perfume existe
             Optional<PerfumePersonalizado> perfumeOpt = perfumePersonalizadoService.findById(id);
             if (!perfumeOpt.isPresent()) {
-                System.out.println("Error: Perfume no encontrado con ID: " + id);
+                log.warn("Error: Perfume no encontrado con ID: {}", id);
                 return ResponseEntity.notFound().build();
             }
             
             PerfumePersonalizado perfumeExistente = perfumeOpt.get();
-            System.out.println("Perfume existente encontrado: " + perfumeExistente.getNombre());
+            log.debug("Perfume existente encontrado: {}", perfumeExistente.getNombre());
             
             // Actualizar nombre si se proporciona
             if (datos.containsKey("nombre")) {
                 String nombre = (String) datos.get("nombre");
                 if (nombre != null && !nombre.trim().isEmpty()) {
-                    System.out.println("Actualizando nombre de '" + perfumeExistente.getNombre() + "' a '" + nombre.trim() + "'");
+                    log.debug("Actualizando nombre de '{}' a '{}'", perfumeExistente.getNombre(), nombre.trim());
                     perfumeExistente.setNombre(nombre.trim());
                 }
             }
@@ -399,7 +397,7 @@ public class PerfumePersonalizadoController {
             // Actualizar descripción si se proporciona
             if (datos.containsKey("descripcion")) {
                 String descripcion = (String) datos.get("descripcion");
-                System.out.println("Actualizando descripción a: " + (descripcion != null ? descripcion : "vacío"));
+                log.debug("Actualizando descripción a: {}", (descripcion != null ? descripcion : "vacío"));
                 perfumeExistente.setDescripcion(descripcion != null ? descripcion.trim() : "");
             }
             
@@ -411,7 +409,7 @@ public class PerfumePersonalizadoController {
                     
                     if (notasIdsObj instanceof List) {
                         List<?> lista = (List<?>) notasIdsObj;
-                        System.out.println("Recibida lista de notasIds con " + lista.size() + " elementos");
+                        log.debug("Recibida lista de notasIds con {} elementos", lista.size());
                         
                         for (Object item : lista) {
                             if (item instanceof Number) {
@@ -419,44 +417,43 @@ public class PerfumePersonalizadoController {
                             } else if (item instanceof String) {
                                 notasIds.add(Long.parseLong((String) item));
                             } else {
-                                System.out.println("Ignorando elemento no reconocido en notasIds: " + item);
+                                log.debug("Ignorando elemento no reconocido en notasIds: {}", item);
                             }
                         }
                     }
                     
                     if (!notasIds.isEmpty()) {
-                        System.out.println("Procesando " + notasIds.size() + " notas olfativas");
+                        log.debug("Procesando {} notas olfativas", notasIds.size());
                         List<NotaOlfativa> nuevasNotas = new ArrayList<>();
                         
                         for (Long notaId : notasIds) {
-                            System.out.println("Buscando nota con ID: " + notaId);
+                            log.debug("Buscando nota con ID: {}", notaId);
                             Optional<NotaOlfativa> notaOpt = notaOlfativaRepository.findById(notaId);
                             
                             if (notaOpt.isPresent()) {
                                 nuevasNotas.add(notaOpt.get());
-                                System.out.println("Nota añadida: " + notaOpt.get().getNombre());
+                                log.debug("Nota añadida: {}", notaOpt.get().getNombre());
                             } else {
-                                System.out.println("Nota no encontrada con ID: " + notaId);
+                                log.debug("Nota no encontrada con ID: {}", notaId);
                             }
                         }
                         
                         // Sólo establecer notas si se encontraron válidas
                         if (!nuevasNotas.isEmpty()) {
-                            System.out.println("Estableciendo " + nuevasNotas.size() + " notas al perfume");
+                            log.debug("Estableciendo {} notas al perfume", nuevasNotas.size());
                             perfumeExistente.setNotas(nuevasNotas);
                             
                             // Actualizar precio basado en número de notas
                             double precioBase = 50.0;
                             precioBase += nuevasNotas.size() * 10.0;
                             perfumeExistente.setPrecio(precioBase);
-                            System.out.println("Precio actualizado: " + precioBase);
+                            log.debug("Precio actualizado: {}", precioBase);
                         } else {
-                            System.out.println("No se encontraron notas válidas entre las proporcionadas");
+                            log.debug("No se encontraron notas válidas entre las proporcionadas");
                         }
                     }
                 } catch (Exception e) {
-                    System.err.println("Error al procesar notasIds: " + e.getMessage());
-                    e.printStackTrace();
+                    log.error("Error al procesar notasIds: {}", e.getMessage(), e);
                 }
             }
             
@@ -466,24 +463,23 @@ public class PerfumePersonalizadoController {
                 
                 if (imagenUrl == null || imagenUrl.trim().isEmpty()) {
                     // Si se proporciona una cadena vacía, asignar imagen por defecto
-                    System.out.println("Se recibió URL de imagen vacía, asignando imagen por defecto");
+                    log.debug("Se recibió URL de imagen vacía, asignando imagen por defecto");
                     perfumeExistente.setImagenUrl("https://via.placeholder.com/300?text=Perfume+Personalizado");
                 } else {
                     // Si se proporciona una URL, guardarla
-                    System.out.println("Actualizando URL de imagen a: " + imagenUrl.trim());
+                    log.debug("Actualizando URL de imagen a: {}", imagenUrl.trim());
                     perfumeExistente.setImagenUrl(imagenUrl.trim());
                 }
             } else {
-                System.out.println("No se ha modificado la imagen, manteniendo URL actual: " + 
-                                  (perfumeExistente.getImagenUrl() != null ? perfumeExistente.getImagenUrl() : "NULL"));
+                log.debug("No se ha modificado la imagen, manteniendo URL actual: {}", (perfumeExistente.getImagenUrl() != null ? perfumeExistente.getImagenUrl() : "NULL"));
             }
             
             // Guardar los cambios usando saveAndFlush para garantizar la persistencia inmediata
-            System.out.println("Guardando cambios en la base de datos con saveAndFlush()...");
+            log.debug("Guardando cambios en la base de datos con saveAndFlush()...");
             PerfumePersonalizado resultado = perfumePersonalizadoService.save(perfumeExistente);
             
             if (resultado == null) {
-                System.err.println("Error: El servicio devolvió null después de la actualización");
+                log.error("Error: El servicio devolvió null después de la actualización");
                 return ResponseEntity.status(500).body(Map.of(
                     "message", "Error al actualizar el perfume: No se pudo completar la operación",
                     "status", 500,
@@ -491,7 +487,7 @@ public class PerfumePersonalizadoController {
                 ));
             }
             
-            System.out.println("Perfume actualizado correctamente con ID: " + resultado.getId());
+            log.debug("Perfume actualizado correctamente con ID: {}", resultado.getId());
             
             // Construir respuesta completa
             Map<String, Object> response = new HashMap<>();
@@ -506,11 +502,10 @@ public class PerfumePersonalizadoController {
             )).collect(Collectors.toList()));
             response.put("mensaje", "Perfume actualizado con éxito");
             
-            System.out.println("========== FIN ACTUALIZACIÓN PERFUME PERSONALIZADO ==========");
+            log.debug("========== FIN ACTUALIZACIÓN PERFUME PERSONALIZADO ==========");
             return ResponseEntity.ok(response);
         } catch (Exception e) {
-            System.err.println("Error al actualizar perfume personalizado: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al actualizar perfume personalizado: {}", e.getMessage(), e);
             return ResponseEntity.status(500).body(Map.of(
                 "message", "Error al actualizar el perfume: " + e.getMessage(),
                 "status", 500,
@@ -525,7 +520,7 @@ public class PerfumePersonalizadoController {
             perfumePersonalizadoService.deleteById(id);
             return ResponseEntity.ok().build();
         } catch (Exception e) {
-            System.err.println("Error al eliminar perfume personalizado: " + e.getMessage());
+            log.error("Error al eliminar perfume personalizado: {}", e.getMessage());
             return ResponseEntity.badRequest().body("Error al eliminar el perfume personalizado: " + e.getMessage());
         }
     }
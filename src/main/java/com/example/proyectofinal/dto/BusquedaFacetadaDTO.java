@@ -0,0 +1,30 @@
+package com.example.proyectofinal.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BusquedaFacetadaDTO {
+    private List<PerfumeDTO> items;
+    private int total;
+    private int page;
+    private int size;
+    private List<FacetaDTO> categorias;
+    private List<FacetaDTO> notas;
+    private Double precioMin; // rango de precios de los resultados, null si no hay ninguno
+    private Double precioMax;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FacetaDTO {
+        private Long id;
+        private String nombre;
+        private int count;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.proyectofinal.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CambiosCarritoDTO {
+    private Long usuarioId;
+    private List<OperacionCarritoDTO> operaciones = new ArrayList<>(); // se aplican en este orden
+}
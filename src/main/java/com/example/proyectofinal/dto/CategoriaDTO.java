@@ -0,0 +1,13 @@
+package com.example.proyectofinal.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CategoriaDTO {
+    private Long id;
+    private String nombre;
+}
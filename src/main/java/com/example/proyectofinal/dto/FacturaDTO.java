@@ -4,6 +4,8 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -26,6 +28,12 @@ public class FacturaDTO {
     private Double total;
     private List<DetalleFacturaDTO> detalles = new ArrayList<>();
     
+    // Proyección de la cabecera en FacturaRepository; las líneas se añaden después
+    public FacturaDTO(Long id, Long usuarioId, String usuarioNombre, String usuarioCorreo, LocalDateTime fechaEmision,
+                      String metodoPago, String direccionEnvio, Double total) {
+        this(id, usuarioId, usuarioNombre, usuarioCorreo, fechaEmision, metodoPago, direccionEnvio, total, new ArrayList<>());
+    }
+    
     /**
      * DTO para la representación simplificada de un DetalleFactura
      */
@@ -40,5 +48,8 @@ public class FacturaDTO {
         private Double subtotal;
         private Long perfumeId;
         private Long perfumePersonalizadoId;
+        // Solo para agrupar las líneas de la proyección por factura
+        @JsonIgnore
+        private Long facturaId;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,14 @@
+package com.example.proyectofinal.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotaOlfativaDTO {
+    private Long id;
+    private String nombre;
+    private String descripcion;
+}
@@ -0,0 +1,23 @@
+package com.example.proyectofinal.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Una operación de PATCH /api/carrito. AGREGAR usa perfumeId y cantidad, ACTUALIZAR usa
+ * detalleId y cantidad, ELIMINAR solo detalleId. Si ACTUALIZAR o ELIMINAR nombran una línea
+ * que no está en el carrito no se aplica ninguna operación del lote.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OperacionCarritoDTO {
+
+    public enum Tipo { AGREGAR, ACTUALIZAR, ELIMINAR }
+
+    private Tipo tipo;
+    private Long perfumeId;
+    private Long detalleId;
+    private Integer cantidad;
+}
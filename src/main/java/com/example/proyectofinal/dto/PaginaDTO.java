@@ -0,0 +1,17 @@
+package com.example.proyectofinal.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaDTO<T> {
+    private List<T> items;
+    private String nextCursor; // null cuando no hay más resultados
+    private boolean hasMore;
+    private int limit;
+}
@@ -1,5 +1,6 @@
 package com.example.proyectofinal.dto;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import lombok.AllArgsConstructor;
@@ -17,4 +18,9 @@ public class PerfumeDTO {
     private String imagen;
     private List<String> categorias;
     private List<String> notas;
+
+    // Usado por las consultas de proyección; las listas se rellenan después en lote
+    public PerfumeDTO(Long id, String nombre, Double precio, String descripcion, String imagen) {
+        this(id, nombre, precio, descripcion, imagen, new ArrayList<>(), new ArrayList<>());
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.example.proyectofinal.dto;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumenCarritoDTO {
+    private Long carritoId; // null si el usuario aún no tiene carrito activo
+    private Integer cantidadArticulos;
+    private Long totalCentimos;
+
+    public BigDecimal getTotal() {
+        return BigDecimal.valueOf(totalCentimos, 2);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.proyectofinal.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VentasDiaDTO {
+    private LocalDate dia;
+    private Long facturas;
+    private Long unidades;
+    private Long importeCentimos;
+
+    public BigDecimal getImporte() {
+        return BigDecimal.valueOf(importeCentimos, 2);
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.proyectofinal.dto;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VentasPerfumeDTO {
+    private Long perfumeId;
+    private String nombre; // null si el perfume ya no está en el catálogo
+    private Long unidades;
+    private Long importeCentimos;
+
+    public BigDecimal getImporte() {
+        return BigDecimal.valueOf(importeCentimos, 2);
+    }
+}
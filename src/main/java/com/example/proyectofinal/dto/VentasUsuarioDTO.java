@@ -0,0 +1,25 @@
+package com.example.proyectofinal.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VentasUsuarioDTO {
+    private Long usuarioId;
+    private String nombre;
+    private Long facturas;
+    private Long unidades;
+    private Long importeCentimos;
+    private LocalDateTime primeraCompra;
+    private LocalDateTime ultimaCompra;
+
+    public BigDecimal getImporte() {
+        return BigDecimal.valueOf(importeCentimos, 2);
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.proyectofinal.event;
+
+import lombok.Value;
+
+/**
+ * Se publica cuando un servicio modifica el catálogo (perfumes, categorías o notas olfativas).
+ */
+@Value
+public class CatalogoModificadoEvent {
+
+    public enum Tipo { PERFUME, CATEGORIA, NOTA_OLFATIVA }
+
+    Tipo tipo;
+    Long id;
+}
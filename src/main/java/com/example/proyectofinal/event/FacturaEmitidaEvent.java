@@ -0,0 +1,15 @@
+package com.example.proyectofinal.event;
+
+import lombok.Value;
+
+/**
+ * Se publica dentro de la transacción del checkout cuando se guarda una factura. Sus tareas
+ * posteriores ya están en la bandeja de salida; el evento solo avisa al despachador para que
+ * no espere a su siguiente pasada.
+ */
+@Value
+public class FacturaEmitidaEvent {
+
+    Long facturaId;
+    Long usuarioId;
+}
@@ -15,7 +15,9 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -28,7 +30,8 @@ import lombok.NoArgsConstructor;
 public class Carrito {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "carritos_seq")
+    @SequenceGenerator(name = "carritos_seq", sequenceName = "carritos_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne
@@ -40,7 +43,24 @@ public class Carrito {
     private LocalDateTime fechaCreacion = LocalDateTime.now();
     
     @Column(nullable = false)
-    private String estado = "ACTIVO"; // ACTIVO, PROCESADO, CANCELADO
+    private String estado = "ACTIVO"; // ACTIVO, PROCESADO, CANCELADO, ABANDONADO
+    
+    // Totales de las líneas. Solo cambian con UPDATE explícitos, nunca al guardar la entidad,
+    // para que un guardado con datos leídos antes no pise incrementos concurrentes
+    @Column(nullable = false, updatable = false)
+    private Integer cantidadArticulos = 0;
+    
+    @Column(nullable = false, updatable = false)
+    private Long totalCentimos = 0L;
+    
+    // Se actualiza junto con los totales; la usa LimpiezaCarritosService
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime fechaActualizacion = LocalDateTime.now();
+    
+    // Los UPDATE de totales y de estado la incrementan a mano, así que cambia con cada
+    // modificación de las líneas y el checkout falla si el carrito cambió mientras se facturaba
+    @Version
+    private Long version;
     
     @OneToMany(mappedBy = "carrito", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonIgnoreProperties("carrito")
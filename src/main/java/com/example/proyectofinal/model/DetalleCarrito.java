@@ -9,7 +9,9 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -22,17 +24,18 @@ import lombok.NoArgsConstructor;
 public class DetalleCarrito {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "detalles_carrito_seq")
+    @SequenceGenerator(name = "detalles_carrito_seq", sequenceName = "detalles_carrito_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne
     @JoinColumn(name = "carrito_id", nullable = false)
-    @JsonIgnoreProperties("detalles")
+    @JsonIgnoreProperties({"detalles", "cantidadArticulos", "totalCentimos", "hibernateLazyInitializer", "handler"})
     private Carrito carrito;
     
     @ManyToOne
     @JoinColumn(name = "perfume_id")
-    @JsonIgnoreProperties({"categorias", "notasOlfativas"})
+    @JsonIgnoreProperties({"categorias", "notasOlfativas", "hibernateLazyInitializer", "handler"})
     private Perfume perfume;
     
     @ManyToOne
@@ -48,4 +51,7 @@ public class DetalleCarrito {
     
     @Column(nullable = false)
     private Double subtotal;
+    
+    @Version
+    private Long version;
 } 
\ No newline at end of file
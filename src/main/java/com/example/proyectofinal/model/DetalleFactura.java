@@ -10,6 +10,7 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -27,7 +28,8 @@ import org.hibernate.annotations.OnDeleteAction;
 public class DetalleFactura {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "detalles_factura_seq")
+    @SequenceGenerator(name = "detalles_factura_seq", sequenceName = "detalles_factura_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne
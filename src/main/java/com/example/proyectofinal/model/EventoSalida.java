@@ -0,0 +1,58 @@
+package com.example.proyectofinal.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Tarea pendiente de la bandeja de salida del checkout (ver BandejaSalidaService). Guarda
+ * ids y no relaciones: la tarea se ejecuta más tarde y lee lo que necesite en ese momento.
+ */
+@Entity
+@Table(name = "eventos_salida")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventoSalida {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "eventos_salida_seq")
+    @SequenceGenerator(name = "eventos_salida_seq", sequenceName = "eventos_salida_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, length = 50)
+    private String tipo;
+
+    @Column(nullable = false)
+    private Long facturaId;
+
+    @Column(nullable = false)
+    private Long usuarioId;
+
+    // PENDIENTE, PROCESADO o FALLIDO (agotó los reintentos)
+    @Column(nullable = false, length = 20)
+    private String estado;
+
+    @Column(nullable = false)
+    private Integer intentos;
+
+    @Column(nullable = false)
+    private LocalDateTime proximoIntento;
+
+    @Column(length = 1000)
+    private String ultimoError;
+
+    @Column(nullable = false)
+    private LocalDateTime fechaCreacion;
+
+    private LocalDateTime fechaProcesado;
+}
@@ -1,17 +1,66 @@
 package com.example.proyectofinal.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.example.proyectofinal.dto.ResumenCarritoDTO;
 import com.example.proyectofinal.model.Carrito;
 import com.example.proyectofinal.model.Usuario;
 
 @Repository
 public interface CarritoRepository extends JpaRepository<Carrito, Long> {
     List<Carrito> findByUsuario(Usuario usuario);
-    Optional<Carrito> findByUsuarioAndEstado(Usuario usuario, String estado);
-    List<Carrito> findByUsuarioIdAndEstado(Long usuarioId, String estado);
-} 
\ No newline at end of file
+
+    // El carrito activo con sus líneas y productos en una sola consulta
+    @Query("SELECT c FROM Carrito c JOIN FETCH c.usuario " +
+           "LEFT JOIN FETCH c.detalles d LEFT JOIN FETCH d.perfume LEFT JOIN FETCH d.perfumePersonalizado " +
+           "WHERE c.usuario.id = :usuarioId AND c.estado = 'ACTIVO'")
+    Optional<Carrito> findActivoConDetalles(@Param("usuarioId") Long usuarioId);
+
+    @Query("SELECT new com.example.proyectofinal.dto.ResumenCarritoDTO(c.id, c.cantidadArticulos, c.totalCentimos) " +
+           "FROM Carrito c WHERE c.usuario.id = :usuarioId AND c.estado = 'ACTIVO'")
+    Optional<ResumenCarritoDTO> findResumenActivo(@Param("usuarioId") Long usuarioId);
+
+    // Suma los incrementos en la propia sentencia, así dos cambios concurrentes no se pisan.
+    // Devuelve 0 si el carrito ya no está activo (por ejemplo, se acaba de comprar)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Carrito c SET c.cantidadArticulos = c.cantidadArticulos + :articulos, " +
+           "c.totalCentimos = c.totalCentimos + :centimos, c.fechaActualizacion = LOCAL DATETIME, " +
+           "c.version = c.version + 1 WHERE c.id = :carritoId AND c.estado = 'ACTIVO'")
+    int sumarTotales(@Param("carritoId") Long carritoId, @Param("articulos") int articulos, @Param("centimos") long centimos);
+
+    // Vuelve a calcular los totales desde las líneas; para cambios hechos fuera de CarritoService
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Carrito c SET " +
+           "c.cantidadArticulos = (SELECT COALESCE(SUM(d.cantidad), 0) FROM DetalleCarrito d WHERE d.carrito.id = c.id), " +
+           "c.totalCentimos = (SELECT COALESCE(SUM(d.cantidad * CAST(ROUND(d.precioUnitario * 100, 0) AS Long)), 0) " +
+           "FROM DetalleCarrito d WHERE d.carrito.id = c.id), " +
+           "c.fechaActualizacion = LOCAL DATETIME, c.version = c.version + 1 " +
+           "WHERE c.id = :carritoId")
+    int recalcularTotales(@Param("carritoId") Long carritoId);
+
+    @Query("SELECT c.id FROM Carrito c WHERE c.estado = 'ACTIVO' AND c.fechaActualizacion < :limite ORDER BY c.id")
+    List<Long> findIdsActivosSinCambiosDesde(@Param("limite") LocalDateTime limite, Limit limit);
+
+    // Vuelve a comprobar la inactividad por si el carrito se ha usado desde que se seleccionó
+    @Modifying
+    @Query("UPDATE Carrito c SET c.estado = 'ABANDONADO', c.fechaActualizacion = LOCAL DATETIME, c.version = c.version + 1 " +
+           "WHERE c.id IN :ids AND c.estado = 'ACTIVO' AND c.fechaActualizacion < :limite")
+    int abandonar(@Param("ids") Collection<Long> ids, @Param("limite") LocalDateTime limite);
+
+    @Query("SELECT c.id FROM Carrito c WHERE c.estado <> 'ACTIVO' AND c.fechaActualizacion < :limite ORDER BY c.id")
+    List<Long> findIdsCerradosDesde(@Param("limite") LocalDateTime limite, Limit limit);
+
+    @Modifying
+    @Query("DELETE FROM Carrito c WHERE c.id IN :ids AND c.estado <> 'ACTIVO'")
+    int deleteCerradosByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -1,14 +1,20 @@
 package com.example.proyectofinal.repository;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import com.example.proyectofinal.dto.CategoriaDTO;
 import com.example.proyectofinal.model.Categoria;
 
 @Repository
 public interface CategoriaRepository extends JpaRepository<Categoria, Long> {
     Optional<Categoria> findByNombre(String nombre);
     boolean existsByNombre(String nombre);
+    
+    @Query("SELECT new com.example.proyectofinal.dto.CategoriaDTO(c.id, c.nombre) FROM Categoria c ORDER BY c.id")
+    List<CategoriaDTO> findAllDTO();
 } 
\ No newline at end of file
@@ -2,11 +2,38 @@ package com.example.proyectofinal.repository;
 
 import com.example.proyectofinal.model.DetalleCarrito;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface DetalleCarritoRepository extends JpaRepository<DetalleCarrito, Long> {
     List<DetalleCarrito> findByCarritoId(Long carritoId);
-} 
\ No newline at end of file
+
+    @Query("SELECT d FROM DetalleCarrito d JOIN FETCH d.perfume p WHERE d.carrito.id = :carritoId AND p.id IN :perfumeIds")
+    List<DetalleCarrito> findByCarritoIdAndPerfumeIdIn(@Param("carritoId") Long carritoId,
+            @Param("perfumeIds") Collection<Long> perfumeIds);
+
+    @Query("SELECT d.carrito.usuario.id FROM DetalleCarrito d WHERE d.id = :id")
+    Optional<Long> findUsuarioIdById(@Param("id") Long id);
+
+    /**
+     * Suma {@code cantidad} a la línea del perfume en el carrito con una sola sentencia, de modo
+     * que dos incrementos concurrentes no se pisan. Devuelve 0 si el perfume aún no tiene línea.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE DetalleCarrito d SET d.cantidad = d.cantidad + :cantidad, "
+            + "d.subtotal = d.precioUnitario * (d.cantidad + :cantidad), d.version = d.version + 1 "
+            + "WHERE d.carrito.id = :carritoId AND d.perfume.id = :perfumeId")
+    int incrementarCantidad(@Param("carritoId") Long carritoId, @Param("perfumeId") Long perfumeId,
+            @Param("cantidad") Integer cantidad);
+
+    @Modifying
+    @Query("DELETE FROM DetalleCarrito d WHERE d.carrito.id IN :carritoIds")
+    int deleteByCarritoIdIn(@Param("carritoIds") Collection<Long> carritoIds);
+}
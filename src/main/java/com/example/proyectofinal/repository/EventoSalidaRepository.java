@@ -0,0 +1,53 @@
+package com.example.proyectofinal.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.proyectofinal.model.EventoSalida;
+
+@Repository
+public interface EventoSalidaRepository extends JpaRepository<EventoSalida, Long> {
+
+    @Query("SELECT e FROM EventoSalida e WHERE e.estado = 'PENDIENTE' AND e.proximoIntento <= :ahora ORDER BY e.proximoIntento, e.id")
+    List<EventoSalida> findPendientes(@Param("ahora") LocalDateTime ahora, Limit limit);
+
+    List<EventoSalida> findByEstadoOrderByIdDesc(String estado, Limit limit);
+
+    @Query("SELECT e.estado, COUNT(e) FROM EventoSalida e GROUP BY e.estado")
+    List<Object[]> countByEstado();
+
+    @Query("SELECT MIN(e.fechaCreacion) FROM EventoSalida e WHERE e.estado = 'PENDIENTE'")
+    LocalDateTime findCreacionPendienteMasAntigua();
+
+    // Solo si sigue pendiente: una fila que otro ya marcó no se vuelve a tocar
+    @Modifying
+    @Query("UPDATE EventoSalida e SET e.estado = 'PROCESADO', e.intentos = e.intentos + 1, e.fechaProcesado = :ahora, " +
+           "e.ultimoError = NULL WHERE e.id = :id AND e.estado = 'PENDIENTE'")
+    int marcarProcesado(@Param("id") Long id, @Param("ahora") LocalDateTime ahora);
+
+    @Modifying
+    @Query("UPDATE EventoSalida e SET e.estado = :estado, e.intentos = e.intentos + 1, e.proximoIntento = :proximoIntento, " +
+           "e.ultimoError = :error WHERE e.id = :id AND e.estado = 'PENDIENTE'")
+    int registrarFallo(@Param("id") Long id, @Param("estado") String estado,
+                       @Param("proximoIntento") LocalDateTime proximoIntento, @Param("error") String error);
+
+    @Modifying
+    @Query("UPDATE EventoSalida e SET e.estado = 'PENDIENTE', e.intentos = 0, e.proximoIntento = :ahora " +
+           "WHERE e.id = :id AND e.estado = 'FALLIDO'")
+    int reactivar(@Param("id") Long id, @Param("ahora") LocalDateTime ahora);
+
+    @Query("SELECT e.id FROM EventoSalida e WHERE e.estado = 'PROCESADO' AND e.fechaProcesado < :limite ORDER BY e.id")
+    List<Long> findIdsProcesadosAntes(@Param("limite") LocalDateTime limite, Limit limit);
+
+    @Modifying
+    @Query("DELETE FROM EventoSalida e WHERE e.id IN :ids AND e.estado = 'PROCESADO'")
+    int deleteProcesadosByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -1,13 +1,53 @@
 package com.example.proyectofinal.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.example.proyectofinal.dto.FacturaDTO;
 import com.example.proyectofinal.model.Factura;
 
 @Repository
 public interface FacturaRepository extends JpaRepository<Factura, Long> {
     List<Factura> findByUsuarioId(Long usuarioId);
-} 
\ No newline at end of file
+
+    String CABECERA_DTO = "SELECT new com.example.proyectofinal.dto.FacturaDTO(f.id, u.id, u.nombre, u.correo, f.fechaEmision, " +
+                          "f.metodoPago, f.direccionEnvio, f.total) FROM Factura f JOIN f.usuario u ";
+
+    // Paginación por clave de las más recientes a las más antiguas. Hay una consulta por
+    // combinación de filtros (FacturaService elige cuál) para que en el SQL solo aparezcan los
+    // que se usan y H2 pueda recorrer el índice que les corresponde
+    @Query(CABECERA_DTO + "WHERE f.id < :antesDeId ORDER BY f.id DESC")
+    List<FacturaDTO> findPaginaDTO(@Param("antesDeId") Long antesDeId, Limit limit);
+
+    // Usa idx_facturas_usuario (usuario_id, id)
+    @Query(CABECERA_DTO + "WHERE f.usuario.id = :usuarioId AND f.id < :antesDeId ORDER BY f.id DESC")
+    List<FacturaDTO> findPaginaDTOByUsuario(@Param("antesDeId") Long antesDeId, @Param("usuarioId") Long usuarioId, Limit limit);
+
+    @Query(CABECERA_DTO + "WHERE f.fechaEmision >= :desde AND f.fechaEmision < :hasta AND f.id < :antesDeId ORDER BY f.id DESC")
+    List<FacturaDTO> findPaginaDTOByFecha(@Param("antesDeId") Long antesDeId, @Param("desde") LocalDateTime desde,
+                                          @Param("hasta") LocalDateTime hasta, Limit limit);
+
+    @Query(CABECERA_DTO + "WHERE f.usuario.id = :usuarioId AND f.id < :antesDeId " +
+           "AND f.fechaEmision >= :desde AND f.fechaEmision < :hasta ORDER BY f.id DESC")
+    List<FacturaDTO> findPaginaDTOByUsuarioAndFecha(@Param("antesDeId") Long antesDeId, @Param("usuarioId") Long usuarioId,
+                                                    @Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta,
+                                                    Limit limit);
+
+    @Query(CABECERA_DTO + "WHERE f.id = :id")
+    Optional<FacturaDTO> findCabeceraDTOById(@Param("id") Long id);
+
+    // Líneas de varias facturas en una consulta, para completar una página de findPaginaDTO
+    @Query("SELECT new com.example.proyectofinal.dto.FacturaDTO$DetalleFacturaDTO(d.id, d.nombreProducto, d.cantidad, " +
+           "d.precioUnitario, d.subtotal, p.id, pp.id, d.factura.id) " +
+           "FROM DetalleFactura d LEFT JOIN d.perfume p LEFT JOIN d.perfumePersonalizado pp " +
+           "WHERE d.factura.id IN :facturaIds ORDER BY d.id")
+    List<FacturaDTO.DetalleFacturaDTO> findDetallesDTOByFacturaIdIn(@Param("facturaIds") Collection<Long> facturaIds);
+}
@@ -4,8 +4,10 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import com.example.proyectofinal.dto.NotaOlfativaDTO;
 import com.example.proyectofinal.model.NotaOlfativa;
 
 @Repository
@@ -13,4 +15,7 @@ public interface NotaOlfativaRepository extends JpaRepository<NotaOlfativa, Long
     Optional<NotaOlfativa> findByNombre(String nombre);
     List<NotaOlfativa> findByDescripcion(String descripcion);
     boolean existsByNombre(String nombre);
+    
+    @Query("SELECT new com.example.proyectofinal.dto.NotaOlfativaDTO(n.id, n.nombre, n.descripcion) FROM NotaOlfativa n ORDER BY n.id")
+    List<NotaOlfativaDTO> findAllDTO();
 } 
\ No newline at end of file
@@ -1,11 +1,15 @@
 package com.example.proyectofinal.repository;
 
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.example.proyectofinal.dto.PerfumeDTO;
 import com.example.proyectofinal.model.Perfume;
 
 @Repository
@@ -17,4 +21,39 @@ public interface PerfumeRepository extends JpaRepository<Perfume, Long> {
     
     @Query("SELECT p FROM Perfume p JOIN p.notasOlfativas n WHERE n.id = :notaId")
     List<Perfume> findByNota(Long notaId);
+    
+    // Proyecciones a PerfumeDTO: solo columnas básicas, las colecciones se cargan aparte en lote
+    @Query("SELECT new com.example.proyectofinal.dto.PerfumeDTO(p.id, p.nombre, p.precio, p.descripcion, p.imagen) " +
+           "FROM Perfume p ORDER BY p.id")
+    List<PerfumeDTO> findAllDTO();
+    
+    // Paginación por clave: orden estable por id, sin OFFSET
+    @Query("SELECT new com.example.proyectofinal.dto.PerfumeDTO(p.id, p.nombre, p.precio, p.descripcion, p.imagen) " +
+           "FROM Perfume p WHERE p.id > :afterId ORDER BY p.id")
+    List<PerfumeDTO> findPageDTO(@Param("afterId") Long afterId, Limit limit);
+    
+    @Query("SELECT new com.example.proyectofinal.dto.PerfumeDTO(p.id, p.nombre, p.precio, p.descripcion, p.imagen) " +
+           "FROM Perfume p JOIN p.categorias c WHERE c.id = :categoriaId ORDER BY p.id")
+    List<PerfumeDTO> findDTOByCategoria(@Param("categoriaId") Long categoriaId);
+    
+    @Query("SELECT new com.example.proyectofinal.dto.PerfumeDTO(p.id, p.nombre, p.precio, p.descripcion, p.imagen) " +
+           "FROM Perfume p WHERE p.id IN :ids ORDER BY p.id")
+    List<PerfumeDTO> findDTOByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT p.id FROM Perfume p ORDER BY p.id")
+    List<Long> findAllIds();
+    
+    // Pares [perfumeId, categoriaId] / [perfumeId, notaId] para el índice de facetas
+    @Query("SELECT p.id, c.id FROM Perfume p JOIN p.categorias c WHERE p.id IN :ids")
+    List<Object[]> findCategoriaIdsByPerfumeIds(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT p.id, n.id FROM Perfume p JOIN p.notasOlfativas n WHERE p.id IN :ids")
+    List<Object[]> findNotaIdsByPerfumeIds(@Param("ids") Collection<Long> ids);
+    
+    // Pares [perfumeId, nombre] para rellenar categorías y notas de varios perfumes con una sola consulta
+    @Query("SELECT p.id, c.nombre FROM Perfume p JOIN p.categorias c WHERE p.id IN :ids")
+    List<Object[]> findCategoriaNombresByPerfumeIds(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT p.id, n.nombre FROM Perfume p JOIN p.notasOlfativas n WHERE p.id IN :ids")
+    List<Object[]> findNotaNombresByPerfumeIds(@Param("ids") Collection<Long> ids);
 } 
\ No newline at end of file
@@ -0,0 +1,315 @@
+package com.example.proyectofinal.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.proyectofinal.event.FacturaEmitidaEvent;
+import com.example.proyectofinal.model.EventoSalida;
+import com.example.proyectofinal.model.Factura;
+import com.example.proyectofinal.repository.EventoSalidaRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bandeja de salida del checkout. PedidoService guarda aquí, en la misma transacción que la
+ * factura, una fila de eventos_salida por cada tarea que debe seguir a la compra, y la
+ * petición termina sin esperarlas. Un despachador las ejecuta después en hilos virtuales
+ * (como mucho bandeja-salida.concurrencia a la vez), cada una en su propia transacción junto
+ * con la marca de PROCESADO, así que una tarea que escribe en la base de datos se aplica una
+ * sola vez aunque se repita.
+ *
+ * El despachador se despierta tras el commit de cada factura y, además, cada
+ * bandeja-salida.intervalo-ms para los reintentos. Una tarea que falla se repite con espera
+ * exponencial (bandeja-salida.espera-inicial-ms doblando hasta espera-maxima-ms); tras
+ * bandeja-salida.max-intentos queda FALLIDO hasta que se reactive a mano. Con
+ * bandeja-salida.enabled=false las tareas se acumulan y solo se ejecutan con despachar().
+ */
+@Service
+@Slf4j
+public class BandejaSalidaService {
+
+    public static final String VENTAS_AGREGADAS = "VENTAS_AGREGADAS";
+    public static final String CARRITO_SIGUIENTE = "CARRITO_SIGUIENTE";
+    public static final String CORREO_CONFIRMACION = "CORREO_CONFIRMACION";
+
+    private static final int MAX_ERROR = 1000;
+
+    @Autowired
+    private EventoSalidaRepository eventoSalidaRepository;
+
+    @Autowired
+    private VentasAgregadasService ventasAgregadasService;
+
+    // CarritoService llega a esta clase a través de PedidoService
+    @Autowired
+    @Lazy
+    private CarritoService carritoService;
+
+    @Autowired
+    private NotificacionService notificacionService;
+
+    @Value("${bandeja-salida.enabled:true}")
+    private boolean despachoAutomatico;
+
+    @Value("${bandeja-salida.lote:100}")
+    private int tamanoLote;
+
+    @Value("${bandeja-salida.concurrencia:4}")
+    private int concurrencia;
+
+    @Value("${bandeja-salida.max-intentos:8}")
+    private int maxIntentos;
+
+    @Value("${bandeja-salida.espera-inicial-ms:1000}")
+    private long esperaInicialMs;
+
+    @Value("${bandeja-salida.espera-maxima-ms:300000}")
+    private long esperaMaximaMs;
+
+    @Value("${bandeja-salida.retencion-horas:24}")
+    private long retencionHoras;
+
+    private final TransactionTemplate transaccion;
+    private final ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor();
+    private final ReentrantLock despachando = new ReentrantLock();
+    private final AtomicBoolean repetir = new AtomicBoolean();
+    private final Map<String, Consumer<EventoSalida>> tareas = new LinkedHashMap<>();
+
+    private final AtomicLong procesados = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong agotados = new AtomicLong();
+
+    public BandejaSalidaService(PlatformTransactionManager transactionManager) {
+        this.transaccion = new TransactionTemplate(transactionManager);
+    }
+
+    // Cada tarea recibe su fila y se ejecuta dentro de la transacción que la marca como hecha
+    @PostConstruct
+    void registrarTareas() {
+        tareas.put(VENTAS_AGREGADAS, evento -> ventasAgregadasService.registrarFactura(evento.getFacturaId()));
+        tareas.put(CARRITO_SIGUIENTE, evento -> carritoService.prepararCarritoActivo(evento.getUsuarioId()));
+        tareas.put(CORREO_CONFIRMACION, evento -> notificacionService.enviarConfirmacionPedido(evento.getFacturaId()));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void encolar(Factura factura) {
+        LocalDateTime ahora = LocalDateTime.now();
+        List<EventoSalida> eventos = new ArrayList<>(tareas.size());
+        for (String tipo : tareas.keySet()) {
+            eventos.add(new EventoSalida(null, tipo, factura.getId(), factura.getUsuario().getId(), "PENDIENTE", 0, ahora, null, ahora, null));
+        }
+        eventoSalidaRepository.saveAll(eventos);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onFacturaEmitida(FacturaEmitidaEvent event) {
+        if (despachoAutomatico) {
+            hilos.execute(this::despacharSiLibre);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${bandeja-salida.intervalo-ms:1000}",
+               fixedDelayString = "${bandeja-salida.intervalo-ms:1000}")
+    public void despacharProgramado() {
+        if (despachoAutomatico) {
+            despacharSiLibre();
+        }
+    }
+
+    /**
+     * Ejecuta ahora todas las tareas vencidas, esperando si el despachador ya está trabajando,
+     * y devuelve cuántas ha intentado.
+     */
+    public int despachar() {
+        despachando.lock();
+        try {
+            int total = 0;
+            for (int intentadas = despacharLote(); intentadas > 0; intentadas = despacharLote()) {
+                total += intentadas;
+            }
+            return total;
+        } finally {
+            despachando.unlock();
+        }
+    }
+
+    // Si ya hay un despacho en marcha le pide otra vuelta al terminar en lugar de esperarlo
+    private void despacharSiLibre() {
+        repetir.set(true);
+        while (repetir.get() && despachando.tryLock()) {
+            try {
+                repetir.set(false);
+                while (despacharLote() == tamanoLote) {
+                    // Lote completo: puede haber más vencidas
+                }
+            } catch (Exception e) {
+                log.error("Error al despachar la bandeja de salida: {}", e.getMessage(), e);
+            } finally {
+                despachando.unlock();
+            }
+        }
+    }
+
+    private int despacharLote() {
+        List<EventoSalida> vencidos = eventoSalidaRepository.findPendientes(LocalDateTime.now(), Limit.of(tamanoLote));
+        if (vencidos.isEmpty()) {
+            return 0;
+        }
+        Semaphore permisos = new Semaphore(concurrencia);
+        List<Future<?>> enCurso = new ArrayList<>(vencidos.size());
+        for (EventoSalida evento : vencidos) {
+            permisos.acquireUninterruptibly();
+            enCurso.add(hilos.submit(() -> {
+                try {
+                    procesar(evento);
+                } finally {
+                    permisos.release();
+                }
+            }));
+        }
+        // El lote termina entero antes de leer el siguiente, así nadie toma una fila que aún se está ejecutando
+        for (Future<?> tarea : enCurso) {
+            try {
+                tarea.get();
+            } catch (Exception e) {
+                log.error("Error en una tarea de la bandeja de salida: {}", e.getMessage(), e);
+            }
+        }
+        log.debug("Despachadas {} tareas de la bandeja de salida", vencidos.size());
+        return vencidos.size();
+    }
+
+    private void procesar(EventoSalida evento) {
+        try {
+            transaccion.executeWithoutResult(estado -> {
+                Consumer<EventoSalida> tarea = tareas.get(evento.getTipo());
+                if (tarea == null) {
+                    throw new IllegalStateException("Tipo de tarea desconocido: " + evento.getTipo());
+                }
+                tarea.accept(evento);
+                if (eventoSalidaRepository.marcarProcesado(evento.getId(), LocalDateTime.now()) == 0) {
+                    // Ya no estaba pendiente (reconstrucción de ventas, por ejemplo): se deshace lo hecho
+                    estado.setRollbackOnly();
+                }
+            });
+            procesados.incrementAndGet();
+        } catch (Exception e) {
+            registrarFallo(evento, e);
+        }
+    }
+
+    private void registrarFallo(EventoSalida evento, Exception e) {
+        int intento = evento.getIntentos() + 1;
+        boolean agotado = intento >= maxIntentos;
+        String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        if (error.length() > MAX_ERROR) {
+            error = error.substring(0, MAX_ERROR);
+        }
+        String mensaje = error;
+        LocalDateTime proximo = LocalDateTime.now().plus(Duration.ofMillis(espera(intento)));
+        try {
+            transaccion.executeWithoutResult(estado -> eventoSalidaRepository.registrarFallo(
+                    evento.getId(), agotado ? "FALLIDO" : "PENDIENTE", proximo, mensaje));
+        } catch (Exception ex) {
+            log.error("No se pudo registrar el fallo de la tarea ID: {}: {}", evento.getId(), ex.getMessage(), ex);
+            return;
+        }
+        fallos.incrementAndGet();
+        if (agotado) {
+            agotados.incrementAndGet();
+            log.error("Tarea {} de la factura ID: {} agotó sus {} intentos: {}", evento.getTipo(), evento.getFacturaId(), intento, mensaje, e);
+        } else {
+            log.warn("Tarea {} de la factura ID: {} falló (intento {}), se repetirá: {}", evento.getTipo(), evento.getFacturaId(), intento, mensaje);
+        }
+    }
+
+    private long espera(int intento) {
+        long tope = Math.min(esperaMaximaMs, esperaInicialMs << Math.min(intento - 1, 16));
+        return tope <= 0 ? 0 : ThreadLocalRandom.current().nextLong(tope / 2, tope + 1);
+    }
+
+    // Vuelve a poner en cola una tarea FALLIDO con los intentos a cero
+    public boolean reintentar(Long id) {
+        boolean reactivado = Boolean.TRUE.equals(transaccion.execute(estado ->
+                eventoSalidaRepository.reactivar(id, LocalDateTime.now()) > 0));
+        if (reactivado && despachoAutomatico) {
+            hilos.execute(this::despacharSiLibre);
+        }
+        return reactivado;
+    }
+
+    public List<EventoSalida> getFallidos(int limit) {
+        return eventoSalidaRepository.findByEstadoOrderByIdDesc("FALLIDO", Limit.of(limit));
+    }
+
+    // Borra por lotes las tareas procesadas hace más de bandeja-salida.retencion-horas
+    @Scheduled(initialDelayString = "${bandeja-salida.limpieza-intervalo-ms:3600000}",
+               fixedDelayString = "${bandeja-salida.limpieza-intervalo-ms:3600000}")
+    public int limpiarProcesados() {
+        LocalDateTime limite = LocalDateTime.now().minusHours(retencionHoras);
+        int borrados = 0;
+        List<Long> ids;
+        while (!(ids = eventoSalidaRepository.findIdsProcesadosAntes(limite, Limit.of(500))).isEmpty()) {
+            List<Long> lote = ids;
+            borrados += transaccion.execute(estado -> eventoSalidaRepository.deleteProcesadosByIdIn(lote));
+        }
+        if (borrados > 0) {
+            log.debug("Borradas {} tareas procesadas de la bandeja de salida", borrados);
+        }
+        return borrados;
+    }
+
+    public Map<String, Object> getEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        Map<String, Long> porEstado = new LinkedHashMap<>();
+        for (Object[] fila : eventoSalidaRepository.countByEstado()) {
+            porEstado.put((String) fila[0], (Long) fila[1]);
+        }
+        estadisticas.put("porEstado", porEstado);
+        LocalDateTime masAntigua = eventoSalidaRepository.findCreacionPendienteMasAntigua();
+        estadisticas.put("retrasoMs", masAntigua == null ? 0 : Duration.between(masAntigua, LocalDateTime.now()).toMillis());
+        estadisticas.put("procesados", procesados.get());
+        estadisticas.put("fallos", fallos.get());
+        estadisticas.put("agotados", agotados.get());
+        estadisticas.put("despachoAutomatico", despachoAutomatico);
+        estadisticas.put("tareas", tareas.keySet());
+        return estadisticas;
+    }
+
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        hilos.shutdown();
+        if (!hilos.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("La bandeja de salida se detiene con tareas en curso; se repetirán al arrancar");
+        }
+    }
+}
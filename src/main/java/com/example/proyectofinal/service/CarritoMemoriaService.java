@@ -0,0 +1,539 @@
+package com.example.proyectofinal.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.proyectofinal.dto.OperacionCarritoDTO;
+import com.example.proyectofinal.dto.ResumenCarritoDTO;
+import com.example.proyectofinal.model.Carrito;
+import com.example.proyectofinal.model.DetalleCarrito;
+import com.example.proyectofinal.model.Factura;
+import com.example.proyectofinal.model.Perfume;
+import com.example.proyectofinal.model.PerfumePersonalizado;
+import com.example.proyectofinal.model.Usuario;
+import com.example.proyectofinal.repository.DetalleCarritoRepository;
+import com.example.proyectofinal.repository.PerfumeRepository;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Motor de carritos opcional (carrito.memoria.enabled=true). Los carritos activos viven
+ * en memoria y las operaciones no abren transacción; los modificados se escriben en lotes
+ * cada carrito.memoria.intervalo-ms y el checkout fuerza la escritura de su carrito antes
+ * de facturarlo con CarritoService. Tras cada escritura salen de memoria los carritos ya
+ * escritos que no se usan desde hace carrito.memoria.inactividad-ms; si se vuelven a usar se
+ * cargan otra vez de la base de datos.
+ */
+@Service
+@ConditionalOnProperty(name = "carrito.memoria.enabled", havingValue = "true")
+@Slf4j
+public class CarritoMemoriaService {
+
+    private static final int FRANJAS = 64;
+
+    // Mismo incremento que detalles_carrito_seq (allocationSize de DetalleCarrito)
+    private static final int BLOQUE_IDS = 50;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private PerfumeRepository perfumeRepository;
+
+    @Autowired
+    private DetalleCarritoRepository detalleCarritoRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${carrito.memoria.lote:200}")
+    private int tamanoLote;
+
+    @Value("${carrito.memoria.inactividad-ms:600000}")
+    private long inactividadMs;
+
+    private final TransactionTemplate transaccion;
+
+    private final Map<Long, CarritoEnMemoria> carritos = new ConcurrentHashMap<>();
+    private final Map<Long, Long> usuarioPorDetalle = new ConcurrentHashMap<>();
+    private final Set<Long> pendientes = ConcurrentHashMap.newKeySet();
+
+    // Un cerrojo por franja de usuarios: las operaciones de usuarios distintos casi nunca se esperan
+    private final ReentrantLock[] franjas = new ReentrantLock[FRANJAS];
+
+    // Solo una escritura a la vez, para poder descartar instantáneas más viejas que lo ya escrito
+    private final ReentrantLock escritura = new ReentrantLock();
+
+    private long siguienteId;
+    private long ultimoIdReservado = -1;
+
+    public CarritoMemoriaService(PlatformTransactionManager transactionManager) {
+        this.transaccion = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < FRANJAS; i++) {
+            franjas[i] = new ReentrantLock();
+        }
+    }
+
+    public Carrito getCarritoActivo(Long usuarioId) {
+        ReentrantLock cerrojo = bloquear(usuarioId);
+        try {
+            return copiar(obtener(usuarioId).carrito);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    public ResumenCarritoDTO getResumen(Long usuarioId) {
+        ReentrantLock cerrojo = bloquear(usuarioId);
+        try {
+            CarritoEnMemoria enMemoria = carritos.get(usuarioId);
+            if (enMemoria == null) {
+                return carritoService.getResumen(usuarioId);
+            }
+            enMemoria.ultimoAcceso = System.currentTimeMillis();
+            Carrito carrito = enMemoria.carrito;
+            return new ResumenCarritoDTO(carrito.getId(), carrito.getCantidadArticulos(), carrito.getTotalCentimos());
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    public DetalleCarrito agregarItem(Long usuarioId, Long perfumeId, Integer cantidad) {
+        log.debug("Agregando item al carrito en memoria - Usuario ID: {}, Perfume ID: {}, Cantidad: {}", usuarioId, perfumeId, cantidad);
+        // Antes de Map.of, que no admite nulos
+        CarritoService.validarItem(perfumeId, cantidad);
+        return agregarItems(usuarioId, Map.of(perfumeId, cantidad)).get(0);
+    }
+
+    // Igual que CarritoService: un perfume que ya está en el carrito suma cantidad a su línea
+    public List<DetalleCarrito> agregarItems(Long usuarioId, Map<Long, Integer> cantidadesPorPerfume) {
+        cantidadesPorPerfume.forEach(CarritoService::validarItem);
+        Map<Long, Perfume> perfumes = new HashMap<>();
+        perfumeRepository.findAllById(cantidadesPorPerfume.keySet()).forEach(perfume -> perfumes.put(perfume.getId(), perfume));
+        cantidadesPorPerfume.keySet().forEach(perfumeId -> {
+            if (!perfumes.containsKey(perfumeId)) {
+                throw new RuntimeException("Perfume no encontrado con ID: " + perfumeId);
+            }
+        });
+
+        ReentrantLock cerrojo = bloquear(usuarioId);
+        try {
+            CarritoEnMemoria enMemoria = obtener(usuarioId);
+            Carrito carrito = copiarSinDetalles(enMemoria.carrito);
+            List<DetalleCarrito> lineas = new ArrayList<>();
+            cantidadesPorPerfume.forEach((perfumeId, cantidad) -> {
+                DetalleCarrito detalle = enMemoria.carrito.getDetalles().stream()
+                        .filter(d -> d.getPerfume() != null && d.getPerfume().getId().equals(perfumeId))
+                        .findFirst()
+                        .orElse(null);
+                if (detalle != null) {
+                    detalle.setCantidad(detalle.getCantidad() + cantidad);
+                    detalle.setSubtotal(detalle.getPrecioUnitario() * detalle.getCantidad());
+                } else {
+                    Perfume perfume = perfumes.get(perfumeId);
+                    detalle = new DetalleCarrito();
+                    detalle.setId(reservarId());
+                    detalle.setCarrito(enMemoria.carrito);
+                    detalle.setPerfume(copiar(perfume));
+                    detalle.setCantidad(cantidad);
+                    detalle.setPrecioUnitario(perfume.getPrecio());
+                    detalle.setSubtotal(perfume.getPrecio() * cantidad);
+                    enMemoria.carrito.getDetalles().add(detalle);
+                    usuarioPorDetalle.put(detalle.getId(), usuarioId);
+                }
+                lineas.add(copiar(detalle, carrito));
+            });
+            marcarModificado(usuarioId, enMemoria);
+            return lineas;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    // Las operaciones se aplican sobre una copia, que solo sustituye a las líneas si todas van bien
+    public Carrito aplicarOperaciones(Long usuarioId, List<OperacionCarritoDTO> operaciones) {
+        Map<Long, Perfume> perfumes = new HashMap<>();
+        CarritoService.cargarPerfumes(perfumeRepository, operaciones).forEach((id, perfume) -> perfumes.put(id, copiar(perfume)));
+
+        ReentrantLock cerrojo = bloquear(usuarioId);
+        try {
+            CarritoEnMemoria enMemoria = obtener(usuarioId);
+            Carrito borrador = copiar(enMemoria.carrito);
+            for (DetalleCarrito nueva : CarritoService.aplicar(borrador, operaciones, perfumes)) {
+                nueva.setId(reservarId());
+            }
+
+            enMemoria.carrito.getDetalles().forEach(detalle -> usuarioPorDetalle.remove(detalle.getId()));
+            enMemoria.carrito.getDetalles().clear();
+            for (DetalleCarrito detalle : borrador.getDetalles()) {
+                detalle.setCarrito(enMemoria.carrito);
+                enMemoria.carrito.getDetalles().add(detalle);
+                usuarioPorDetalle.put(detalle.getId(), usuarioId);
+            }
+            marcarModificado(usuarioId, enMemoria);
+            return copiar(enMemoria.carrito);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    public void eliminarItem(Long usuarioId, Long detalleId) {
+        ReentrantLock cerrojo = bloquear(usuarioId);
+        try {
+            CarritoEnMemoria enMemoria = obtener(usuarioId);
+            if (enMemoria.carrito.getDetalles().removeIf(detalle -> detalle.getId().equals(detalleId))) {
+                usuarioPorDetalle.remove(detalleId);
+                marcarModificado(usuarioId, enMemoria);
+            } else {
+                log.debug("No se encontró el detalle con ID: {} en el carrito", detalleId);
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    public DetalleCarrito actualizarCantidadItem(Long detalleId, Integer nuevaCantidad) {
+        if (nuevaCantidad == null || nuevaCantidad <= 0) {
+            throw new IllegalArgumentException("La cantidad debe ser mayor que cero para el ítem ID: " + detalleId);
+        }
+        Long usuarioId = usuarioPorDetalle.get(detalleId);
+        if (usuarioId == null) {
+            // Línea de un carrito que aún no está en memoria
+            usuarioId = detalleCarritoRepository.findUsuarioIdById(detalleId)
+                    .orElseThrow(() -> new RuntimeException("Detalle de carrito no encontrado con ID: " + detalleId));
+        }
+
+        ReentrantLock cerrojo = bloquear(usuarioId);
+        try {
+            CarritoEnMemoria enMemoria = obtener(usuarioId);
+            DetalleCarrito detalle = enMemoria.carrito.getDetalles().stream()
+                    .filter(d -> d.getId().equals(detalleId))
+                    .findFirst()
+                    .orElseThrow(() -> new RuntimeException("Detalle de carrito no encontrado con ID: " + detalleId));
+            detalle.setCantidad(nuevaCantidad);
+            detalle.setSubtotal(detalle.getPrecioUnitario() * nuevaCantidad);
+            marcarModificado(usuarioId, enMemoria);
+            return copiar(detalle, copiarSinDetalles(enMemoria.carrito));
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Escribe el carrito del usuario, lo saca de memoria y factura con CarritoService. El
+     * cerrojo del usuario se mantiene todo el tiempo para que ninguna operación concurrente
+     * modifique un carrito que ya se está facturando.
+     */
+    public Factura checkout(Long usuarioId, String direccionEnvio, String metodoPago) {
+        ReentrantLock cerrojo = bloquear(usuarioId);
+        try {
+            CarritoEnMemoria enMemoria = carritos.get(usuarioId);
+            if (enMemoria != null) {
+                Instantanea instantanea = enMemoria.instantanea();
+                if (instantanea != null && !escribir(List.of(instantanea)).isEmpty()) {
+                    log.warn("El carrito ID: {} dejó de estar activo antes de escribirse; sus cambios en memoria se descartan",
+                            instantanea.carritoId());
+                }
+                descartar(usuarioId, enMemoria);
+            }
+            return carritoService.checkout(usuarioId, direccionEnvio, metodoPago);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${carrito.memoria.intervalo-ms:1000}")
+    public void persistirPendientes() {
+        List<Instantanea> lote = new ArrayList<>();
+        for (Long usuarioId : pendientes) {
+            pendientes.remove(usuarioId);
+            ReentrantLock cerrojo = bloquear(usuarioId);
+            try {
+                CarritoEnMemoria enMemoria = carritos.get(usuarioId);
+                Instantanea instantanea = enMemoria != null ? enMemoria.instantanea() : null;
+                if (instantanea != null) {
+                    lote.add(instantanea);
+                }
+            } finally {
+                cerrojo.unlock();
+            }
+            if (lote.size() >= tamanoLote) {
+                escribirOReintentar(lote);
+                lote = new ArrayList<>();
+            }
+        }
+        if (!lote.isEmpty()) {
+            escribirOReintentar(lote);
+        }
+        descartarInactivos(System.currentTimeMillis() - inactividadMs);
+    }
+
+    // Saca de memoria los carritos sin cambios pendientes y sin usar desde antes de limite (ms)
+    void descartarInactivos(long limite) {
+        for (CarritoEnMemoria enMemoria : carritos.values()) {
+            if (enMemoria.ultimoAcceso >= limite) {
+                continue;
+            }
+            ReentrantLock cerrojo = bloquear(enMemoria.usuarioId);
+            try {
+                if (carritos.get(enMemoria.usuarioId) == enMemoria && enMemoria.ultimoAcceso < limite
+                        && enMemoria.version <= enMemoria.versionEscrita) {
+                    descartar(enMemoria.usuarioId, enMemoria);
+                }
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void alParar() {
+        persistirPendientes();
+    }
+
+    public int getCarritosEnMemoria() {
+        return carritos.size();
+    }
+
+    public int getCarritosPendientes() {
+        return pendientes.size();
+    }
+
+    public Set<Long> getCarritoIdsEnMemoria() {
+        Set<Long> ids = new HashSet<>();
+        carritos.values().forEach(enMemoria -> ids.add(enMemoria.carrito.getId()));
+        return ids;
+    }
+
+    private void escribirOReintentar(List<Instantanea> lote) {
+        try {
+            descartarCerrados(escribir(lote));
+        } catch (Exception e) {
+            log.error("Error al persistir {} carritos, se reintentará: {}", lote.size(), e.getMessage(), e);
+            lote.forEach(instantanea -> pendientes.add(instantanea.usuarioId()));
+        }
+    }
+
+    /**
+     * Reescribe las líneas de cada carrito del lote en una transacción con tres sentencias por
+     * lotes. Los carritos que ya no están activos en la base de datos (la limpieza los abandonó
+     * mientras estaban en memoria) no se escriben; se devuelven para que quien llama los saque
+     * de memoria.
+     */
+    private List<Instantanea> escribir(List<Instantanea> lote) {
+        escritura.lock();
+        try {
+            List<Instantanea> vigentes = lote.stream()
+                    .filter(instantanea -> instantanea.version() > instantanea.origen().versionEscrita)
+                    .toList();
+            if (vigentes.isEmpty()) {
+                return List.of();
+            }
+
+            List<Object[]> totales = new ArrayList<>();
+            for (Instantanea instantanea : vigentes) {
+                totales.add(new Object[] {instantanea.cantidadArticulos(), instantanea.totalCentimos(), instantanea.carritoId()});
+            }
+            List<Instantanea> cerrados = new ArrayList<>();
+            int escritas = transaccion.execute(estado -> {
+                // Mientras el carrito está en memoria sus totales solo cambian aquí, así que se escriben tal cual
+                int[] actualizados = jdbcTemplate.batchUpdate("UPDATE carritos SET cantidad_articulos = ?, total_centimos = ?, "
+                        + "fecha_actualizacion = LOCALTIMESTAMP, version = version + 1 WHERE id = ? AND estado = 'ACTIVO'", totales);
+                List<Object[]> borrados = new ArrayList<>();
+                List<Object[]> lineas = new ArrayList<>();
+                for (int i = 0; i < vigentes.size(); i++) {
+                    Instantanea instantanea = vigentes.get(i);
+                    if (actualizados[i] == 0) {
+                        cerrados.add(instantanea);
+                    } else {
+                        borrados.add(new Object[] {instantanea.carritoId()});
+                        lineas.addAll(instantanea.lineas());
+                    }
+                }
+                jdbcTemplate.batchUpdate("DELETE FROM detalles_carrito WHERE carrito_id = ?", borrados);
+                jdbcTemplate.batchUpdate("INSERT INTO detalles_carrito (id, carrito_id, perfume_id, perfume_personalizado_id, "
+                        + "cantidad, precio_unitario, subtotal) VALUES (?, ?, ?, ?, ?, ?, ?)", lineas);
+                return lineas.size();
+            });
+            vigentes.forEach(instantanea -> instantanea.origen().versionEscrita = instantanea.version());
+            log.debug("Persistidos {} carritos ({} líneas), {} ya no activos", vigentes.size() - cerrados.size(), escritas, cerrados.size());
+            return cerrados;
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    // Fuera de escritura, para no esperar el cerrojo de un usuario mientras se tiene
+    private void descartarCerrados(List<Instantanea> cerrados) {
+        for (Instantanea instantanea : cerrados) {
+            ReentrantLock cerrojo = bloquear(instantanea.usuarioId());
+            try {
+                if (carritos.get(instantanea.usuarioId()) == instantanea.origen()) {
+                    descartar(instantanea.usuarioId(), instantanea.origen());
+                    log.warn("El carrito ID: {} dejó de estar activo mientras estaba en memoria; se descarta",
+                            instantanea.carritoId());
+                }
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+    }
+
+    // Debe llamarse con el cerrojo del usuario
+    private CarritoEnMemoria obtener(Long usuarioId) {
+        CarritoEnMemoria enMemoria = carritos.get(usuarioId);
+        if (enMemoria == null) {
+            Carrito carrito = copiar(carritoService.getCarritoActivo(usuarioId));
+            enMemoria = new CarritoEnMemoria(usuarioId, carrito);
+            carrito.getDetalles().forEach(detalle -> usuarioPorDetalle.put(detalle.getId(), usuarioId));
+            carritos.put(usuarioId, enMemoria);
+        }
+        enMemoria.ultimoAcceso = System.currentTimeMillis();
+        return enMemoria;
+    }
+
+    private void marcarModificado(Long usuarioId, CarritoEnMemoria enMemoria) {
+        enMemoria.carrito.setCantidadArticulos(CarritoService.cantidadArticulos(enMemoria.carrito));
+        enMemoria.carrito.setTotalCentimos(CarritoService.totalCentimos(enMemoria.carrito));
+        enMemoria.version++;
+        pendientes.add(usuarioId);
+    }
+
+    private void descartar(Long usuarioId, CarritoEnMemoria enMemoria) {
+        carritos.remove(usuarioId);
+        pendientes.remove(usuarioId);
+        enMemoria.carrito.getDetalles().forEach(detalle -> usuarioPorDetalle.remove(detalle.getId()));
+    }
+
+    private ReentrantLock bloquear(Long usuarioId) {
+        ReentrantLock cerrojo = franjas[Math.floorMod(usuarioId.hashCode(), FRANJAS)];
+        cerrojo.lock();
+        return cerrojo;
+    }
+
+    // Los ids salen de la misma secuencia que usa Hibernate y se interpretan igual que su
+    // optimizador pooled: cada valor leído reserva el bloque (valor - 49 .. valor)
+    private synchronized long reservarId() {
+        if (siguienteId > ultimoIdReservado) {
+            ultimoIdReservado = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR detalles_carrito_seq", Long.class);
+            siguienteId = ultimoIdReservado - BLOQUE_IDS + 1;
+        }
+        return siguienteId++;
+    }
+
+    // Copias sin relaciones perezosas, para poder serializarlas fuera del cerrojo y sin sesión
+
+    private Carrito copiar(Carrito origen) {
+        Carrito copia = copiarSinDetalles(origen);
+        for (DetalleCarrito detalle : origen.getDetalles()) {
+            copia.getDetalles().add(copiar(detalle, copia));
+        }
+        return copia;
+    }
+
+    private Carrito copiarSinDetalles(Carrito origen) {
+        Usuario usuario = new Usuario();
+        usuario.setId(origen.getUsuario().getId());
+        usuario.setNombre(origen.getUsuario().getNombre());
+        usuario.setCorreo(origen.getUsuario().getCorreo());
+        usuario.setRol(origen.getUsuario().getRol());
+
+        Carrito copia = new Carrito();
+        copia.setId(origen.getId());
+        copia.setUsuario(usuario);
+        copia.setFechaCreacion(origen.getFechaCreacion());
+        copia.setEstado(origen.getEstado());
+        copia.setCantidadArticulos(origen.getCantidadArticulos());
+        copia.setTotalCentimos(origen.getTotalCentimos());
+        return copia;
+    }
+
+    private DetalleCarrito copiar(DetalleCarrito origen, Carrito carrito) {
+        DetalleCarrito copia = new DetalleCarrito();
+        copia.setId(origen.getId());
+        copia.setCarrito(carrito);
+        copia.setPerfume(origen.getPerfume() != null ? copiar(origen.getPerfume()) : null);
+        copia.setPerfumePersonalizado(origen.getPerfumePersonalizado() != null ? copiar(origen.getPerfumePersonalizado()) : null);
+        copia.setCantidad(origen.getCantidad());
+        copia.setPrecioUnitario(origen.getPrecioUnitario());
+        copia.setSubtotal(origen.getSubtotal());
+        return copia;
+    }
+
+    private Perfume copiar(Perfume origen) {
+        Perfume copia = new Perfume();
+        copia.setId(origen.getId());
+        copia.setNombre(origen.getNombre());
+        copia.setPrecio(origen.getPrecio());
+        copia.setDescripcion(origen.getDescripcion());
+        copia.setImagen(origen.getImagen());
+        return copia;
+    }
+
+    private PerfumePersonalizado copiar(PerfumePersonalizado origen) {
+        PerfumePersonalizado copia = new PerfumePersonalizado();
+        copia.setId(origen.getId());
+        copia.setNombre(origen.getNombre());
+        copia.setDescripcion(origen.getDescripcion());
+        copia.setPrecio(origen.getPrecio());
+        copia.setAprobado(origen.isAprobado());
+        copia.setFechaCreacion(origen.getFechaCreacion());
+        copia.setImagenUrl(origen.getImagenUrl());
+        return copia;
+    }
+
+    private static class CarritoEnMemoria {
+        private final Long usuarioId;
+        private final Carrito carrito;
+        // Se modifican con el cerrojo del usuario; versionEscrita solo dentro de escritura
+        private long version;
+        private volatile long versionEscrita;
+        private volatile long ultimoAcceso;
+
+        CarritoEnMemoria(Long usuarioId, Carrito carrito) {
+            this.usuarioId = usuarioId;
+            this.carrito = carrito;
+        }
+
+        // Null si no hay cambios sin escribir. Debe llamarse con el cerrojo del usuario
+        Instantanea instantanea() {
+            if (version <= versionEscrita) {
+                return null;
+            }
+            List<Object[]> lineas = new ArrayList<>();
+            for (DetalleCarrito detalle : carrito.getDetalles()) {
+                lineas.add(new Object[] {
+                    detalle.getId(),
+                    carrito.getId(),
+                    detalle.getPerfume() != null ? detalle.getPerfume().getId() : null,
+                    detalle.getPerfumePersonalizado() != null ? detalle.getPerfumePersonalizado().getId() : null,
+                    detalle.getCantidad(),
+                    detalle.getPrecioUnitario(),
+                    detalle.getSubtotal()
+                });
+            }
+            return new Instantanea(this, usuarioId, carrito.getId(), version, lineas,
+                    carrito.getCantidadArticulos(), carrito.getTotalCentimos());
+        }
+    }
+
+    private record Instantanea(CarritoEnMemoria origen, Long usuarioId, Long carritoId, long version, List<Object[]> lineas,
+            int cantidadArticulos, long totalCentimos) {
+    }
+}
@@ -1,26 +1,42 @@
 package com.example.proyectofinal.service;
 
+import com.example.proyectofinal.dto.OperacionCarritoDTO;
+import com.example.proyectofinal.dto.ResumenCarritoDTO;
 import com.example.proyectofinal.model.Carrito;
 import com.example.proyectofinal.model.DetalleCarrito;
 import com.example.proyectofinal.model.Perfume;
-import com.example.proyectofinal.model.PerfumePersonalizado;
 import com.example.proyectofinal.model.Usuario;
 import com.example.proyectofinal.model.Factura;
-import com.example.proyectofinal.model.DetalleFactura;
 import com.example.proyectofinal.repository.CarritoRepository;
 import com.example.proyectofinal.repository.DetalleCarritoRepository;
 import com.example.proyectofinal.repository.PerfumeRepository;
 import com.example.proyectofinal.repository.UsuarioRepository;
-import com.example.proyectofinal.repository.FacturaRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
 
 @Service
+@Slf4j
 public class CarritoService {
 
     @Autowired
@@ -36,220 +52,434 @@ public class CarritoService {
     private DetalleCarritoRepository detalleCarritoRepository;
 
     @Autowired
-    private FacturaRepository facturaRepository;
+    private PedidoService pedidoService;
 
+    @Value("${carrito.reintentos.max-intentos:5}")
+    private int maxIntentos;
+
+    @Value("${carrito.reintentos.espera-inicial-ms:10}")
+    private long esperaInicialMs;
+
+    @Value("${carrito.reintentos.espera-maxima-ms:200}")
+    private long esperaMaximaMs;
+
+    private final AtomicLong conflictos = new AtomicLong();
+    private final AtomicLong reintentos = new AtomicLong();
+    private final AtomicLong agotados = new AtomicLong();
+    private final Map<String, AtomicLong> conflictosPorOperacion = new ConcurrentHashMap<>();
+
+    private final TransactionTemplate transaccion;
+
+    public CarritoService(PlatformTransactionManager transactionManager) {
+        this.transaccion = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Devuelve el carrito activo del usuario con sus líneas, creándolo si no existe.
+     * La base de datos garantiza un único carrito activo por usuario; si dos peticiones
+     * intentan crearlo a la vez, la que pierde reutiliza el de la otra. Dentro de una
+     * transacción lo crea en ella, sin pedir otra conexión, y la que pierde falla con
+     * DataIntegrityViolationException para que conReintentos repita la operación.
+     */
     public Carrito getCarritoActivo(Long usuarioId) {
         try {
-            System.out.println("Buscando carrito activo para usuario ID: " + usuarioId);
-            Optional<Usuario> usuarioOpt = usuarioRepository.findById(usuarioId);
-            
-            if (!usuarioOpt.isPresent()) {
-                System.err.println("Usuario con ID " + usuarioId + " no encontrado");
-                throw new RuntimeException("Usuario no encontrado con ID: " + usuarioId);
-            }
-            
-            List<Carrito> carritos = carritoRepository.findByUsuarioIdAndEstado(usuarioId, "ACTIVO");
-            
-            if (!carritos.isEmpty()) {
-                System.out.println("Carrito activo encontrado para usuario ID: " + usuarioId);
-                Carrito carrito = carritos.get(0);
-                // Si hay múltiples carritos activos, desactivamos los adicionales
-                if (carritos.size() > 1) {
-                    System.out.println("Se encontraron " + carritos.size() + " carritos activos. Se utilizará el primero y se desactivarán los demás.");
-                    for (int i = 1; i < carritos.size(); i++) {
-                        Carrito carritoExtra = carritos.get(i);
-                        carritoExtra.setEstado("INACTIVO");
-                        carritoRepository.save(carritoExtra);
-                    }
-                }
-                
-                // Asegurar que detalles no sea null
-                if (carrito.getDetalles() == null) {
-                    carrito.setDetalles(new ArrayList<>());
-                }
-                return carrito;
-            } else {
-                System.out.println("Carrito activo no encontrado, creando uno nuevo para usuario ID: " + usuarioId);
-                Usuario usuario = usuarioOpt.get();
-                Carrito nuevoCarrito = new Carrito();
-                nuevoCarrito.setUsuario(usuario);
-                nuevoCarrito.setEstado("ACTIVO");
-                // Inicializar detalles como lista vacía
-                nuevoCarrito.setDetalles(new ArrayList<>());
-                Carrito carritoGuardado = carritoRepository.save(nuevoCarrito);
-                System.out.println("Nuevo carrito creado con ID: " + carritoGuardado.getId());
-                return carritoGuardado;
+            log.debug("Buscando carrito activo para usuario ID: {}", usuarioId);
+            Optional<Carrito> carrito = carritoRepository.findActivoConDetalles(usuarioId);
+            if (carrito.isPresent()) {
+                return carrito.get();
             }
+
+            crearCarritoActivo(usuarioId);
+            return carritoRepository.findActivoConDetalles(usuarioId)
+                    .orElseThrow(() -> new IllegalStateException("No se pudo crear el carrito del usuario ID: " + usuarioId));
         } catch (Exception e) {
-            System.err.println("Error al obtener carrito activo: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al obtener carrito activo: {}", e.getMessage(), e);
             throw e;
         }
     }
 
-    @Transactional
+    // Lee solo la fila del carrito; si el usuario no tiene carrito activo no lo crea
+    public ResumenCarritoDTO getResumen(Long usuarioId) {
+        return carritoRepository.findResumenActivo(usuarioId)
+                .orElseGet(() -> new ResumenCarritoDTO(null, 0, 0L));
+    }
+
+    /**
+     * Crea el carrito activo del usuario si aún no tiene, en la transacción de quien llama, para
+     * que su siguiente petición no tenga que hacerlo. Si otra petición lo crea a la vez falla
+     * por la restricción única; la tarea CARRITO_SIGUIENTE de la bandeja de salida lo repite y
+     * entonces ya lo encuentra.
+     */
+    public void prepararCarritoActivo(Long usuarioId) {
+        if (carritoRepository.findResumenActivo(usuarioId).isPresent()) {
+            return;
+        }
+        Carrito nuevoCarrito = new Carrito();
+        nuevoCarrito.setUsuario(usuarioRepository.getReferenceById(usuarioId));
+        nuevoCarrito.setEstado("ACTIVO");
+        carritoRepository.saveAndFlush(nuevoCarrito);
+        log.debug("Carrito ID: {} preparado para el usuario ID: {}", nuevoCarrito.getId(), usuarioId);
+    }
+
+    private void crearCarritoActivo(Long usuarioId) {
+        Usuario usuario = usuarioRepository.findById(usuarioId)
+                .orElseThrow(() -> {
+                    log.warn("Usuario con ID {} no encontrado", usuarioId);
+                    return new RuntimeException("Usuario no encontrado con ID: " + usuarioId);
+                });
+        Carrito nuevoCarrito = new Carrito();
+        nuevoCarrito.setUsuario(usuario);
+        nuevoCarrito.setEstado("ACTIVO");
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // Un fallo aquí deja inservible la transacción de quien llama: se propaga y se repite entera
+            carritoRepository.saveAndFlush(nuevoCarrito);
+            log.debug("Nuevo carrito creado con ID: {}", nuevoCarrito.getId());
+            return;
+        }
+        try {
+            carritoRepository.saveAndFlush(nuevoCarrito);
+            log.debug("Nuevo carrito creado con ID: {}", nuevoCarrito.getId());
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Otra petición creó antes el carrito activo del usuario ID: {}", usuarioId);
+        }
+    }
+
     public DetalleCarrito agregarItem(Long usuarioId, Long perfumeId, Integer cantidad) {
+        log.debug("Agregando item al carrito - Usuario ID: {}, Perfume ID: {}, Cantidad: {}", usuarioId, perfumeId, cantidad);
+        // Map.of no admite nulos: se valida antes de construirlo para responder con el mismo error que agregarItems
+        validarItem(perfumeId, cantidad);
+        return agregarItems(usuarioId, Map.of(perfumeId, cantidad)).get(0);
+    }
+
+    /**
+     * Añade varios perfumes al carrito activo en una transacción y devuelve sus líneas en el
+     * orden recibido. Si el perfume ya está en el carrito se suma la cantidad a su línea con
+     * un UPDATE atómico; si no, se crea la línea. Cuando dos peticiones crean a la vez la misma
+     * línea, la restricción única rechaza una de ellas y se repite entera, esta vez sumando.
+     */
+    public List<DetalleCarrito> agregarItems(Long usuarioId, Map<Long, Integer> cantidadesPorPerfume) {
         try {
-            System.out.println("Agregando item al carrito - Usuario ID: " + usuarioId + ", Perfume ID: " + perfumeId + ", Cantidad: " + cantidad);
-            Carrito carrito = getCarritoActivo(usuarioId);
-            
-            Perfume perfume = perfumeRepository.findById(perfumeId)
-                    .orElseThrow(() -> {
-                        System.err.println("Perfume con ID " + perfumeId + " no encontrado");
-                        return new RuntimeException("Perfume no encontrado con ID: " + perfumeId);
-                    });
+            log.debug("Agregando {} perfumes al carrito del usuario ID: {}", cantidadesPorPerfume.size(), usuarioId);
+            cantidadesPorPerfume.forEach(CarritoService::validarItem);
 
+            return conReintentos("agregar", estado -> sumarLineas(usuarioId, cantidadesPorPerfume));
+        } catch (Exception e) {
+            log.error("Error al agregar items al carrito: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    private List<DetalleCarrito> sumarLineas(Long usuarioId, Map<Long, Integer> cantidadesPorPerfume) {
+        Carrito carrito = getCarritoActivo(usuarioId);
+
+        Map<Long, Perfume> perfumes = new HashMap<>();
+        perfumeRepository.findAllById(cantidadesPorPerfume.keySet()).forEach(perfume -> perfumes.put(perfume.getId(), perfume));
+
+        cantidadesPorPerfume.keySet().forEach(perfumeId -> {
+            if (!perfumes.containsKey(perfumeId)) {
+                log.warn("Perfume con ID {} no encontrado", perfumeId);
+                throw new RuntimeException("Perfume no encontrado con ID: " + perfumeId);
+            }
+        });
+
+        List<Long> sinLinea = new ArrayList<>();
+        cantidadesPorPerfume.forEach((perfumeId, cantidad) -> {
+            if (detalleCarritoRepository.incrementarCantidad(carrito.getId(), perfumeId, cantidad) == 0) {
+                sinLinea.add(perfumeId);
+            }
+        });
+
+        // Cada UPDATE vacía el contexto de persistencia, así que las líneas nuevas se enlazan
+        // con referencias obtenidas después del último
+        List<DetalleCarrito> nuevas = new ArrayList<>();
+        for (Long perfumeId : sinLinea) {
+            Double precio = perfumes.get(perfumeId).getPrecio();
+            Integer cantidad = cantidadesPorPerfume.get(perfumeId);
             DetalleCarrito detalle = new DetalleCarrito();
-            detalle.setCarrito(carrito);
-            detalle.setPerfume(perfume);
+            detalle.setCarrito(carritoRepository.getReferenceById(carrito.getId()));
+            detalle.setPerfume(perfumeRepository.getReferenceById(perfumeId));
             detalle.setCantidad(cantidad);
-            detalle.setPrecioUnitario(perfume.getPrecio());
-            detalle.setSubtotal(perfume.getPrecio() * cantidad);
+            detalle.setPrecioUnitario(precio);
+            detalle.setSubtotal(precio * cantidad);
+            nuevas.add(detalle);
+        }
+        // El flush hace que una línea duplicada falle aquí, dentro de la transacción que se reintenta
+        detalleCarritoRepository.saveAllAndFlush(nuevas);
 
-            // Inicializar detalles si es null
-            if (carrito.getDetalles() == null) {
-                carrito.setDetalles(new ArrayList<>());
-            }
-            
-            carrito.getDetalles().add(detalle);
-            carritoRepository.save(carrito);
-            System.out.println("Item agregado correctamente al carrito ID: " + carrito.getId());
-            return detalle;
-        } catch (Exception e) {
-            System.err.println("Error al agregar item al carrito: " + e.getMessage());
-            e.printStackTrace();
-            throw e;
+        // Las líneas incrementadas se releen para devolver la cantidad ya sumada
+        Map<Long, DetalleCarrito> lineasPorPerfume = new HashMap<>();
+        for (DetalleCarrito detalle : detalleCarritoRepository.findByCarritoIdAndPerfumeIdIn(carrito.getId(), cantidadesPorPerfume.keySet())) {
+            lineasPorPerfume.put(detalle.getPerfume().getId(), detalle);
+        }
+        List<DetalleCarrito> lineas = new ArrayList<>();
+        int articulos = 0;
+        long importe = 0;
+        for (Map.Entry<Long, Integer> entrada : cantidadesPorPerfume.entrySet()) {
+            DetalleCarrito detalle = lineasPorPerfume.get(entrada.getKey());
+            lineas.add(detalle);
+            articulos += entrada.getValue();
+            importe += entrada.getValue() * centimos(detalle.getPrecioUnitario());
         }
+        sumarTotales(carrito.getId(), articulos, importe);
+        log.debug("{} líneas sumadas y {} creadas en el carrito ID: {}", lineas.size() - nuevas.size(), nuevas.size(), carrito.getId());
+        return lineas;
     }
 
-    @Transactional
     public void eliminarItem(Long usuarioId, Long detalleId) {
         try {
-            System.out.println("Eliminando item ID: " + detalleId + " del carrito del usuario ID: " + usuarioId);
-            Carrito carrito = getCarritoActivo(usuarioId);
-            
-            if (carrito.getDetalles() == null) {
-                System.out.println("El carrito no tiene detalles, no hay nada que eliminar");
-                return;
-            }
-            
-            boolean removido = carrito.getDetalles().removeIf(detalle -> detalle.getId().equals(detalleId));
-            
-            if (!removido) {
-                System.out.println("No se encontró el detalle con ID: " + detalleId + " en el carrito");
-            } else {
-                System.out.println("Item eliminado correctamente");
-            }
-            
-            carritoRepository.save(carrito);
+            log.debug("Eliminando item ID: {} del carrito del usuario ID: {}", detalleId, usuarioId);
+            conReintentos("eliminar", estado -> quitarLinea(usuarioId, detalleId));
         } catch (Exception e) {
-            System.err.println("Error al eliminar item del carrito: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al eliminar item del carrito: {}", e.getMessage(), e);
             throw e;
         }
     }
 
-    @Transactional
+    // Si la línea ya no está (por ejemplo, la quitó otra pestaña) no hace nada
+    private Void quitarLinea(Long usuarioId, Long detalleId) {
+        Carrito carrito = getCarritoActivo(usuarioId);
+        Optional<DetalleCarrito> removido = carrito.getDetalles().stream()
+                .filter(detalle -> detalle.getId().equals(detalleId))
+                .findFirst();
+
+        if (!removido.isPresent()) {
+            log.debug("No se encontró el detalle con ID: {} en el carrito", detalleId);
+            return null;
+        }
+
+        // El DELETE comprueba la versión de la línea: si otra petición la cambió o la quitó
+        // después de leer el carrito, falla y se repite con el carrito actual
+        DetalleCarrito detalle = removido.get();
+        carrito.getDetalles().remove(detalle);
+        carritoRepository.save(carrito);
+        sumarTotales(carrito.getId(), -detalle.getCantidad(), -importeCentimos(detalle));
+        log.debug("Item eliminado correctamente");
+        return null;
+    }
+
+    // La compra la hace PedidoService, compartido con FacturaController; si el carrito cambia
+    // mientras se factura se repite con el carrito nuevo
     public Factura checkout(Long usuarioId, String direccionEnvio, String metodoPago) {
         try {
-            System.out.println("Procesando checkout para usuario ID: " + usuarioId + " - Dirección: " + direccionEnvio + " - Método de pago: " + metodoPago);
-            Carrito carrito = getCarritoActivo(usuarioId);
-            
-            if (carrito.getDetalles() == null || carrito.getDetalles().isEmpty()) {
-                System.err.println("El carrito está vacío, no se puede procesar el checkout");
-                throw new RuntimeException("El carrito está vacío");
-            }
-
-            // 1. Obtener el usuario
-            Usuario usuario = usuarioRepository.findById(usuarioId)
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado con ID: " + usuarioId));
-            
-            // 2. Crear la factura
-            Factura factura = new Factura();
-            factura.setUsuario(usuario);
-            factura.setFechaEmision(java.time.LocalDateTime.now());
-            factura.setMetodoPago(metodoPago);
-            factura.setDireccionEnvio(direccionEnvio);
-            factura.setTotal(0.0); // Se calculará a continuación
-            factura.setDetalles(new ArrayList<>());
-            
-            // 3. Crear detalles de factura a partir de detalles del carrito
-            double total = 0.0;
-            for (DetalleCarrito detalleCarrito : carrito.getDetalles()) {
-                DetalleFactura detalleFactura = new DetalleFactura();
-                detalleFactura.setFactura(factura);
-                detalleFactura.setCantidad(detalleCarrito.getCantidad());
-                detalleFactura.setPrecioUnitario(detalleCarrito.getPrecioUnitario());
-                detalleFactura.setSubtotal(detalleCarrito.getSubtotal());
-                
-                // Asignar perfume o perfume personalizado según corresponda
-                if (detalleCarrito.getPerfume() != null) {
-                    Perfume perfume = detalleCarrito.getPerfume();
-                    detalleFactura.setPerfume(perfume);
-                    detalleFactura.setNombreProducto(perfume.getNombre());
-                } else if (detalleCarrito.getPerfumePersonalizado() != null) {
-                    PerfumePersonalizado perfumePersonalizado = detalleCarrito.getPerfumePersonalizado();
-                    detalleFactura.setPerfumePersonalizado(perfumePersonalizado);
-                    detalleFactura.setNombreProducto(perfumePersonalizado.getNombre() + " (Personalizado)");
-                }
-                
-                factura.getDetalles().add(detalleFactura);
-                total += detalleFactura.getSubtotal();
-            }
-            
-            factura.setTotal(total);
-            
-            // 4. Guardar la factura
-            Factura facturaGuardada = facturaRepository.save(factura);
-            System.out.println("Factura creada con ID: " + facturaGuardada.getId());
-
-            // 5. Marcar el carrito como procesado
-            carrito.setEstado("PROCESADO");
-            carritoRepository.save(carrito);
-            System.out.println("Carrito ID: " + carrito.getId() + " marcado como PROCESADO");
-
-            // 6. Crear nuevo carrito activo para el usuario
-            Carrito nuevoCarrito = new Carrito();
-            nuevoCarrito.setUsuario(usuario);
-            nuevoCarrito.setEstado("ACTIVO");
-            nuevoCarrito.setDetalles(new ArrayList<>()); // Inicializar detalles como lista vacía
-            Carrito nuevoCarritoGuardado = carritoRepository.save(nuevoCarrito);
-            System.out.println("Nuevo carrito activo creado con ID: " + nuevoCarritoGuardado.getId());
-
-            return facturaGuardada;
+            return conReintentos("checkout", estado -> pedidoService.procesar(usuarioId, direccionEnvio, metodoPago));
         } catch (Exception e) {
-            System.err.println("Error al procesar checkout: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al procesar checkout: {}", e.getMessage(), e);
             throw e;
         }
     }
 
-    @Transactional
     public DetalleCarrito actualizarCantidadItem(Long detalleId, Integer nuevaCantidad) {
         try {
-            System.out.println("Actualizando cantidad del ítem ID: " + detalleId + " a: " + nuevaCantidad);
-            
-            // Obtener el detalle directamente del repositorio
-            Optional<DetalleCarrito> detalleOpt = detalleCarritoRepository.findById(detalleId);
-            if (!detalleOpt.isPresent()) {
-                throw new RuntimeException("Detalle de carrito no encontrado con ID: " + detalleId);
+            log.debug("Actualizando cantidad del ítem ID: {} a: {}", detalleId, nuevaCantidad);
+            if (nuevaCantidad == null || nuevaCantidad <= 0) {
+                throw new IllegalArgumentException("La cantidad debe ser mayor que cero para el ítem ID: " + detalleId);
             }
-            
-            DetalleCarrito detalle = detalleOpt.get();
-            
-            // Actualizar cantidad y subtotal
-            detalle.setCantidad(nuevaCantidad);
-            detalle.setSubtotal(detalle.getPrecioUnitario() * nuevaCantidad);
-            
-            // Guardar los cambios
-            DetalleCarrito detalleActualizado = detalleCarritoRepository.save(detalle);
-            System.out.println("Ítem actualizado correctamente. Nuevo subtotal: " + detalleActualizado.getSubtotal());
-            
-            return detalleActualizado;
+            return conReintentos("actualizar", estado -> cambiarCantidad(detalleId, nuevaCantidad));
+        } catch (Exception e) {
+            log.error("Error al actualizar cantidad del ítem: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    // El UPDATE de la línea comprueba su versión: si otra petición la cambió después de leerla,
+    // la diferencia para los totales estaría mal calculada y se repite. Las líneas de un carrito
+    // ya comprado o abandonado no se tocan
+    private DetalleCarrito cambiarCantidad(Long detalleId, Integer nuevaCantidad) {
+        DetalleCarrito detalle = detalleCarritoRepository.findById(detalleId)
+                .orElseThrow(() -> new RuntimeException("Detalle de carrito no encontrado con ID: " + detalleId));
+        if (!"ACTIVO".equals(detalle.getCarrito().getEstado())) {
+            throw new IllegalStateException("El ítem ID: " + detalleId + " pertenece a un carrito que ya no está activo");
+        }
+        int diferencia = nuevaCantidad - detalle.getCantidad();
+
+        detalle.setCantidad(nuevaCantidad);
+        detalle.setSubtotal(detalle.getPrecioUnitario() * nuevaCantidad);
+        DetalleCarrito detalleActualizado = detalleCarritoRepository.save(detalle);
+        sumarTotales(detalle.getCarrito().getId(), diferencia, diferencia * centimos(detalle.getPrecioUnitario()));
+        log.debug("Ítem actualizado correctamente. Nuevo subtotal: {}", detalleActualizado.getSubtotal());
+        return detalleActualizado;
+    }
+
+    /**
+     * Aplica en orden una lista de operaciones sobre el carrito activo en una sola transacción:
+     * una consulta para el carrito con sus líneas, otra para todos los perfumes que se añaden y
+     * las escrituras agrupadas en el flush final. Si una operación falla no se aplica ninguna.
+     */
+    public Carrito aplicarOperaciones(Long usuarioId, List<OperacionCarritoDTO> operaciones) {
+        try {
+            log.debug("Aplicando {} operaciones al carrito del usuario ID: {}", operaciones.size(), usuarioId);
+            return conReintentos("operaciones", estado -> {
+                Carrito carrito = getCarritoActivo(usuarioId);
+                int articulosAntes = cantidadArticulos(carrito);
+                long centimosAntes = totalCentimos(carrito);
+                aplicar(carrito, operaciones, cargarPerfumes(perfumeRepository, operaciones));
+
+                // Escribe las líneas y suma la diferencia; después se relee el carrito con los totales nuevos
+                sumarTotales(carrito.getId(), cantidadArticulos(carrito) - articulosAntes,
+                        totalCentimos(carrito) - centimosAntes);
+                return getCarritoActivo(usuarioId);
+            });
         } catch (Exception e) {
-            System.err.println("Error al actualizar cantidad del ítem: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al aplicar operaciones al carrito: {}", e.getMessage(), e);
             throw e;
         }
     }
-} 
\ No newline at end of file
+
+    // Si el carrito dejó de estar activo mientras se modificaba (una compra simultánea), las líneas
+    // escritas irían a un carrito cerrado: se trata como un conflicto y se repite con el carrito nuevo
+    private void sumarTotales(Long carritoId, int articulos, long centimos) {
+        if (carritoRepository.sumarTotales(carritoId, articulos, centimos) == 0) {
+            throw new OptimisticLockingFailureException("El carrito ID: " + carritoId + " ya no está activo");
+        }
+    }
+
+    /**
+     * Ejecuta una modificación del carrito en su propia transacción y la repite si choca con
+     * otra petición: conflicto de versión al escribir el carrito o una línea (bloqueo optimista)
+     * o la misma línea creada a la vez por dos peticiones. Entre intentos espera un tiempo
+     * aleatorio que se dobla cada vez, hasta carrito.reintentos.max-intentos intentos.
+     */
+    private <T> T conReintentos(String operacion, TransactionCallback<T> accion) {
+        for (int intento = 1; ; intento++) {
+            try {
+                return transaccion.execute(accion);
+            } catch (ConcurrencyFailureException | DataIntegrityViolationException e) {
+                conflictos.incrementAndGet();
+                conflictosPorOperacion.computeIfAbsent(operacion, clave -> new AtomicLong()).incrementAndGet();
+                if (intento >= maxIntentos) {
+                    agotados.incrementAndGet();
+                    log.warn("Conflicto al {} en el carrito tras {} intentos: {}", operacion, intento, e.getMessage());
+                    throw e;
+                }
+                reintentos.incrementAndGet();
+                log.debug("Conflicto al {} en el carrito (intento {}), reintentando: {}", operacion, intento, e.getMessage());
+                esperar(intento);
+            }
+        }
+    }
+
+    private void esperar(int intento) {
+        long tope = Math.min(esperaMaximaMs, esperaInicialMs << Math.min(intento - 1, 16));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(tope / 2, tope + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido mientras se esperaba para reintentar", e);
+        }
+    }
+
+    public Map<String, Object> getEstadisticasConcurrencia() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("conflictos", conflictos.get());
+        estadisticas.put("reintentos", reintentos.get());
+        estadisticas.put("agotados", agotados.get());
+        Map<String, Long> porOperacion = new LinkedHashMap<>();
+        conflictosPorOperacion.forEach((operacion, contador) -> porOperacion.put(operacion, contador.get()));
+        estadisticas.put("conflictosPorOperacion", porOperacion);
+        estadisticas.put("maxIntentos", maxIntentos);
+        return estadisticas;
+    }
+
+    // Lo comparten este servicio y CarritoMemoriaService
+    static void validarItem(Long perfumeId, Integer cantidad) {
+        if (perfumeId == null) {
+            throw new IllegalArgumentException("Falta el ID del perfume");
+        }
+        if (cantidad == null || cantidad <= 0) {
+            throw new IllegalArgumentException("La cantidad debe ser mayor que cero para el perfume ID: " + perfumeId);
+        }
+    }
+
+    // Perfumes de las operaciones AGREGAR, en una consulta
+    static Map<Long, Perfume> cargarPerfumes(PerfumeRepository perfumeRepository, List<OperacionCarritoDTO> operaciones) {
+        Set<Long> perfumeIds = new HashSet<>();
+        for (OperacionCarritoDTO operacion : operaciones) {
+            if (operacion.getTipo() == OperacionCarritoDTO.Tipo.AGREGAR && operacion.getPerfumeId() != null) {
+                perfumeIds.add(operacion.getPerfumeId());
+            }
+        }
+        Map<Long, Perfume> perfumes = new HashMap<>();
+        perfumeRepository.findAllById(perfumeIds).forEach(perfume -> perfumes.put(perfume.getId(), perfume));
+        return perfumes;
+    }
+
+    /**
+     * Aplica las operaciones sobre las líneas del carrito sin tocar la base de datos; lo
+     * comparten este servicio y CarritoMemoriaService. Devuelve las líneas creadas, todavía
+     * sin id. AGREGAR de un perfume que ya está en el carrito suma a su línea.
+     */
+    static List<DetalleCarrito> aplicar(Carrito carrito, List<OperacionCarritoDTO> operaciones, Map<Long, Perfume> perfumes) {
+        List<DetalleCarrito> nuevas = new ArrayList<>();
+        for (OperacionCarritoDTO operacion : operaciones) {
+            if (operacion.getTipo() == null) {
+                throw new IllegalArgumentException("Falta el tipo de operación");
+            }
+            switch (operacion.getTipo()) {
+                case AGREGAR -> {
+                    Integer cantidad = cantidadPositiva(operacion);
+                    Perfume perfume = perfumes.get(operacion.getPerfumeId());
+                    if (perfume == null) {
+                        throw new RuntimeException("Perfume no encontrado con ID: " + operacion.getPerfumeId());
+                    }
+                    Optional<DetalleCarrito> existente = carrito.getDetalles().stream()
+                            .filter(d -> d.getPerfume() != null && d.getPerfume().getId().equals(perfume.getId()))
+                            .findFirst();
+                    if (existente.isPresent()) {
+                        DetalleCarrito detalle = existente.get();
+                        detalle.setCantidad(detalle.getCantidad() + cantidad);
+                        detalle.setSubtotal(detalle.getPrecioUnitario() * detalle.getCantidad());
+                    } else {
+                        DetalleCarrito detalle = new DetalleCarrito();
+                        detalle.setCarrito(carrito);
+                        detalle.setPerfume(perfume);
+                        detalle.setCantidad(cantidad);
+                        detalle.setPrecioUnitario(perfume.getPrecio());
+                        detalle.setSubtotal(perfume.getPrecio() * cantidad);
+                        carrito.getDetalles().add(detalle);
+                        nuevas.add(detalle);
+                    }
+                }
+                case ACTUALIZAR -> {
+                    Integer cantidad = cantidadPositiva(operacion);
+                    DetalleCarrito detalle = carrito.getDetalles().stream()
+                            .filter(d -> d.getId() != null && d.getId().equals(operacion.getDetalleId()))
+                            .findFirst()
+                            .orElseThrow(() -> new RuntimeException("Detalle de carrito no encontrado con ID: " + operacion.getDetalleId()));
+                    detalle.setCantidad(cantidad);
+                    detalle.setSubtotal(detalle.getPrecioUnitario() * cantidad);
+                }
+                // Igual que ACTUALIZAR: una línea que no está invalida el lote entero
+                case ELIMINAR -> {
+                    if (!carrito.getDetalles().removeIf(d -> d.getId() != null && d.getId().equals(operacion.getDetalleId()))) {
+                        throw new RuntimeException("Detalle de carrito no encontrado con ID: " + operacion.getDetalleId());
+                    }
+                }
+            }
+        }
+        return nuevas;
+    }
+
+    // Los importes se acumulan en céntimos para que sumar y restar líneas no arrastre errores de redondeo
+    static long centimos(Double importe) {
+        return Math.round(importe * 100);
+    }
+
+    static long importeCentimos(DetalleCarrito detalle) {
+        return detalle.getCantidad() * centimos(detalle.getPrecioUnitario());
+    }
+
+    static int cantidadArticulos(Carrito carrito) {
+        return carrito.getDetalles().stream().mapToInt(DetalleCarrito::getCantidad).sum();
+    }
+
+    static long totalCentimos(Carrito carrito) {
+        return carrito.getDetalles().stream().mapToLong(CarritoService::importeCentimos).sum();
+    }
+
+    private static Integer cantidadPositiva(OperacionCarritoDTO operacion) {
+        if (operacion.getCantidad() == null || operacion.getCantidad() <= 0) {
+            throw new IllegalArgumentException("La cantidad debe ser mayor que cero en la operación " + operacion.getTipo());
+        }
+        return operacion.getCantidad();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.proyectofinal.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.proyectofinal.config.CacheConfig;
+import com.example.proyectofinal.event.CatalogoModificadoEvent;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Invalida las cachés del catálogo a partir de los eventos publicados por los servicios
+ * y expone sus estadísticas.
+ */
+@Service
+public class CatalogoCacheService {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private final Map<String, AtomicLong> invalidaciones = new ConcurrentHashMap<>();
+
+    // Se ejecuta tras el commit para que ninguna lectura vuelva a cachear datos sin confirmar
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onCatalogoModificado(CatalogoModificadoEvent event) {
+        switch (event.getTipo()) {
+            case PERFUME -> invalidar(CacheConfig.PERFUMES);
+            // Los listados de perfumes incluyen los nombres de categorías y notas
+            case CATEGORIA -> {
+                invalidar(CacheConfig.CATEGORIAS);
+                invalidar(CacheConfig.PERFUMES);
+            }
+            case NOTA_OLFATIVA -> {
+                invalidar(CacheConfig.NOTAS_OLFATIVAS);
+                invalidar(CacheConfig.PERFUMES);
+            }
+        }
+    }
+
+    public void invalidarTodo() {
+        cacheManager.getCacheNames().forEach(this::invalidar);
+    }
+
+    public Map<String, Map<String, Object>> getEstadisticas() {
+        Map<String, Map<String, Object>> resultado = new LinkedHashMap<>();
+        for (String nombre : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(nombre);
+            if (!(cache instanceof CaffeineCache caffeineCache)) {
+                continue;
+            }
+            CacheStats stats = caffeineCache.getNativeCache().stats();
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("size", caffeineCache.getNativeCache().estimatedSize());
+            datos.put("hits", stats.hitCount());
+            datos.put("misses", stats.missCount());
+            datos.put("hitRate", stats.hitRate());
+            datos.put("evictions", stats.evictionCount());
+            datos.put("invalidations", invalidaciones.computeIfAbsent(nombre, k -> new AtomicLong()).get());
+            resultado.put(nombre, datos);
+        }
+        return resultado;
+    }
+
+    private void invalidar(String nombre) {
+        Cache cache = cacheManager.getCache(nombre);
+        if (cache != null) {
+            cache.clear();
+            invalidaciones.computeIfAbsent(nombre, k -> new AtomicLong()).incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.proyectofinal.service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.proyectofinal.event.CatalogoModificadoEvent;
+import com.example.proyectofinal.event.CatalogoModificadoEvent.Tipo;
+
+/**
+ * Lleva un contador de versión por tipo de dato del catálogo para construir ETags fuertes
+ * y Last-Modified sin consultar la base de datos.
+ */
+@Service
+public class CatalogoVersionService {
+
+    // Distingue los ETags de distintos arranques, ya que los contadores empiezan siempre en cero
+    private final long arranque = System.currentTimeMillis();
+
+    private final Map<Tipo, AtomicLong> versiones = new EnumMap<>(Tipo.class);
+    private final Map<Tipo, AtomicLong> modificaciones = new EnumMap<>(Tipo.class);
+
+    public CatalogoVersionService() {
+        for (Tipo tipo : Tipo.values()) {
+            versiones.put(tipo, new AtomicLong());
+            // Precisión de segundos, como la cabecera Last-Modified
+            modificaciones.put(tipo, new AtomicLong(arranque / 1000 * 1000));
+        }
+    }
+
+    // Se ejecuta después de invalidar cachés e índices, para que un ETag nuevo nunca acompañe datos viejos
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onCatalogoModificado(CatalogoModificadoEvent event) {
+        modificaciones.get(event.getTipo()).set(System.currentTimeMillis() / 1000 * 1000);
+        versiones.get(event.getTipo()).incrementAndGet();
+    }
+
+    public String getEtag(Tipo... tipos) {
+        StringBuilder etag = new StringBuilder("\"").append(Long.toString(arranque, 36));
+        for (Tipo tipo : tipos) {
+            etag.append('-').append(versiones.get(tipo).get());
+        }
+        return etag.append('"').toString();
+    }
+
+    public long getLastModified(Tipo... tipos) {
+        long ultima = 0;
+        for (Tipo tipo : tipos) {
+            ultima = Math.max(ultima, modificaciones.get(tipo).get());
+        }
+        return ultima;
+    }
+}
@@ -1,18 +1,25 @@
 package com.example.proyectofinal.service;
 
+import com.example.proyectofinal.config.CacheConfig;
+import com.example.proyectofinal.dto.CategoriaDTO;
+import com.example.proyectofinal.event.CatalogoModificadoEvent;
 import com.example.proyectofinal.model.Categoria;
 import com.example.proyectofinal.model.Perfume;
 import com.example.proyectofinal.repository.CategoriaRepository;
 import com.example.proyectofinal.repository.PerfumeRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
 
 @Service
+@Slf4j
 public class CategoriaService {
 
     @Autowired
@@ -21,60 +28,72 @@ public class CategoriaService {
     @Autowired
     private PerfumeRepository perfumeRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Se cachean DTOs y no entidades: la lista se comparte entre peticiones y no debe arrastrar
+    // colecciones perezosas ni poder cambiar el contexto de persistencia de nadie
+    @Cacheable(cacheNames = CacheConfig.CATEGORIAS, key = "'todas'", unless = "#result.isEmpty()")
+    public List<CategoriaDTO> findAllDTO() {
+        log.debug("Buscando todas las categorías");
+        return List.copyOf(categoriaRepository.findAllDTO());
+    }
+
     public List<Categoria> findAll() {
         try {
-            System.out.println("Buscando todas las categorías");
+            log.debug("Buscando todas las categorías");
             List<Categoria> categorias = categoriaRepository.findAll();
             if (categorias == null) {
-                System.out.println("La lista de categorías es null, retornando lista vacía");
+                log.debug("La lista de categorías es null, retornando lista vacía");
                 return new ArrayList<>();
             }
-            System.out.println("Se encontraron " + categorias.size() + " categorías");
+            log.debug("Se encontraron {} categorías", categorias.size());
             return categorias;
         } catch (Exception e) {
-            System.err.println("Error al obtener todas las categorías: " + e.getMessage());
+            log.error("Error al obtener todas las categorías: {}", e.getMessage());
             return new ArrayList<>();
         }
     }
 
     public Optional<Categoria> findById(Long id) {
         try {
-            System.out.println("Buscando categoría con ID: " + id);
+            log.debug("Buscando categoría con ID: {}", id);
             Optional<Categoria> categoria = categoriaRepository.findById(id);
-            System.out.println("Categoría encontrada: " + (categoria.isPresent() ? "Sí" : "No"));
+            log.debug("Categoría encontrada: {}", (categoria.isPresent() ? "Sí" : "No"));
             return categoria;
         } catch (Exception e) {
-            System.err.println("Error al buscar categoría por ID: " + e.getMessage());
+            log.error("Error al buscar categoría por ID: {}", e.getMessage());
             return Optional.empty();
         }
     }
 
     public Categoria save(Categoria categoria) {
         try {
-            System.out.println("Guardando categoría: " + categoria.getNombre());
+            log.debug("Guardando categoría: {}", categoria.getNombre());
             Categoria savedCategoria = categoriaRepository.save(categoria);
-            System.out.println("Categoría guardada con ID: " + savedCategoria.getId());
+            eventPublisher.publishEvent(new CatalogoModificadoEvent(CatalogoModificadoEvent.Tipo.CATEGORIA, savedCategoria.getId()));
+            log.debug("Categoría guardada con ID: {}", savedCategoria.getId());
             return savedCategoria;
         } catch (Exception e) {
-            System.err.println("Error al guardar categoría: " + e.getMessage());
+            log.error("Error al guardar categoría: {}", e.getMessage());
             throw e;
         }
     }
 
     public Categoria update(Long id, Categoria categoria) {
         try {
-            System.out.println("Actualizando categoría con ID: " + id);
+            log.debug("Actualizando categoría con ID: {}", id);
             return categoriaRepository.findById(id)
                     .map(existingCategoria -> {
                         existingCategoria.setNombre(categoria.getNombre());
                         Categoria updatedCategoria = categoriaRepository.save(existingCategoria);
-                        System.out.println("Categoría actualizada: " + updatedCategoria.getNombre());
+                        eventPublisher.publishEvent(new CatalogoModificadoEvent(CatalogoModificadoEvent.Tipo.CATEGORIA, id));
+                        log.debug("Categoría actualizada: {}", updatedCategoria.getNombre());
                         return updatedCategoria;
                     })
                     .orElse(null);
         } catch (Exception e) {
-            System.err.println("Error al actualizar categoría: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al actualizar categoría: {}", e.getMessage(), e);
             return null;
         }
     }
@@ -101,11 +120,12 @@ public class CategoriaService {
                 
                 // Ahora podemos eliminar la categoría de forma segura
                 categoriaRepository.deleteById(id);
+                eventPublisher.publishEvent(new CatalogoModificadoEvent(CatalogoModificadoEvent.Tipo.CATEGORIA, id));
             } else {
                 throw new RuntimeException("No se encontró la categoría con ID: " + id);
             }
         } catch (Exception e) {
-            System.err.println("Error al eliminar categoría: " + e.getMessage());
+            log.error("Error al eliminar categoría: {}", e.getMessage());
             throw e;
         }
     }
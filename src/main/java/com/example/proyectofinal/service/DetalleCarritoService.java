@@ -1,9 +1,11 @@
 package com.example.proyectofinal.service;
 
 import com.example.proyectofinal.model.DetalleCarrito;
+import com.example.proyectofinal.repository.CarritoRepository;
 import com.example.proyectofinal.repository.DetalleCarritoRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -14,6 +16,9 @@ public class DetalleCarritoService {
     @Autowired
     private DetalleCarritoRepository detalleCarritoRepository;
 
+    @Autowired
+    private CarritoRepository carritoRepository;
+
     public List<DetalleCarrito> findAll() {
         return detalleCarritoRepository.findAll();
     }
@@ -26,22 +31,34 @@ public class DetalleCarritoService {
         return detalleCarritoRepository.findByCarritoId(carritoId);
     }
 
+    // Las escrituras directas de líneas recalculan los totales de su carrito
+
+    @Transactional
     public DetalleCarrito save(DetalleCarrito detalleCarrito) {
-        return detalleCarritoRepository.save(detalleCarrito);
+        DetalleCarrito savedDetalle = detalleCarritoRepository.save(detalleCarrito);
+        carritoRepository.recalcularTotales(savedDetalle.getCarrito().getId());
+        return savedDetalle;
     }
 
+    @Transactional
     public DetalleCarrito update(Long id, DetalleCarrito detalleCarrito) {
         return detalleCarritoRepository.findById(id)
                 .map(existingDetalle -> {
                     existingDetalle.setCantidad(detalleCarrito.getCantidad());
                     existingDetalle.setPrecioUnitario(detalleCarrito.getPrecioUnitario());
                     existingDetalle.setSubtotal(detalleCarrito.getSubtotal());
-                    return detalleCarritoRepository.save(existingDetalle);
+                    DetalleCarrito updatedDetalle = detalleCarritoRepository.save(existingDetalle);
+                    carritoRepository.recalcularTotales(updatedDetalle.getCarrito().getId());
+                    return updatedDetalle;
                 })
                 .orElse(null);
     }
 
+    @Transactional
     public void deleteById(Long id) {
-        detalleCarritoRepository.deleteById(id);
+        detalleCarritoRepository.findById(id).ifPresent(detalle -> {
+            detalleCarritoRepository.delete(detalle);
+            carritoRepository.recalcularTotales(detalle.getCarrito().getId());
+        });
     }
 } 
\ No newline at end of file
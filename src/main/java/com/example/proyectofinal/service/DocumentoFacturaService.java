@@ -0,0 +1,256 @@
+package com.example.proyectofinal.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.NumberFormat;
+import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
+
+import com.example.proyectofinal.dto.FacturaDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Documento imprimible de cada factura: una página HTML autocontenida (estilos incluidos, sin
+ * recursos externos) generada a partir de FacturaDTO.
+ *
+ * Los documentos se guardan en {upload.dir}/facturas con el SHA-256 de su contenido de origen
+ * como nombre: los datos de la factura, la versión de la plantilla y el nombre de la tienda.
+ * Mientras la factura no cambie, las descargas sirven el mismo fichero sin volver a generarlo;
+ * si cambia, su huella también, y se genera un fichero nuevo. La huella sirve además de ETag.
+ *
+ * Se generan en un grupo fijo de facturas.documento.hilos hilos con una cola de
+ * facturas.documento.cola peticiones; con la cola llena se rechaza la petición en lugar de
+ * acumular trabajo. Varias peticiones del mismo documento a la vez comparten una única
+ * generación.
+ */
+@Service
+@Slf4j
+public class DocumentoFacturaService {
+
+    // Subir al cambiar la plantilla, para que los documentos ya generados no se reutilicen
+    private static final String VERSION_PLANTILLA = "1";
+
+    private static final DateTimeFormatter FECHA = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+    private static final Locale ES = Locale.forLanguageTag("es-ES");
+
+    public record Documento(Long facturaId, Path fichero, String huella, long tamano) {}
+
+    @Autowired
+    private FacturaService facturaService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.name:Perfumes Personalizados}")
+    private String nombreTienda;
+
+    private final Path directorio;
+    private final long esperaMaximaMs;
+    private final ThreadPoolExecutor generadores;
+    private final Map<String, CompletableFuture<Path>> enCurso = new ConcurrentHashMap<>();
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong generados = new AtomicLong();
+    private final AtomicLong compartidos = new AtomicLong();
+    private final AtomicLong rechazados = new AtomicLong();
+
+    public DocumentoFacturaService(@Value("${upload.dir}") String uploadDir,
+                                   @Value("${facturas.documento.hilos:2}") int hilos,
+                                   @Value("${facturas.documento.cola:32}") int cola,
+                                   @Value("${facturas.documento.espera-maxima-ms:10000}") long esperaMaximaMs) {
+        this.directorio = Paths.get(uploadDir, "facturas").toAbsolutePath().normalize();
+        this.esperaMaximaMs = esperaMaximaMs;
+        AtomicInteger numero = new AtomicInteger();
+        this.generadores = new ThreadPoolExecutor(hilos, hilos, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(cola),
+                tarea -> {
+                    Thread hilo = new Thread(tarea, "documento-factura-" + numero.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Devuelve el documento de la factura, generándolo si aún no existe para su contenido
+     * actual. Vacío si la factura no existe.
+     *
+     * @throws RejectedExecutionException si la cola de generación está llena
+     * @throws TimeoutException si la generación tarda más de facturas.documento.espera-maxima-ms
+     */
+    public Optional<Documento> obtener(Long facturaId) throws TimeoutException {
+        Optional<FacturaDTO> encontrada = facturaService.findDTOById(facturaId);
+        if (encontrada.isEmpty()) {
+            return Optional.empty();
+        }
+        FacturaDTO factura = encontrada.get();
+        String huella = huella(factura);
+        Path fichero = directorio.resolve(huella.substring(0, 2)).resolve(huella + ".html");
+        if (Files.exists(fichero)) {
+            aciertos.incrementAndGet();
+            return Optional.of(documento(facturaId, fichero, huella));
+        }
+
+        CompletableFuture<Path> nueva = new CompletableFuture<>();
+        CompletableFuture<Path> generacion = enCurso.putIfAbsent(huella, nueva);
+        if (generacion == null) {
+            generacion = nueva;
+            try {
+                generadores.execute(() -> {
+                    try {
+                        nueva.complete(generar(factura, fichero));
+                    } catch (Throwable e) {
+                        nueva.completeExceptionally(e);
+                    } finally {
+                        enCurso.remove(huella, nueva);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                enCurso.remove(huella, nueva);
+                rechazados.incrementAndGet();
+                nueva.completeExceptionally(e);
+                throw e;
+            }
+        } else {
+            compartidos.incrementAndGet();
+        }
+
+        try {
+            return Optional.of(documento(facturaId, generacion.get(esperaMaximaMs, TimeUnit.MILLISECONDS), huella));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido mientras se generaba el documento de la factura ID: " + facturaId, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("No se pudo generar el documento de la factura ID: " + facturaId, e.getCause());
+        }
+    }
+
+    // Se escribe a un temporal del mismo directorio y se renombra, así nunca se sirve un fichero a medias
+    private Path generar(FacturaDTO factura, Path fichero) throws IOException {
+        long inicio = System.currentTimeMillis();
+        byte[] contenido = html(factura).getBytes(StandardCharsets.UTF_8);
+        Files.createDirectories(fichero.getParent());
+        Path temporal = Files.createTempFile(fichero.getParent(), fichero.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporal, contenido);
+            Files.move(temporal, fichero, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+        generados.incrementAndGet();
+        log.debug("Documento de la factura ID: {} generado en {} ms ({} bytes)", factura.getId(), System.currentTimeMillis() - inicio, contenido.length);
+        return fichero;
+    }
+
+    private String huella(FacturaDTO factura) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update((VERSION_PLANTILLA + "\n" + nombreTienda + "\n").getBytes(StandardCharsets.UTF_8));
+            sha256.update(objectMapper.writeValueAsBytes(factura));
+            return HexFormat.of().formatHex(sha256.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo calcular la huella de la factura ID: " + factura.getId(), e);
+        }
+    }
+
+    private static Documento documento(Long facturaId, Path fichero, String huella) {
+        try {
+            return new Documento(facturaId, fichero, huella, Files.size(fichero));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String html(FacturaDTO factura) {
+        NumberFormat moneda = NumberFormat.getCurrencyInstance(ES);
+        StringBuilder html = new StringBuilder(4096);
+        html.append("<!DOCTYPE html>\n<html lang=\"es\">\n<head>\n<meta charset=\"UTF-8\">\n")
+            .append("<title>Factura ").append(factura.getId()).append(" - ").append(texto(nombreTienda)).append("</title>\n")
+            .append("<style>\n")
+            .append("body{font-family:Helvetica,Arial,sans-serif;color:#222;max-width:800px;margin:2em auto;padding:0 1em}\n")
+            .append("h1{font-size:1.6em;margin:0}header{display:flex;justify-content:space-between;border-bottom:2px solid #222;padding-bottom:1em}\n")
+            .append("table{width:100%;border-collapse:collapse;margin-top:2em}th,td{padding:.5em;border-bottom:1px solid #ddd;text-align:left}\n")
+            .append("td.n,th.n{text-align:right}tfoot td{font-weight:bold;border-top:2px solid #222;border-bottom:none}\n")
+            .append(".datos{display:flex;gap:3em;margin-top:1.5em}.datos p{margin:.2em 0}\n")
+            .append("@media print{body{margin:0}}\n")
+            .append("</style>\n</head>\n<body>\n");
+
+        html.append("<header><div><h1>").append(texto(nombreTienda)).append("</h1></div>")
+            .append("<div><p><strong>Factura nº ").append(factura.getId()).append("</strong></p>")
+            .append("<p>").append(factura.getFechaEmision() != null ? factura.getFechaEmision().format(FECHA) : "").append("</p></div></header>\n");
+
+        html.append("<section class=\"datos\"><div><p><strong>Cliente</strong></p>")
+            .append("<p>").append(texto(factura.getUsuarioNombre())).append("</p>")
+            .append("<p>").append(texto(factura.getUsuarioCorreo())).append("</p></div>")
+            .append("<div><p><strong>Envío</strong></p><p>").append(texto(factura.getDireccionEnvio())).append("</p></div>")
+            .append("<div><p><strong>Pago</strong></p><p>").append(texto(factura.getMetodoPago())).append("</p></div></section>\n");
+
+        html.append("<table>\n<thead><tr><th>Producto</th><th class=\"n\">Cantidad</th><th class=\"n\">Precio</th><th class=\"n\">Importe</th></tr></thead>\n<tbody>\n");
+        for (FacturaDTO.DetalleFacturaDTO detalle : factura.getDetalles()) {
+            html.append("<tr><td>").append(texto(detalle.getNombreProducto())).append("</td>")
+                .append("<td class=\"n\">").append(detalle.getCantidad()).append("</td>")
+                .append("<td class=\"n\">").append(importe(moneda, detalle.getPrecioUnitario())).append("</td>")
+                .append("<td class=\"n\">").append(importe(moneda, detalle.getSubtotal())).append("</td></tr>\n");
+        }
+        html.append("</tbody>\n<tfoot><tr><td colspan=\"3\">Total</td><td class=\"n\">")
+            .append(importe(moneda, factura.getTotal())).append("</td></tr></tfoot>\n</table>\n");
+
+        html.append("</body>\n</html>\n");
+        return html.toString();
+    }
+
+    private static String texto(String valor) {
+        return valor == null ? "" : HtmlUtils.htmlEscape(valor, StandardCharsets.UTF_8.name());
+    }
+
+    private static String importe(NumberFormat moneda, Double valor) {
+        return valor == null ? "" : texto(moneda.format(BigDecimal.valueOf(CarritoService.centimos(valor), 2)));
+    }
+
+    public Map<String, Object> getEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("aciertos", aciertos.get());
+        estadisticas.put("generados", generados.get());
+        estadisticas.put("compartidos", compartidos.get());
+        estadisticas.put("rechazados", rechazados.get());
+        estadisticas.put("enCola", generadores.getQueue().size());
+        estadisticas.put("generando", generadores.getActiveCount());
+        estadisticas.put("directorio", directorio.toString());
+        return estadisticas;
+    }
+
+    @PreDestroy
+    public void detener() {
+        generadores.shutdown();
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.proyectofinal.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.zip.GZIPOutputStream;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Exporta las líneas de factura emitidas en un rango de fechas, una fila por línea con los
+ * datos de su factura, en CSV o NDJSON. Las filas se leen con un cursor JDBC de solo avance
+ * (facturas.exportacion.fetch-size filas por viaje a la base de datos) y se escriben según
+ * llegan, vaciando el búfer cada facturas.exportacion.filas-por-envio filas, así que la
+ * memoria usada no depende de cuántas facturas haya en el rango.
+ */
+@Service
+@Slf4j
+public class ExportacionFacturasService {
+
+    public enum Formato { CSV, NDJSON }
+
+    private static final String CONSULTA =
+            "SELECT f.id AS factura_id, f.fecha_emision, u.id AS usuario_id, u.correo, f.metodo_pago, f.direccion_envio, " +
+            "f.total, d.id AS detalle_id, d.nombre_producto, d.perfume_id, d.perfume_personalizado_id, d.cantidad, " +
+            "d.precio_unitario, d.subtotal " +
+            "FROM facturas f JOIN usuarios u ON u.id = f.usuario_id " +
+            "LEFT JOIN detalles_factura d ON d.factura_id = f.id " +
+            "WHERE f.fecha_emision >= ? AND f.fecha_emision < ? " +
+            "ORDER BY f.id, d.id";
+
+    private static final String[] COLUMNAS = {
+        "facturaId", "fechaEmision", "usuarioId", "usuarioCorreo", "metodoPago", "direccionEnvio", "totalFactura",
+        "detalleId", "nombreProducto", "perfumeId", "perfumePersonalizadoId", "cantidad", "precioUnitario", "subtotal"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Value("${facturas.exportacion.filas-por-envio:1000}")
+    private int filasPorEnvio;
+
+    public ExportacionFacturasService(DataSource dataSource,
+                                      @Value("${facturas.exportacion.fetch-size:500}") int fetchSize) {
+        // Plantilla propia para no cambiar el fetch size de la compartida
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    /**
+     * Escribe en {@code salida} las líneas de las facturas emitidas entre {@code desde} y
+     * {@code hasta}, ambos días incluidos, y devuelve cuántas filas escribió. No cierra la
+     * salida salvo la capa gzip que añade cuando {@code comprimir} es true.
+     */
+    public long exportar(LocalDate desde, LocalDate hasta, Formato formato, boolean comprimir, OutputStream salida) throws IOException {
+        long inicio = System.currentTimeMillis();
+        GZIPOutputStream gzip = comprimir ? new GZIPOutputStream(salida, 64 * 1024) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip != null ? gzip : salida, StandardCharsets.UTF_8), 64 * 1024);
+        EscritorFilas escritor = formato == Formato.CSV ? new EscritorCsv(writer) : new EscritorNdjson(writer);
+
+        long[] filas = {0};
+        try {
+            escritor.cabecera();
+            jdbcTemplate.query(CONSULTA, (ResultSet rs) -> {
+                try {
+                    escritor.fila(rs);
+                    if (++filas[0] % filasPorEnvio == 0) {
+                        // Envía al cliente lo acumulado; con gzip, también lo que el compresor retiene
+                        writer.flush();
+                        if (gzip != null) {
+                            gzip.flush();
+                        }
+                    }
+                } catch (IOException e) {
+                    // Normalmente el cliente ha cortado la descarga; se deja de leer
+                    throw new UncheckedIOException(e);
+                }
+            }, Timestamp.valueOf(desde.atStartOfDay()), Timestamp.valueOf(hasta.plusDays(1).atStartOfDay()));
+            writer.flush();
+            if (gzip != null) {
+                gzip.finish();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        log.debug("Exportadas {} líneas de factura del {} al {} en {} ms", filas[0], desde, hasta, System.currentTimeMillis() - inicio);
+        return filas[0];
+    }
+
+    private interface EscritorFilas {
+        void cabecera() throws IOException;
+
+        void fila(ResultSet rs) throws IOException, SQLException;
+    }
+
+    private static class EscritorCsv implements EscritorFilas {
+        private final Writer writer;
+
+        EscritorCsv(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void cabecera() throws IOException {
+            writer.write(String.join(",", COLUMNAS));
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void fila(ResultSet rs) throws IOException, SQLException {
+            Object[] valores = valores(rs);
+            for (int i = 0; i < valores.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                if (valores[i] != null) {
+                    writer.write(campoCsv(valores[i].toString()));
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        // Comillas solo cuando hacen falta, duplicando las interiores (RFC 4180)
+        private static String campoCsv(String valor) {
+            if (valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+                return valor;
+            }
+            return '"' + valor.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    private class EscritorNdjson implements EscritorFilas {
+        private final Writer writer;
+        private final JsonGenerator generator;
+
+        EscritorNdjson(Writer writer) throws IOException {
+            this.writer = writer;
+            this.generator = jsonFactory.createGenerator(writer);
+            // El generador escribe sobre el mismo búfer; quien cierra la salida es el llamador
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Sin el espacio que Jackson pone por defecto entre objetos raíz: el separador es el salto de línea
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void cabecera() {
+        }
+
+        @Override
+        public void fila(ResultSet rs) throws IOException, SQLException {
+            Object[] valores = valores(rs);
+            generator.writeStartObject();
+            for (int i = 0; i < valores.length; i++) {
+                generator.writeFieldName(COLUMNAS[i]);
+                Object valor = valores[i];
+                if (valor == null) {
+                    generator.writeNull();
+                } else if (valor instanceof Long numero) {
+                    generator.writeNumber(numero);
+                } else if (valor instanceof Integer numero) {
+                    generator.writeNumber(numero);
+                } else if (valor instanceof BigDecimal numero) {
+                    generator.writeNumber(numero);
+                } else {
+                    generator.writeString(valor.toString());
+                }
+            }
+            generator.writeEndObject();
+            generator.flush();
+            writer.write('\n');
+        }
+    }
+
+    // Valores de la fila en el orden de COLUMNAS; los importes se redondean a céntimos
+    private static Object[] valores(ResultSet rs) throws SQLException {
+        Timestamp fecha = rs.getTimestamp("fecha_emision");
+        return new Object[] {
+            rs.getLong("factura_id"),
+            fecha != null ? fecha.toLocalDateTime().toString() : null,
+            rs.getLong("usuario_id"),
+            rs.getString("correo"),
+            rs.getString("metodo_pago"),
+            rs.getString("direccion_envio"),
+            importe(rs, "total"),
+            rs.getObject("detalle_id", Long.class),
+            rs.getString("nombre_producto"),
+            rs.getObject("perfume_id", Long.class),
+            rs.getObject("perfume_personalizado_id", Long.class),
+            rs.getObject("cantidad", Integer.class),
+            importe(rs, "precio_unitario"),
+            importe(rs, "subtotal")
+        };
+    }
+
+    private static BigDecimal importe(ResultSet rs, String columna) throws SQLException {
+        double valor = rs.getDouble(columna);
+        return rs.wasNull() ? null : BigDecimal.valueOf(Math.round(valor * 100), 2);
+    }
+}
@@ -1,17 +1,26 @@
 package com.example.proyectofinal.service;
 
+import com.example.proyectofinal.dto.FacturaDTO;
 import com.example.proyectofinal.model.Factura;
 import com.example.proyectofinal.model.Usuario;
 import com.example.proyectofinal.repository.FacturaRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class FacturaService {
 
+    private static final LocalDateTime PRIMERA_FECHA = LocalDateTime.of(1, 1, 1, 0, 0);
+    private static final LocalDateTime ULTIMA_FECHA = LocalDateTime.of(9999, 12, 31, 0, 0);
+
     @Autowired
     private FacturaRepository facturaRepository;
 
@@ -23,6 +32,45 @@ public class FacturaService {
         return facturaRepository.findById(id);
     }
 
+    /**
+     * Devuelve hasta {@code limit} facturas con id menor que {@code antesDeId}, de la más reciente
+     * a la más antigua, opcionalmente de un usuario y emitidas entre {@code desde} y {@code hasta}
+     * (ambos días incluidos). Son dos consultas: las cabeceras y las líneas de todas ellas.
+     */
+    public List<FacturaDTO> findPaginaDTO(Long antesDeId, int limit, Long usuarioId, LocalDate desde, LocalDate hasta) {
+        long antes = antesDeId != null ? antesDeId : Long.MAX_VALUE;
+        List<FacturaDTO> facturas;
+        if (desde == null && hasta == null) {
+            facturas = usuarioId != null
+                    ? facturaRepository.findPaginaDTOByUsuario(antes, usuarioId, Limit.of(limit))
+                    : facturaRepository.findPaginaDTO(antes, Limit.of(limit));
+        } else {
+            // Un extremo que falta se cierra con una fecha fuera de cualquier factura
+            LocalDateTime inicio = desde != null ? desde.atStartOfDay() : PRIMERA_FECHA;
+            LocalDateTime fin = hasta != null ? hasta.plusDays(1).atStartOfDay() : ULTIMA_FECHA;
+            facturas = usuarioId != null
+                    ? facturaRepository.findPaginaDTOByUsuarioAndFecha(antes, usuarioId, inicio, fin, Limit.of(limit))
+                    : facturaRepository.findPaginaDTOByFecha(antes, inicio, fin, Limit.of(limit));
+        }
+        if (facturas.isEmpty()) {
+            return facturas;
+        }
+
+        Map<Long, FacturaDTO> porId = new HashMap<>();
+        facturas.forEach(factura -> porId.put(factura.getId(), factura));
+        for (FacturaDTO.DetalleFacturaDTO detalle : facturaRepository.findDetallesDTOByFacturaIdIn(porId.keySet())) {
+            porId.get(detalle.getFacturaId()).getDetalles().add(detalle);
+        }
+        return facturas;
+    }
+
+    // Una factura con sus líneas, sin cargar entidades
+    public Optional<FacturaDTO> findDTOById(Long id) {
+        Optional<FacturaDTO> factura = facturaRepository.findCabeceraDTOById(id);
+        factura.ifPresent(dto -> dto.getDetalles().addAll(facturaRepository.findDetallesDTOByFacturaIdIn(List.of(id))));
+        return factura;
+    }
+
     public List<Factura> findByUsuarioId(Long usuarioId) {
         return facturaRepository.findByUsuarioId(usuarioId);
     }
@@ -0,0 +1,112 @@
+package com.example.proyectofinal.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Resume las estadísticas de Hibernate (hibernate.generate_statistics) para analizar
+ * consultas lentas sin tener que registrar cada sentencia SQL.
+ */
+@Service
+public class HibernateEstadisticasService {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    public Map<String, Object> getEstadisticas(int limiteConsultas) {
+        Statistics stats = getStatistics();
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("enabled", stats.isStatisticsEnabled());
+        resultado.put("since", stats.getStart().toEpochMilli());
+        resultado.put("resumen", getResumen(stats));
+        resultado.put("consultas", getConsultas(stats, limiteConsultas));
+        resultado.put("entidades", getEntidades(stats));
+        resultado.put("cacheSegundoNivel", ratio(stats.getSecondLevelCacheHitCount(),
+                stats.getSecondLevelCacheMissCount(), stats.getSecondLevelCachePutCount()));
+        resultado.put("cacheConsultas", ratio(stats.getQueryCacheHitCount(),
+                stats.getQueryCacheMissCount(), stats.getQueryCachePutCount()));
+        return resultado;
+    }
+
+    public void reiniciar() {
+        getStatistics().clear();
+    }
+
+    private Map<String, Object> getResumen(Statistics stats) {
+        Map<String, Object> resumen = new LinkedHashMap<>();
+        resumen.put("sessions", stats.getSessionOpenCount());
+        resumen.put("transactions", stats.getTransactionCount());
+        resumen.put("statementsPrepared", stats.getPrepareStatementCount());
+        resumen.put("flushes", stats.getFlushCount());
+        resumen.put("queryExecutions", stats.getQueryExecutionCount());
+        resumen.put("queryMaxTimeMs", stats.getQueryExecutionMaxTime());
+        resumen.put("slowestQuery", stats.getQueryExecutionMaxTimeQueryString());
+        resumen.put("entityLoads", stats.getEntityLoadCount());
+        resumen.put("entityFetches", stats.getEntityFetchCount());
+        resumen.put("entityInserts", stats.getEntityInsertCount());
+        resumen.put("entityUpdates", stats.getEntityUpdateCount());
+        resumen.put("entityDeletes", stats.getEntityDeleteCount());
+        resumen.put("collectionLoads", stats.getCollectionLoadCount());
+        resumen.put("collectionFetches", stats.getCollectionFetchCount());
+        return resumen;
+    }
+
+    // Ordenadas por tiempo total, que es lo que más pesa en la latencia acumulada
+    private List<Map<String, Object>> getConsultas(Statistics stats, int limite) {
+        List<Map<String, Object>> consultas = new ArrayList<>();
+        for (String consulta : stats.getQueries()) {
+            QueryStatistics qs = stats.getQueryStatistics(consulta);
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("query", consulta);
+            datos.put("executions", qs.getExecutionCount());
+            datos.put("rows", qs.getExecutionRowCount());
+            datos.put("totalTimeMs", qs.getExecutionTotalTime());
+            datos.put("meanTimeMs", qs.getExecutionAvgTimeAsDouble());
+            datos.put("maxTimeMs", qs.getExecutionMaxTime());
+            consultas.add(datos);
+        }
+        consultas.sort(Comparator.comparing((Map<String, Object> datos) -> (Long) datos.get("totalTimeMs")).reversed());
+        return consultas.size() > limite ? new ArrayList<>(consultas.subList(0, limite)) : consultas;
+    }
+
+    private Map<String, Map<String, Object>> getEntidades(Statistics stats) {
+        Map<String, Map<String, Object>> entidades = new TreeMap<>();
+        for (String entidad : stats.getEntityNames()) {
+            EntityStatistics es = stats.getEntityStatistics(entidad);
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("loads", es.getLoadCount());
+            datos.put("fetches", es.getFetchCount());
+            datos.put("inserts", es.getInsertCount());
+            datos.put("updates", es.getUpdateCount());
+            datos.put("deletes", es.getDeleteCount());
+            entidades.put(entidad.substring(entidad.lastIndexOf('.') + 1), datos);
+        }
+        return entidades;
+    }
+
+    private Map<String, Object> ratio(long hits, long misses, long puts) {
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("hits", hits);
+        datos.put("misses", misses);
+        datos.put("puts", puts);
+        datos.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        return datos;
+    }
+
+    private Statistics getStatistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.proyectofinal.service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Contrato de la cabecera Idempotency-Key para las operaciones que no deben repetirse, como el
+ * checkout. La primera petición con una clave se ejecuta y su respuesta se guarda; las
+ * repeticiones reciben esa misma respuesta sin volver a ejecutarse, y las que llegan mientras
+ * la primera sigue en curso esperan a su resultado, como mucho idempotencia.espera-maxima-ms.
+ * Las claves caducan a los idempotencia.ttl-minutos y se guardan como mucho
+ * idempotencia.max-claves.
+ */
+@Service
+@Slf4j
+public class IdempotenciaService {
+
+    public static final String CABECERA = "Idempotency-Key";
+    public static final String CABECERA_REPETIDA = "Idempotent-Replayed";
+
+    private static final int LONGITUD_MAXIMA_CLAVE = 255;
+
+    private final Cache<String, Ejecucion> ejecuciones;
+    private final long esperaMaximaMs;
+
+    public IdempotenciaService(@Value("${idempotencia.max-claves:10000}") long maxClaves,
+                               @Value("${idempotencia.ttl-minutos:60}") long ttlMinutos,
+                               @Value("${idempotencia.espera-maxima-ms:10000}") long esperaMaximaMs) {
+        this.esperaMaximaMs = esperaMaximaMs;
+        this.ejecuciones = Caffeine.newBuilder()
+                .maximumSize(maxClaves)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutos))
+                .build();
+    }
+
+    /**
+     * Ejecuta {@code accion} una sola vez por {@code operacion} y {@code clave}. Sin clave se
+     * ejecuta siempre. Solo se guardan las respuestas 2xx: tras un error el cliente puede
+     * reintentar con la misma clave, y quien estuviera esperando a esa ejecución la intenta de
+     * nuevo en lugar de recibir el error. Reutilizar una clave con otra petición devuelve 422;
+     * si la primera no termina dentro de la espera máxima, 409 para que el cliente reintente.
+     */
+    public ResponseEntity<?> ejecutar(String operacion, String clave, Object peticion, Supplier<ResponseEntity<?>> accion) {
+        if (clave == null || clave.isBlank()) {
+            return accion.get();
+        }
+        if (clave.length() > LONGITUD_MAXIMA_CLAVE) {
+            return error(HttpStatus.BAD_REQUEST, "La cabecera " + CABECERA + " no puede superar " + LONGITUD_MAXIMA_CLAVE + " caracteres");
+        }
+
+        String id = operacion + ":" + clave;
+        Ejecucion nueva = new Ejecucion(peticion);
+        Ejecucion existente;
+        while ((existente = ejecuciones.asMap().putIfAbsent(id, nueva)) != null) {
+            if (!Objects.equals(existente.peticion, peticion)) {
+                return error(HttpStatus.UNPROCESSABLE_ENTITY, "La " + CABECERA + " ya se usó con una petición distinta");
+            }
+            log.debug("Petición repetida para {} con {}: {}", operacion, CABECERA, clave);
+            ResponseEntity<?> original;
+            try {
+                original = esperar(existente);
+            } catch (TimeoutException e) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .body(mensaje("La petición con esta " + CABECERA + " sigue en curso, inténtalo de nuevo en unos segundos"));
+            }
+            if (original != null && original.getStatusCode().is2xxSuccessful()) {
+                return repetida(original);
+            }
+            // La primera falló y ya quitó su entrada: esta petición vuelve a intentarlo
+        }
+
+        ResponseEntity<?> respuesta;
+        try {
+            respuesta = accion.get();
+        } catch (RuntimeException e) {
+            ejecuciones.asMap().remove(id, nueva);
+            nueva.respuesta.completeExceptionally(e);
+            throw e;
+        }
+        if (!respuesta.getStatusCode().is2xxSuccessful()) {
+            ejecuciones.asMap().remove(id, nueva);
+        }
+        nueva.respuesta.complete(respuesta);
+        return respuesta;
+    }
+
+    // La respuesta de la primera ejecución, o null si lanzó una excepción
+    private ResponseEntity<?> esperar(Ejecucion ejecucion) throws TimeoutException {
+        try {
+            return ejecucion.respuesta.get(esperaMaximaMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            log.debug("La primera ejecución falló, se reintenta: {}", e.getCause().toString());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido mientras se esperaba a la primera petición", e);
+        }
+    }
+
+    private ResponseEntity<?> repetida(ResponseEntity<?> original) {
+        return ResponseEntity.status(original.getStatusCode())
+                .headers(original.getHeaders())
+                .header(CABECERA_REPETIDA, "true")
+                .body(original.getBody());
+    }
+
+    private ResponseEntity<?> error(HttpStatus estado, String mensaje) {
+        return ResponseEntity.status(estado).body(mensaje(mensaje));
+    }
+
+    private static Map<String, String> mensaje(String mensaje) {
+        Map<String, String> response = new HashMap<>();
+        response.put("message", mensaje);
+        return response;
+    }
+
+    private static class Ejecucion {
+        private final Object peticion;
+        private final CompletableFuture<ResponseEntity<?>> respuesta = new CompletableFuture<>();
+
+        Ejecucion(Object peticion) {
+            this.peticion = peticion;
+        }
+    }
+}
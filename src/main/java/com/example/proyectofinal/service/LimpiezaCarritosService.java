@@ -0,0 +1,162 @@
+package com.example.proyectofinal.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.proyectofinal.repository.CarritoRepository;
+import com.example.proyectofinal.repository.DetalleCarritoRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Tarea periódica que marca como ABANDONADO los carritos activos sin cambios desde hace
+ * carrito.limpieza.abandono-dias y borra los carritos cerrados (procesados, cancelados,
+ * abandonados...) sin cambios desde hace carrito.limpieza.retencion-dias. Trabaja en lotes de
+ * carrito.limpieza.lote carritos, cada uno en su propia transacción corta, y como mucho
+ * carrito.limpieza.max-lotes lotes de cada tipo por ejecución.
+ */
+@Service
+@Slf4j
+public class LimpiezaCarritosService {
+
+    @Autowired
+    private CarritoRepository carritoRepository;
+
+    @Autowired
+    private DetalleCarritoRepository detalleCarritoRepository;
+
+    // Solo existe con carrito.memoria.enabled=true; sus carritos no se tocan mientras estén en memoria
+    @Autowired(required = false)
+    private CarritoMemoriaService carritoMemoriaService;
+
+    @Value("${carrito.limpieza.abandono-dias:30}")
+    private int diasAbandono;
+
+    @Value("${carrito.limpieza.retencion-dias:90}")
+    private int diasRetencion;
+
+    @Value("${carrito.limpieza.lote:500}")
+    private int tamanoLote;
+
+    @Value("${carrito.limpieza.max-lotes:20}")
+    private int maxLotes;
+
+    private final TransactionTemplate transaccion;
+
+    private final AtomicLong ejecuciones = new AtomicLong();
+    private final AtomicLong carritosAbandonados = new AtomicLong();
+    private final AtomicLong carritosEliminados = new AtomicLong();
+    private final AtomicLong lineasEliminadas = new AtomicLong();
+    private volatile LocalDateTime ultimaEjecucion;
+    private volatile long duracionUltimaMs;
+    private volatile Map<String, Object> resultadoUltima = Map.of();
+
+    public LimpiezaCarritosService(PlatformTransactionManager transactionManager) {
+        this.transaccion = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(initialDelayString = "${carrito.limpieza.intervalo-ms:3600000}",
+               fixedDelayString = "${carrito.limpieza.intervalo-ms:3600000}")
+    public synchronized Map<String, Object> ejecutar() {
+        long inicio = System.currentTimeMillis();
+        LocalDateTime ahora = LocalDateTime.now();
+        int abandonados = abandonarInactivos(ahora.minusDays(diasAbandono));
+        int[] eliminados = eliminarCerrados(ahora.minusDays(diasRetencion));
+
+        ejecuciones.incrementAndGet();
+        carritosAbandonados.addAndGet(abandonados);
+        carritosEliminados.addAndGet(eliminados[0]);
+        lineasEliminadas.addAndGet(eliminados[1]);
+        ultimaEjecucion = ahora;
+        duracionUltimaMs = System.currentTimeMillis() - inicio;
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("carritosAbandonados", abandonados);
+        resultado.put("carritosEliminados", eliminados[0]);
+        resultado.put("lineasEliminadas", eliminados[1]);
+        resultado.put("duracionMs", duracionUltimaMs);
+        resultadoUltima = resultado;
+
+        if (abandonados > 0 || eliminados[0] > 0) {
+            log.info("Limpieza de carritos: {} abandonados, {} eliminados con {} líneas en {} ms",
+                    abandonados, eliminados[0], eliminados[1], duracionUltimaMs);
+        } else {
+            log.debug("Limpieza de carritos sin cambios en {} ms", duracionUltimaMs);
+        }
+        return resultado;
+    }
+
+    public Map<String, Object> getEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("ejecuciones", ejecuciones.get());
+        estadisticas.put("carritosAbandonados", carritosAbandonados.get());
+        estadisticas.put("carritosEliminados", carritosEliminados.get());
+        estadisticas.put("lineasEliminadas", lineasEliminadas.get());
+        estadisticas.put("ultimaEjecucion", ultimaEjecucion);
+        estadisticas.put("ultimoResultado", resultadoUltima);
+
+        Map<String, Object> configuracion = new LinkedHashMap<>();
+        configuracion.put("abandonoDias", diasAbandono);
+        configuracion.put("retencionDias", diasRetencion);
+        configuracion.put("lote", tamanoLote);
+        configuracion.put("maxLotes", maxLotes);
+        estadisticas.put("configuracion", configuracion);
+        return estadisticas;
+    }
+
+    private int abandonarInactivos(LocalDateTime limite) {
+        int total = 0;
+        for (int lote = 0; lote < maxLotes; lote++) {
+            List<Long> ids = carritoRepository.findIdsActivosSinCambiosDesde(limite, Limit.of(tamanoLote));
+            List<Long> candidatos = new ArrayList<>();
+            // Los carritos en memoria se miran en cada lote, dentro de su transacción; si uno se carga
+            // justo después, CarritoMemoriaService ve que ya no está activo y lo descarta
+            total += transaccion.execute(estado -> {
+                Set<Long> enMemoria = carritoMemoriaService != null ? carritoMemoriaService.getCarritoIdsEnMemoria() : Set.of();
+                ids.stream().filter(id -> !enMemoria.contains(id)).forEach(candidatos::add);
+                return candidatos.isEmpty() ? 0 : carritoRepository.abandonar(candidatos, limite);
+            });
+            // Con carritos en memoria un lote puede quedarse sin candidatos aunque haya más detrás;
+            // se acaba aquí y el resto queda para la siguiente ejecución
+            if (ids.size() < tamanoLote || candidatos.isEmpty()) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    private int[] eliminarCerrados(LocalDateTime limite) {
+        int carritos = 0;
+        int lineas = 0;
+        for (int lote = 0; lote < maxLotes; lote++) {
+            List<Long> ids = carritoRepository.findIdsCerradosDesde(limite, Limit.of(tamanoLote));
+            if (ids.isEmpty()) {
+                break;
+            }
+            int[] borrados = transaccion.execute(estado -> new int[] {
+                // Primero las líneas, que referencian al carrito
+                detalleCarritoRepository.deleteByCarritoIdIn(ids),
+                carritoRepository.deleteCerradosByIdIn(ids)
+            });
+            lineas += borrados[0];
+            carritos += borrados[1];
+            if (ids.size() < tamanoLote) {
+                break;
+            }
+        }
+        return new int[] {carritos, lineas};
+    }
+}
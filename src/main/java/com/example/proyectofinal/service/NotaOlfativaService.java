@@ -1,5 +1,8 @@
 package com.example.proyectofinal.service;
 
+import com.example.proyectofinal.config.CacheConfig;
+import com.example.proyectofinal.dto.NotaOlfativaDTO;
+import com.example.proyectofinal.event.CatalogoModificadoEvent;
 import com.example.proyectofinal.model.NotaOlfativa;
 import com.example.proyectofinal.model.Perfume;
 import com.example.proyectofinal.model.PerfumePersonalizado;
@@ -7,14 +10,18 @@ import com.example.proyectofinal.repository.NotaOlfativaRepository;
 import com.example.proyectofinal.repository.PerfumeRepository;
 import com.example.proyectofinal.repository.PerfumePersonalizadoRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
 
 @Service
+@Slf4j
 public class NotaOlfativaService {
 
     @Autowired
@@ -26,6 +33,15 @@ public class NotaOlfativaService {
     @Autowired
     private PerfumePersonalizadoRepository perfumePersonalizadoRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Como en CategoriaService, la caché guarda DTOs y no entidades compartidas entre peticiones
+    @Cacheable(cacheNames = CacheConfig.NOTAS_OLFATIVAS, key = "'todas'", unless = "#result.isEmpty()")
+    public List<NotaOlfativaDTO> findAllDTO() {
+        return List.copyOf(notaOlfativaRepository.findAllDTO());
+    }
+
     public List<NotaOlfativa> findAll() {
         try {
             List<NotaOlfativa> notas = notaOlfativaRepository.findAll();
@@ -45,8 +61,7 @@ public class NotaOlfativaService {
             
             return notas != null ? notas : new ArrayList<>();
         } catch (Exception e) {
-            // Log error
-            System.err.println("Error al obtener todas las notas olfativas: " + e.getMessage());
+            log.error("Error al obtener todas las notas olfativas: {}", e.getMessage());
             return new ArrayList<>();
         }
     }
@@ -55,8 +70,7 @@ public class NotaOlfativaService {
         try {
             return notaOlfativaRepository.findById(id);
         } catch (Exception e) {
-            // Log error
-            System.err.println("Error al buscar nota olfativa por ID: " + e.getMessage());
+            log.error("Error al buscar nota olfativa por ID: {}", e.getMessage());
             return Optional.empty();
         }
     }
@@ -66,18 +80,18 @@ public class NotaOlfativaService {
             List<NotaOlfativa> notas = notaOlfativaRepository.findByDescripcion(descripcion);
             return notas != null ? notas : new ArrayList<>();
         } catch (Exception e) {
-            // Log error
-            System.err.println("Error al buscar notas olfativas por descripción: " + e.getMessage());
+            log.error("Error al buscar notas olfativas por descripción: {}", e.getMessage());
             return new ArrayList<>();
         }
     }
 
     public NotaOlfativa save(NotaOlfativa notaOlfativa) {
         try {
-            return notaOlfativaRepository.save(notaOlfativa);
+            NotaOlfativa savedNota = notaOlfativaRepository.save(notaOlfativa);
+            eventPublisher.publishEvent(new CatalogoModificadoEvent(CatalogoModificadoEvent.Tipo.NOTA_OLFATIVA, savedNota.getId()));
+            return savedNota;
         } catch (Exception e) {
-            // Log error
-            System.err.println("Error al guardar nota olfativa: " + e.getMessage());
+            log.error("Error al guardar nota olfativa: {}", e.getMessage());
             throw e; // Relanzar para que el controlador pueda manejarlo
         }
     }
@@ -88,12 +102,13 @@ public class NotaOlfativaService {
                     .map(existingNota -> {
                         existingNota.setNombre(notaOlfativa.getNombre());
                         existingNota.setDescripcion(notaOlfativa.getDescripcion());
-                        return notaOlfativaRepository.save(existingNota);
+                        NotaOlfativa updatedNota = notaOlfativaRepository.save(existingNota);
+                        eventPublisher.publishEvent(new CatalogoModificadoEvent(CatalogoModificadoEvent.Tipo.NOTA_OLFATIVA, id));
+                        return updatedNota;
                     })
                     .orElse(null);
         } catch (Exception e) {
-            // Log error
-            System.err.println("Error al actualizar nota olfativa: " + e.getMessage());
+            log.error("Error al actualizar nota olfativa: {}", e.getMessage());
             return null;
         }
     }
@@ -127,12 +142,12 @@ public class NotaOlfativaService {
                 
                 // Ahora podemos eliminar la nota olfativa de forma segura
                 notaOlfativaRepository.deleteById(id);
+                eventPublisher.publishEvent(new CatalogoModificadoEvent(CatalogoModificadoEvent.Tipo.NOTA_OLFATIVA, id));
             } else {
                 throw new RuntimeException("No se encontró la nota olfativa con ID: " + id);
             }
         } catch (Exception e) {
-            // Log error
-            System.err.println("Error al eliminar nota olfativa: " + e.getMessage());
+            log.error("Error al eliminar nota olfativa: {}", e.getMessage());
             throw e; // Relanzar para que el controlador pueda manejarlo
         }
     }
@@ -0,0 +1,31 @@
+package com.example.proyectofinal.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.example.proyectofinal.model.Factura;
+import com.example.proyectofinal.repository.FacturaRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Avisos al cliente. No hay servidor de correo configurado, así que de momento el correo de
+ * confirmación se deja en el log con los datos que llevaría.
+ */
+@Service
+@Slf4j
+public class NotificacionService {
+
+    @Autowired
+    private FacturaRepository facturaRepository;
+
+    public void enviarConfirmacionPedido(Long facturaId) {
+        Factura factura = facturaRepository.findById(facturaId).orElse(null);
+        if (factura == null) {
+            log.debug("Factura ID: {} ya no existe; no se envía confirmación", facturaId);
+            return;
+        }
+        log.info("Confirmación del pedido {} para {} <{}>: total {} €, envío a {}", factura.getId(),
+                factura.getUsuario().getNombre(), factura.getUsuario().getCorreo(), factura.getTotal(), factura.getDireccionEnvio());
+    }
+}
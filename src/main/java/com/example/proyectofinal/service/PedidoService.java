@@ -0,0 +1,129 @@
+package com.example.proyectofinal.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.proyectofinal.event.FacturaEmitidaEvent;
+import com.example.proyectofinal.model.Carrito;
+import com.example.proyectofinal.model.DetalleCarrito;
+import com.example.proyectofinal.model.DetalleFactura;
+import com.example.proyectofinal.model.Factura;
+import com.example.proyectofinal.repository.CarritoRepository;
+import com.example.proyectofinal.repository.FacturaRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Convierte el carrito activo de un usuario en una factura. Es el único camino de compra:
+ * POST /api/carrito/checkout y POST /api/facturas/procesar-compra acaban aquí a través de
+ * CarritoService.checkout, que lo repite si el carrito cambia mientras se factura.
+ *
+ * Etapas, todas en la misma transacción: validar, congelar precios, guardar factura, cerrar
+ * carrito y encolar lo que sigue a la compra. El carrito se lee en una sola consulta junto
+ * con sus líneas y los perfumes (normales y personalizados) a los que apuntan, así que
+ * copiar las líneas a la factura no vuelve a la base de datos.
+ *
+ * Lo que sigue a la compra se escribe en la bandeja de salida y lo ejecuta
+ * BandejaSalidaService después del commit, sin retrasar la respuesta.
+ */
+@Service
+@Slf4j
+public class PedidoService {
+
+    @Autowired
+    private CarritoRepository carritoRepository;
+
+    @Autowired
+    private FacturaRepository facturaRepository;
+
+    @Autowired
+    private BandejaSalidaService bandejaSalidaService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Transactional
+    public Factura procesar(Long usuarioId, String direccionEnvio, String metodoPago) {
+        log.debug("Procesando pedido para usuario ID: {} - Dirección: {} - Método de pago: {}", usuarioId, direccionEnvio, metodoPago);
+        Carrito carrito = carritoRepository.findActivoConDetalles(usuarioId)
+                .orElseThrow(() -> new IllegalStateException("El carrito está vacío"));
+
+        validar(carrito, direccionEnvio, metodoPago);
+        Factura factura = congelarPrecios(carrito, direccionEnvio, metodoPago);
+        Factura facturaGuardada = facturaRepository.save(factura);
+        log.debug("Factura creada con ID: {}", facturaGuardada.getId());
+        cerrarCarrito(carrito);
+        bandejaSalidaService.encolar(facturaGuardada);
+        eventPublisher.publishEvent(new FacturaEmitidaEvent(facturaGuardada.getId(), usuarioId));
+        return facturaGuardada;
+    }
+
+    private void validar(Carrito carrito, String direccionEnvio, String metodoPago) {
+        if (direccionEnvio == null || direccionEnvio.isBlank()) {
+            throw new IllegalArgumentException("La dirección de envío es obligatoria");
+        }
+        if (metodoPago == null || metodoPago.isBlank()) {
+            throw new IllegalArgumentException("El método de pago es obligatorio");
+        }
+        if (carrito.getDetalles().isEmpty()) {
+            throw new IllegalStateException("El carrito está vacío");
+        }
+        for (DetalleCarrito detalle : carrito.getDetalles()) {
+            if (detalle.getPerfume() == null && detalle.getPerfumePersonalizado() == null) {
+                throw new IllegalStateException("La línea ID: " + detalle.getId() + " del carrito no tiene producto");
+            }
+            if (detalle.getCantidad() == null || detalle.getCantidad() <= 0) {
+                throw new IllegalStateException("La línea ID: " + detalle.getId() + " del carrito no tiene una cantidad válida");
+            }
+        }
+    }
+
+    // Copia a la factura el precio con el que cada línea entró en el carrito, que es el que
+    // ha visto el cliente; los cambios posteriores del catálogo no afectan a esta compra
+    private Factura congelarPrecios(Carrito carrito, String direccionEnvio, String metodoPago) {
+        Factura factura = new Factura();
+        factura.setUsuario(carrito.getUsuario());
+        factura.setFechaEmision(LocalDateTime.now());
+        factura.setMetodoPago(metodoPago);
+        factura.setDireccionEnvio(direccionEnvio);
+
+        List<DetalleFactura> detalles = new ArrayList<>(carrito.getDetalles().size());
+        long totalCentimos = 0;
+        for (DetalleCarrito detalleCarrito : carrito.getDetalles()) {
+            DetalleFactura detalleFactura = new DetalleFactura();
+            detalleFactura.setFactura(factura);
+            detalleFactura.setCantidad(detalleCarrito.getCantidad());
+            detalleFactura.setPrecioUnitario(detalleCarrito.getPrecioUnitario());
+            detalleFactura.setSubtotal(detalleCarrito.getSubtotal());
+            if (detalleCarrito.getPerfume() != null) {
+                detalleFactura.setPerfume(detalleCarrito.getPerfume());
+                detalleFactura.setNombreProducto(detalleCarrito.getPerfume().getNombre());
+            } else {
+                detalleFactura.setPerfumePersonalizado(detalleCarrito.getPerfumePersonalizado());
+                detalleFactura.setNombreProducto(detalleCarrito.getPerfumePersonalizado().getNombre() + " (Personalizado)");
+            }
+            detalles.add(detalleFactura);
+            totalCentimos += CarritoService.importeCentimos(detalleCarrito);
+        }
+
+        factura.setDetalles(detalles);
+        // Sumado en céntimos para no arrastrar errores de redondeo de los Double
+        factura.setTotal(BigDecimal.valueOf(totalCentimos, 2).doubleValue());
+        return factura;
+    }
+
+    // El carrito facturado queda como PROCESADO con sus líneas, y el siguiente acceso del
+    // usuario crea uno nuevo
+    private void cerrarCarrito(Carrito carrito) {
+        carrito.setEstado("PROCESADO");
+        carritoRepository.save(carrito);
+        log.debug("Carrito ID: {} marcado como PROCESADO", carrito.getId());
+    }
+}
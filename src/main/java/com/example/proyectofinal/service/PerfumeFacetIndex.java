@@ -0,0 +1,281 @@
+package com.example.proyectofinal.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.proyectofinal.dto.BusquedaFacetadaDTO;
+import com.example.proyectofinal.dto.BusquedaFacetadaDTO.FacetaDTO;
+import com.example.proyectofinal.dto.PerfumeDTO;
+import com.example.proyectofinal.event.CatalogoModificadoEvent;
+import com.example.proyectofinal.repository.CategoriaRepository;
+import com.example.proyectofinal.repository.NotaOlfativaRepository;
+import com.example.proyectofinal.repository.PerfumeRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Índice de facetas del catálogo: un bitset de ordinales de perfume por categoría y por
+ * nota olfativa, de modo que los filtros combinados y sus recuentos se resuelven con
+ * operaciones AND/OR en memoria en lugar de joins.
+ *
+ * Dentro de una misma faceta los valores se combinan con OR y entre facetas con AND.
+ * El recuento de cada faceta ignora el filtro de esa misma faceta, para que el cliente
+ * pueda mostrar cuántos resultados habría al marcar otra opción.
+ */
+@Component
+@Slf4j
+public class PerfumeFacetIndex {
+
+    private static final int TAMANO_LOTE = 500;
+
+    @Autowired
+    private PerfumeService perfumeService;
+
+    @Autowired
+    private PerfumeRepository perfumeRepository;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private NotaOlfativaRepository notaOlfativaRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Indice indice = new Indice();
+
+    private static final class Indice {
+        private final List<PerfumeDTO> documentos = new ArrayList<>();
+        private double[] precios = new double[16];
+        private final BitSet vivos = new BitSet();
+        private final Map<Long, Integer> ordinales = new HashMap<>();
+        private final Map<Long, BitSet> porCategoria = new HashMap<>();
+        private final Map<Long, BitSet> porNota = new HashMap<>();
+        // Nombres ordenados por id para que las facetas salgan siempre en el mismo orden
+        private final Map<Long, String> nombresCategorias = new TreeMap<>();
+        private final Map<Long, String> nombresNotas = new TreeMap<>();
+
+        void agregar(PerfumeDTO perfume, List<Long> categoriaIds, List<Long> notaIds) {
+            int ordinal = documentos.size();
+            documentos.add(perfume);
+            if (ordinal == precios.length) {
+                precios = Arrays.copyOf(precios, ordinal * 2);
+            }
+            precios[ordinal] = perfume.getPrecio() != null ? perfume.getPrecio() : 0.0;
+            vivos.set(ordinal);
+            ordinales.put(perfume.getId(), ordinal);
+            categoriaIds.forEach(id -> porCategoria.computeIfAbsent(id, k -> new BitSet()).set(ordinal));
+            notaIds.forEach(id -> porNota.computeIfAbsent(id, k -> new BitSet()).set(ordinal));
+        }
+
+        void eliminar(Long id) {
+            Integer ordinal = ordinales.remove(id);
+            if (ordinal == null) {
+                return;
+            }
+            documentos.set(ordinal, null);
+            vivos.clear(ordinal);
+            porCategoria.values().forEach(bits -> bits.clear(ordinal));
+            porNota.values().forEach(bits -> bits.clear(ordinal));
+        }
+
+        boolean necesitaCompactar() {
+            return documentos.size() > 64 && documentos.size() > 2 * ordinales.size();
+        }
+
+        Indice compactar() {
+            Indice nuevo = new Indice();
+            nuevo.nombresCategorias.putAll(nombresCategorias);
+            nuevo.nombresNotas.putAll(nombresNotas);
+            for (int ordinal = vivos.nextSetBit(0); ordinal >= 0; ordinal = vivos.nextSetBit(ordinal + 1)) {
+                nuevo.agregar(documentos.get(ordinal), valoresDe(porCategoria, ordinal), valoresDe(porNota, ordinal));
+            }
+            return nuevo;
+        }
+
+        private static List<Long> valoresDe(Map<Long, BitSet> faceta, int ordinal) {
+            List<Long> ids = new ArrayList<>();
+            faceta.forEach((id, bits) -> {
+                if (bits.get(ordinal)) {
+                    ids.add(id);
+                }
+            });
+            return ids;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reconstruir() {
+        Indice nuevo = new Indice();
+        categoriaRepository.findAll().forEach(c -> nuevo.nombresCategorias.put(c.getId(), c.getNombre()));
+        notaOlfativaRepository.findAll().forEach(n -> nuevo.nombresNotas.put(n.getId(), n.getNombre()));
+
+        List<Long> ids = perfumeService.findAllIds();
+        for (int desde = 0; desde < ids.size(); desde += TAMANO_LOTE) {
+            cargar(nuevo, ids.subList(desde, Math.min(desde + TAMANO_LOTE, ids.size())));
+        }
+
+        lock.writeLock().lock();
+        try {
+            indice = nuevo;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Índice de facetas construido con {} perfumes", nuevo.ordinales.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(0)
+    public synchronized void onCatalogoModificado(CatalogoModificadoEvent event) {
+        if (event.getTipo() != CatalogoModificadoEvent.Tipo.PERFUME) {
+            // Las categorías y notas cambian rara vez y pueden afectar a muchos perfumes
+            reconstruir();
+            return;
+        }
+        Indice actualizado = new Indice();
+        cargar(actualizado, List.of(event.getId()));
+        lock.writeLock().lock();
+        try {
+            indice.eliminar(event.getId());
+            if (!actualizado.documentos.isEmpty()) {
+                indice.agregar(actualizado.documentos.get(0),
+                        Indice.valoresDe(actualizado.porCategoria, 0), Indice.valoresDe(actualizado.porNota, 0));
+            }
+            if (indice.necesitaCompactar()) {
+                indice = indice.compactar();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public BusquedaFacetadaDTO buscar(Collection<Long> categoriaIds, Collection<Long> notaIds,
+            Double precioMin, Double precioMax, int page, int size) {
+        lock.readLock().lock();
+        try {
+            BitSet porPrecio = filtrarPorPrecio(precioMin, precioMax);
+            BitSet porCategorias = union(indice.porCategoria, categoriaIds);
+            BitSet porNotas = union(indice.porNota, notaIds);
+
+            BitSet resultado = interseccion(porPrecio, porCategorias, porNotas);
+
+            List<PerfumeDTO> items = new ArrayList<>(size);
+            // En long: con un page enorme el producto desbordaría un int y volvería a la primera página
+            long desde = (long) page * size;
+            int posicion = 0;
+            double minimo = Double.MAX_VALUE;
+            double maximo = -Double.MAX_VALUE;
+            for (int ordinal = resultado.nextSetBit(0); ordinal >= 0; ordinal = resultado.nextSetBit(ordinal + 1)) {
+                if (posicion >= desde && items.size() < size) {
+                    items.add(indice.documentos.get(ordinal));
+                }
+                minimo = Math.min(minimo, indice.precios[ordinal]);
+                maximo = Math.max(maximo, indice.precios[ordinal]);
+                posicion++;
+            }
+
+            return new BusquedaFacetadaDTO(
+                    items,
+                    posicion,
+                    page,
+                    size,
+                    facetas(indice.porCategoria, indice.nombresCategorias, interseccion(porPrecio, porNotas)),
+                    facetas(indice.porNota, indice.nombresNotas, interseccion(porPrecio, porCategorias)),
+                    posicion > 0 ? minimo : null,
+                    posicion > 0 ? maximo : null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void cargar(Indice destino, List<Long> ids) {
+        Map<Long, List<Long>> categorias = agrupar(perfumeRepository.findCategoriaIdsByPerfumeIds(ids));
+        Map<Long, List<Long>> notas = agrupar(perfumeRepository.findNotaIdsByPerfumeIds(ids));
+        for (PerfumeDTO perfume : perfumeService.findDTOsByIds(ids)) {
+            destino.agregar(perfume,
+                    categorias.getOrDefault(perfume.getId(), List.of()),
+                    notas.getOrDefault(perfume.getId(), List.of()));
+        }
+    }
+
+    private static Map<Long, List<Long>> agrupar(List<Object[]> pares) {
+        Map<Long, List<Long>> resultado = new HashMap<>();
+        for (Object[] par : pares) {
+            resultado.computeIfAbsent((Long) par[0], k -> new ArrayList<>()).add((Long) par[1]);
+        }
+        return resultado;
+    }
+
+    private BitSet filtrarPorPrecio(Double precioMin, Double precioMax) {
+        if (precioMin == null && precioMax == null) {
+            return indice.vivos;
+        }
+        double minimo = precioMin != null ? precioMin : -Double.MAX_VALUE;
+        double maximo = precioMax != null ? precioMax : Double.MAX_VALUE;
+        BitSet resultado = new BitSet(indice.documentos.size());
+        BitSet vivos = indice.vivos;
+        for (int ordinal = vivos.nextSetBit(0); ordinal >= 0; ordinal = vivos.nextSetBit(ordinal + 1)) {
+            double precio = indice.precios[ordinal];
+            if (precio >= minimo && precio <= maximo) {
+                resultado.set(ordinal);
+            }
+        }
+        return resultado;
+    }
+
+    // null significa "sin filtro" en esa faceta
+    private static BitSet union(Map<Long, BitSet> faceta, Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return null;
+        }
+        BitSet resultado = new BitSet();
+        for (Long id : ids) {
+            BitSet bits = faceta.get(id);
+            if (bits != null) {
+                resultado.or(bits);
+            }
+        }
+        return resultado;
+    }
+
+    private static BitSet interseccion(BitSet base, BitSet... filtros) {
+        BitSet resultado = (BitSet) base.clone();
+        for (BitSet filtro : filtros) {
+            if (filtro != null) {
+                resultado.and(filtro);
+            }
+        }
+        return resultado;
+    }
+
+    private static List<FacetaDTO> facetas(Map<Long, BitSet> faceta, Map<Long, String> nombres, BitSet base) {
+        List<FacetaDTO> resultado = new ArrayList<>(nombres.size());
+        BitSet trabajo = new BitSet(base.length());
+        nombres.forEach((id, nombre) -> {
+            BitSet bits = faceta.get(id);
+            int count = 0;
+            if (bits != null) {
+                trabajo.clear();
+                trabajo.or(base);
+                trabajo.and(bits);
+                count = trabajo.cardinality();
+            }
+            resultado.add(new FacetaDTO(id, nombre, count));
+        });
+        return resultado;
+    }
+}
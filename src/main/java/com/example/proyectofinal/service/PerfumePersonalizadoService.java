@@ -11,8 +11,10 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
 
 @Service
+@Slf4j
 public class PerfumePersonalizadoService {
 
     @Autowired
@@ -76,8 +78,7 @@ public class PerfumePersonalizadoService {
 
     public PerfumePersonalizado save(PerfumePersonalizado perfumePersonalizado) {
         try {
-            System.out.println("Guardando perfume personalizado con ID: " + 
-                               (perfumePersonalizado.getId() != null ? perfumePersonalizado.getId() : "NUEVO"));
+            log.debug("Guardando perfume personalizado con ID: {}", (perfumePersonalizado.getId() != null ? perfumePersonalizado.getId() : "NUEVO"));
             
             // Si es una creación, establecer la fecha
             if (perfumePersonalizado.getFechaCreacion() == null) {
@@ -86,28 +87,28 @@ public class PerfumePersonalizadoService {
             
             // Verificar si las notas olfativas están presentes
             if (perfumePersonalizado.getNotas() != null) {
-                System.out.println("El perfume tiene " + perfumePersonalizado.getNotas().size() + " notas olfativas");
+                log.debug("El perfume tiene {} notas olfativas", perfumePersonalizado.getNotas().size());
             } else {
-                System.out.println("No se encontraron notas olfativas en el perfume");
+                log.debug("No se encontraron notas olfativas en el perfume");
             }
             
             // Verificar la URL de la imagen
             if (perfumePersonalizado.getImagenUrl() != null) {
-                System.out.println("URL de imagen: " + perfumePersonalizado.getImagenUrl());
+                log.debug("URL de imagen: {}", perfumePersonalizado.getImagenUrl());
             } else {
-                System.out.println("No se encontró URL de imagen");
+                log.debug("No se encontró URL de imagen");
             }
             
             // Guardar en la base de datos con flush para forzar la persistencia inmediata
             PerfumePersonalizado resultado = perfumePersonalizadoRepository.saveAndFlush(perfumePersonalizado);
-            System.out.println("Perfume guardado correctamente con ID: " + resultado.getId());
+            log.debug("Perfume guardado correctamente con ID: {}", resultado.getId());
             
             // Verificar que se guardaron todas las propiedades
-            System.out.println("Perfume guardado:");
-            System.out.println("- Nombre: " + resultado.getNombre());
-            System.out.println("- Descripción: " + resultado.getDescripcion());
-            System.out.println("- Precio: " + resultado.getPrecio());
-            System.out.println("- Imagen URL: " + resultado.getImagenUrl());
+            log.debug("Perfume guardado:");
+            log.debug("- Nombre: {}", resultado.getNombre());
+            log.debug("- Descripción: {}", resultado.getDescripcion());
+            log.debug("- Precio: {}", resultado.getPrecio());
+            log.debug("- Imagen URL: {}", resultado.getImagenUrl());
             
             // Limpiar colecciones para evitar problemas de serialización
             resultado.setDetallesCarrito(new ArrayList<>());
@@ -115,8 +116,7 @@ public class PerfumePersonalizadoService {
             
             return resultado;
         } catch (Exception e) {
-            System.err.println("Error al guardar perfume personalizado: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al guardar perfume personalizado: {}", e.getMessage(), e);
             throw e;
         }
     }
@@ -124,12 +124,12 @@ public class PerfumePersonalizadoService {
     @Transactional
     public PerfumePersonalizado update(Long id, PerfumePersonalizado perfumeActualizado) {
         try {
-            System.out.println("Actualizando perfume personalizado con ID: " + id);
+            log.debug("Actualizando perfume personalizado con ID: {}", id);
             
             // Obtener el perfume existente con todas sus propiedades
             Optional<PerfumePersonalizado> perfumeExistenteOpt = perfumePersonalizadoRepository.findById(id);
             if (!perfumeExistenteOpt.isPresent()) {
-                System.out.println("No se encontró el perfume con ID: " + id);
+                log.debug("No se encontró el perfume con ID: {}", id);
                 return null;
             }
             
@@ -137,46 +137,45 @@ public class PerfumePersonalizadoService {
             
             // Actualizar campos básicos
             if (perfumeActualizado.getNombre() != null) {
-                System.out.println("Actualizando nombre de '" + perfumeExistente.getNombre() + "' a '" + 
-                                   perfumeActualizado.getNombre() + "'");
+                log.debug("Actualizando nombre de '{}' a '{}'", perfumeExistente.getNombre(), perfumeActualizado.getNombre());
                 perfumeExistente.setNombre(perfumeActualizado.getNombre());
             }
             
             if (perfumeActualizado.getDescripcion() != null) {
-                System.out.println("Actualizando descripción a: " + perfumeActualizado.getDescripcion());
+                log.debug("Actualizando descripción a: {}", perfumeActualizado.getDescripcion());
                 perfumeExistente.setDescripcion(perfumeActualizado.getDescripcion());
             }
             
             // Actualizar URL de imagen si está definida en el objeto actualizado
             if (perfumeActualizado.getImagenUrl() != null) {
-                System.out.println("Actualizando URL de imagen a: " + perfumeActualizado.getImagenUrl());
+                log.debug("Actualizando URL de imagen a: {}", perfumeActualizado.getImagenUrl());
                 perfumeExistente.setImagenUrl(perfumeActualizado.getImagenUrl());
             }
             
             // Actualizar las notas si se proporcionan
             if (perfumeActualizado.getNotas() != null && !perfumeActualizado.getNotas().isEmpty()) {
-                System.out.println("Actualizando " + perfumeActualizado.getNotas().size() + " notas olfativas");
+                log.debug("Actualizando {} notas olfativas", perfumeActualizado.getNotas().size());
                 perfumeExistente.setNotas(perfumeActualizado.getNotas());
                 
                 // Actualizar precio basado en el número de notas
                 double precioBase = 50.0;
                 precioBase += perfumeActualizado.getNotas().size() * 10.0;
-                System.out.println("Recalculando precio: " + precioBase);
+                log.debug("Recalculando precio: {}", precioBase);
                 perfumeExistente.setPrecio(precioBase);
             }
             
             // Guardar todos los cambios usando saveAndFlush para persistencia inmediata
-            System.out.println("Guardando cambios con saveAndFlush para persistencia inmediata");
+            log.debug("Guardando cambios con saveAndFlush para persistencia inmediata");
             PerfumePersonalizado resultado = perfumePersonalizadoRepository.saveAndFlush(perfumeExistente);
-            System.out.println("Perfume actualizado correctamente con ID: " + resultado.getId());
+            log.debug("Perfume actualizado correctamente con ID: {}", resultado.getId());
             
             // Verificar que se actualizaron todas las propiedades
-            System.out.println("Perfume actualizado:");
-            System.out.println("- Nombre: " + resultado.getNombre());
-            System.out.println("- Descripción: " + resultado.getDescripcion());
-            System.out.println("- Precio: " + resultado.getPrecio());
-            System.out.println("- Imagen URL: " + resultado.getImagenUrl());
-            System.out.println("- Notas olfativas: " + (resultado.getNotas() != null ? resultado.getNotas().size() : 0));
+            log.debug("Perfume actualizado:");
+            log.debug("- Nombre: {}", resultado.getNombre());
+            log.debug("- Descripción: {}", resultado.getDescripcion());
+            log.debug("- Precio: {}", resultado.getPrecio());
+            log.debug("- Imagen URL: {}", resultado.getImagenUrl());
+            log.debug("- Notas olfativas: {}", (resultado.getNotas() != null ? resultado.getNotas().size() : 0));
             
             // Limpiar colecciones para evitar problemas de serialización
             resultado.setDetallesCarrito(new ArrayList<>());
@@ -184,8 +183,7 @@ public class PerfumePersonalizadoService {
             
             return resultado;
         } catch (Exception e) {
-            System.err.println("Error en update de PerfumePersonalizadoService: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error en update de PerfumePersonalizadoService: {}", e.getMessage(), e);
             throw e; 
         }
     }
@@ -196,7 +194,7 @@ public class PerfumePersonalizadoService {
     @Transactional
     private void updateNotas(Long perfumeId, List<NotaOlfativa> nuevasNotas) {
         try {
-            System.out.println("Actualizando notas para el perfume " + perfumeId);
+            log.debug("Actualizando notas para el perfume {}", perfumeId);
             // Usar la consulta específica que solo trae las notas
             PerfumePersonalizado perfumeExistente = perfumePersonalizadoRepository.findByIdWithNotas(perfumeId);
             
@@ -205,13 +203,12 @@ public class PerfumePersonalizadoService {
                 perfumeExistente.getNotas().clear();
                 perfumeExistente.getNotas().addAll(nuevasNotas);
                 perfumePersonalizadoRepository.saveAndFlush(perfumeExistente);
-                System.out.println("Notas actualizadas correctamente");
+                log.debug("Notas actualizadas correctamente");
             } else {
-                System.out.println("No se pudo encontrar el perfume con ID: " + perfumeId + " para actualizar notas");
+                log.debug("No se pudo encontrar el perfume con ID: {} para actualizar notas", perfumeId);
             }
         } catch (Exception e) {
-            System.err.println("Error actualizando notas: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error actualizando notas: {}", e.getMessage(), e);
             throw e;
         }
     }
@@ -0,0 +1,348 @@
+package com.example.proyectofinal.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.proyectofinal.dto.PerfumeDTO;
+import com.example.proyectofinal.event.CatalogoModificadoEvent;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Índice invertido en memoria sobre nombre, descripción, categorías y notas de los perfumes.
+ * Admite búsqueda por prefijo, ignora tildes y mayúsculas y ordena por relevancia.
+ * Cada perfume recibe un ordinal denso para que las listas de apariciones y las
+ * puntuaciones de una consulta sean arrays de enteros en lugar de mapas.
+ */
+@Component
+@Slf4j
+public class PerfumeSearchIndex {
+
+    private static final int PESO_NOMBRE = 4;
+    private static final int PESO_CATEGORIA = 2;
+    private static final int PESO_NOTA = 2;
+    private static final int PESO_DESCRIPCION = 1;
+
+    private static final int LONGITUD_MINIMA_PREFIJO = 2;
+    private static final int TAMANO_LOTE = 500;
+
+    private static final Pattern MARCAS_DIACRITICAS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^a-z0-9]+");
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "de", "del", "la", "las", "el", "los", "y", "e", "o", "con", "en", "un", "una", "por", "para", "a", "al");
+
+    @Autowired
+    private PerfumeService perfumeService;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Indice indice = new Indice();
+
+    private record Documento(PerfumeDTO perfume, Map<String, Integer> terminos) {
+    }
+
+    // Ordinales de los perfumes que contienen un término, en orden creciente, con su peso
+    private static final class Apariciones {
+        private int[] ordinales = new int[4];
+        private int[] pesos = new int[4];
+        private int size;
+
+        void agregar(int ordinal, int peso) {
+            if (size == ordinales.length) {
+                ordinales = Arrays.copyOf(ordinales, size * 2);
+                pesos = Arrays.copyOf(pesos, size * 2);
+            }
+            ordinales[size] = ordinal;
+            pesos[size] = peso;
+            size++;
+        }
+
+        void eliminar(int ordinal) {
+            int pos = Arrays.binarySearch(ordinales, 0, size, ordinal);
+            if (pos >= 0) {
+                System.arraycopy(ordinales, pos + 1, ordinales, pos, size - pos - 1);
+                System.arraycopy(pesos, pos + 1, pesos, pos, size - pos - 1);
+                size--;
+            }
+        }
+    }
+
+    private static final class Indice {
+        // término -> apariciones
+        private final NavigableMap<String, Apariciones> terminos = new TreeMap<>();
+        // ordinal -> documento (null si se eliminó)
+        private final List<Documento> documentos = new ArrayList<>();
+        private final Map<Long, Integer> ordinales = new HashMap<>();
+
+        void agregar(PerfumeDTO perfume) {
+            Map<String, Integer> pesos = new HashMap<>();
+            indexarCampo(pesos, perfume.getNombre(), PESO_NOMBRE);
+            indexarCampo(pesos, perfume.getDescripcion(), PESO_DESCRIPCION);
+            if (perfume.getCategorias() != null) {
+                perfume.getCategorias().forEach(categoria -> indexarCampo(pesos, categoria, PESO_CATEGORIA));
+            }
+            if (perfume.getNotas() != null) {
+                perfume.getNotas().forEach(nota -> indexarCampo(pesos, nota, PESO_NOTA));
+            }
+
+            // Los ordinales nuevos siempre son los mayores, así las apariciones siguen ordenadas
+            int ordinal = documentos.size();
+            documentos.add(new Documento(perfume, pesos));
+            ordinales.put(perfume.getId(), ordinal);
+            pesos.forEach((termino, peso) -> terminos.computeIfAbsent(termino, k -> new Apariciones()).agregar(ordinal, peso));
+        }
+
+        void eliminar(Long id) {
+            Integer ordinal = ordinales.remove(id);
+            if (ordinal == null) {
+                return;
+            }
+            Documento documento = documentos.set(ordinal, null);
+            for (String termino : documento.terminos().keySet()) {
+                Apariciones apariciones = terminos.get(termino);
+                apariciones.eliminar(ordinal);
+                if (apariciones.size == 0) {
+                    terminos.remove(termino);
+                }
+            }
+        }
+
+        boolean necesitaCompactar() {
+            return documentos.size() > 64 && documentos.size() > 2 * ordinales.size();
+        }
+
+        Indice compactar() {
+            Indice nuevo = new Indice();
+            documentos.stream().filter(d -> d != null).forEach(d -> nuevo.agregar(d.perfume()));
+            return nuevo;
+        }
+    }
+
+    /*
+     * Arrays de trabajo de una consulta, reutilizados por hilo para no reservar memoria
+     * proporcional al catálogo en cada búsqueda. Solo se tocan las posiciones de los
+     * candidatos del primer término, así que basta con limpiar esas al terminar.
+     */
+    private static final class Acumuladores {
+        private int[] puntuaciones = new int[0];
+        private int[] cumplidos = new int[0];
+        private int[] candidatos = new int[16];
+        private int numCandidatos;
+
+        Acumuladores preparar(int total) {
+            if (puntuaciones.length < total) {
+                puntuaciones = new int[total];
+                cumplidos = new int[total];
+            }
+            return this;
+        }
+
+        void agregarCandidato(int ordinal) {
+            if (numCandidatos == candidatos.length) {
+                candidatos = Arrays.copyOf(candidatos, numCandidatos * 2);
+            }
+            candidatos[numCandidatos++] = ordinal;
+        }
+
+        void limpiar() {
+            for (int c = 0; c < numCandidatos; c++) {
+                puntuaciones[candidatos[c]] = 0;
+                cumplidos[candidatos[c]] = 0;
+            }
+            numCandidatos = 0;
+        }
+    }
+
+    private static final ThreadLocal<Acumuladores> ACUMULADORES = ThreadLocal.withInitial(Acumuladores::new);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reconstruir() {
+        Indice nuevo = new Indice();
+        List<Long> ids = perfumeService.findAllIds();
+        for (int desde = 0; desde < ids.size(); desde += TAMANO_LOTE) {
+            List<Long> lote = ids.subList(desde, Math.min(desde + TAMANO_LOTE, ids.size()));
+            perfumeService.findDTOsByIds(lote).forEach(nuevo::agregar);
+        }
+
+        lock.writeLock().lock();
+        try {
+            indice = nuevo;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Índice de búsqueda construido con {} perfumes", nuevo.ordinales.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(0)
+    public synchronized void onCatalogoModificado(CatalogoModificadoEvent event) {
+        if (event.getTipo() != CatalogoModificadoEvent.Tipo.PERFUME) {
+            // Un cambio de nombre de categoría o nota afecta a muchos documentos
+            reconstruir();
+            return;
+        }
+        List<PerfumeDTO> actualizado = perfumeService.findDTOsByIds(List.of(event.getId()));
+        lock.writeLock().lock();
+        try {
+            indice.eliminar(event.getId());
+            if (!actualizado.isEmpty()) {
+                indice.agregar(actualizado.get(0));
+            }
+            if (indice.necesitaCompactar()) {
+                indice = indice.compactar();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Devuelve los perfumes que contienen todos los términos de {@code texto} (como palabra
+     * o prefijo), ordenados de mayor a menor relevancia.
+     */
+    public List<PerfumeDTO> buscar(String texto, int limite) {
+        List<String> terminos = new ArrayList<>(new LinkedHashSet<>(tokenizar(texto)));
+        if (terminos.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        Acumuladores acumuladores = ACUMULADORES.get().preparar(indice.documentos.size());
+        try {
+            int[] puntuaciones = acumuladores.puntuaciones;
+            // Número de términos de la consulta que ya ha cumplido cada documento
+            int[] cumplidos = acumuladores.cumplidos;
+
+            // Empezar por el término más selectivo deja menos candidatos para los siguientes
+            List<NavigableMap<String, Apariciones>> rangos = new ArrayList<>();
+            terminos.forEach(termino -> rangos.add(rango(termino)));
+            List<Integer> orden = new ArrayList<>();
+            for (int i = 0; i < terminos.size(); i++) {
+                orden.add(i);
+            }
+            orden.sort(Comparator.comparingInt(i -> totalApariciones(rangos.get(i))));
+
+            for (int i = 0; i < terminos.size(); i++) {
+                String termino = terminos.get(orden.get(i));
+                boolean algunaCoincidencia = false;
+                for (Map.Entry<String, Apariciones> entrada : rangos.get(orden.get(i)).entrySet()) {
+                    // Una palabra completa puntúa el doble que un prefijo
+                    int factor = entrada.getKey().equals(termino) ? 2 : 1;
+                    Apariciones apariciones = entrada.getValue();
+                    for (int j = 0; j < apariciones.size; j++) {
+                        int ordinal = apariciones.ordinales[j];
+                        // Solo siguen en juego los documentos que cumplieron todos los términos anteriores
+                        if (cumplidos[ordinal] == i) {
+                            if (i == 0) {
+                                acumuladores.agregarCandidato(ordinal);
+                            }
+                            cumplidos[ordinal] = i + 1;
+                            puntuaciones[ordinal] += apariciones.pesos[j] * factor;
+                            algunaCoincidencia = true;
+                        } else if (cumplidos[ordinal] == i + 1) {
+                            puntuaciones[ordinal] += apariciones.pesos[j] * factor;
+                        }
+                    }
+                }
+                if (!algunaCoincidencia) {
+                    return new ArrayList<>();
+                }
+            }
+
+            // Montículo de los mejores: puntuación en la parte alta, ordinal invertido en la baja
+            PriorityQueue<Long> mejores = new PriorityQueue<>(limite + 1);
+            for (int c = 0; c < acumuladores.numCandidatos; c++) {
+                int ordinal = acumuladores.candidatos[c];
+                if (cumplidos[ordinal] != terminos.size()) {
+                    continue;
+                }
+                long clave = ((long) puntuaciones[ordinal] << 32) | (Integer.MAX_VALUE - ordinal);
+                if (mejores.size() < limite) {
+                    mejores.add(clave);
+                } else if (clave > mejores.peek()) {
+                    mejores.poll();
+                    mejores.add(clave);
+                }
+            }
+
+            List<PerfumeDTO> resultado = new ArrayList<>(mejores.size());
+            while (!mejores.isEmpty()) {
+                int ordinal = Integer.MAX_VALUE - (int) (mejores.poll() & 0xFFFFFFFFL);
+                resultado.add(indice.documentos.get(ordinal).perfume());
+            }
+            Collections.reverse(resultado);
+            return resultado;
+        } finally {
+            acumuladores.limpiar();
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return indice.ordinales.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Quita tildes, pasa a minúsculas y separa en palabras
+    static List<String> tokenizar(String texto) {
+        List<String> tokens = new ArrayList<>();
+        if (texto == null) {
+            return tokens;
+        }
+        String normalizado = MARCAS_DIACRITICAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        for (String token : SEPARADORES.split(normalizado)) {
+            if (!token.isEmpty() && !PALABRAS_VACIAS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private NavigableMap<String, Apariciones> rango(String termino) {
+        // Con prefijos demasiado cortos se expandirían demasiados términos; solo se buscan exactos
+        return termino.length() < LONGITUD_MINIMA_PREFIJO
+                ? indice.terminos.subMap(termino, true, termino, true)
+                : indice.terminos.subMap(termino, true, termino + Character.MAX_VALUE, false);
+    }
+
+    private static int totalApariciones(NavigableMap<String, Apariciones> rango) {
+        int total = 0;
+        for (Apariciones apariciones : rango.values()) {
+            total += apariciones.size;
+        }
+        return total;
+    }
+
+    private static void indexarCampo(Map<String, Integer> pesos, String valor, int peso) {
+        for (String token : tokenizar(valor)) {
+            pesos.merge(token, peso, Math::max);
+        }
+    }
+}
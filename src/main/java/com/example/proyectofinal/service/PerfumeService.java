@@ -1,18 +1,32 @@
 package com.example.proyectofinal.service;
 
+import com.example.proyectofinal.config.CacheConfig;
+import com.example.proyectofinal.dto.PerfumeDTO;
+import com.example.proyectofinal.event.CatalogoModificadoEvent;
 import com.example.proyectofinal.model.Perfume;
 import com.example.proyectofinal.repository.PerfumeRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
 
 @Service
+@Slf4j
 public class PerfumeService {
 
+    // Tamaño máximo de la lista IN al cargar categorías y notas en lote
+    private static final int TAMANO_LOTE = 500;
+
     @Autowired
     private PerfumeRepository perfumeRepository;
 
@@ -22,6 +36,9 @@ public class PerfumeService {
     @Autowired
     private NotaOlfativaService notaOlfativaService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     public List<Perfume> findAll() {
         List<Perfume> perfumes = perfumeRepository.findAll();
         // Evitar referencias circulares
@@ -36,6 +53,55 @@ public class PerfumeService {
         return perfumes;
     }
 
+    // Las listas cacheadas son inmutables: la misma instancia llega a todos los que llaman
+    @Cacheable(cacheNames = CacheConfig.PERFUMES, key = "'todos'")
+    public List<PerfumeDTO> findAllDTO() {
+        return List.copyOf(completarColecciones(perfumeRepository.findAllDTO()));
+    }
+
+    /**
+     * Devuelve hasta {@code limit} perfumes con id mayor que {@code afterId}, ordenados por id.
+     * Si {@code afterId} es null se empieza desde el principio del catálogo.
+     */
+    @Cacheable(cacheNames = CacheConfig.PERFUMES, key = "'pagina:' + #afterId + ':' + #limit")
+    public List<PerfumeDTO> findPageDTO(Long afterId, int limit) {
+        return List.copyOf(completarColecciones(perfumeRepository.findPageDTO(afterId != null ? afterId : 0L, Limit.of(limit))));
+    }
+
+    @Cacheable(cacheNames = CacheConfig.PERFUMES, key = "'categoria:' + #categoriaId")
+    public List<PerfumeDTO> findDTOByCategoria(Long categoriaId) {
+        return List.copyOf(completarColecciones(perfumeRepository.findDTOByCategoria(categoriaId)));
+    }
+
+    // Sin caché: lo usa el índice de búsqueda, que debe ver siempre los datos confirmados
+    public List<PerfumeDTO> findDTOsByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return completarColecciones(perfumeRepository.findDTOByIdIn(ids));
+    }
+
+    public List<Long> findAllIds() {
+        return perfumeRepository.findAllIds();
+    }
+
+    // Rellena categorías y notas con dos consultas por lote en lugar de dos por perfume
+    private List<PerfumeDTO> completarColecciones(List<PerfumeDTO> perfumes) {
+        for (int desde = 0; desde < perfumes.size(); desde += TAMANO_LOTE) {
+            List<PerfumeDTO> lote = perfumes.subList(desde, Math.min(desde + TAMANO_LOTE, perfumes.size()));
+            Map<Long, PerfumeDTO> porId = new HashMap<>();
+            lote.forEach(dto -> porId.put(dto.getId(), dto));
+
+            for (Object[] fila : perfumeRepository.findCategoriaNombresByPerfumeIds(porId.keySet())) {
+                porId.get((Long) fila[0]).getCategorias().add((String) fila[1]);
+            }
+            for (Object[] fila : perfumeRepository.findNotaNombresByPerfumeIds(porId.keySet())) {
+                porId.get((Long) fila[0]).getNotas().add((String) fila[1]);
+            }
+        }
+        return perfumes;
+    }
+
     public Optional<Perfume> findById(Long id) {
         Optional<Perfume> perfumeOpt = perfumeRepository.findById(id);
         // Evitar referencias circulares
@@ -52,18 +118,19 @@ public class PerfumeService {
 
     public Perfume save(Perfume perfume) {
         try {
-            System.out.println("Guardando perfume: " + perfume.getNombre());
-            return perfumeRepository.save(perfume);
+            log.debug("Guardando perfume: {}", perfume.getNombre());
+            Perfume savedPerfume = perfumeRepository.save(perfume);
+            eventPublisher.publishEvent(new CatalogoModificadoEvent(CatalogoModificadoEvent.Tipo.PERFUME, savedPerfume.getId()));
+            return savedPerfume;
         } catch (Exception e) {
-            System.err.println("Error al guardar perfume: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al guardar perfume: {}", e.getMessage(), e);
             throw e;
         }
     }
 
     public Perfume update(Long id, Perfume perfume) {
         try {
-            System.out.println("Actualizando perfume con ID: " + id);
+            log.debug("Actualizando perfume con ID: {}", id);
             return perfumeRepository.findById(id)
                     .map(existingPerfume -> {
                         // Actualizar propiedades básicas
@@ -82,16 +149,17 @@ public class PerfumeService {
                             existingPerfume.setNotasOlfativas(perfume.getNotasOlfativas());
                         }
                         
-                        System.out.println("Guardando perfume actualizado");
-                        return perfumeRepository.save(existingPerfume);
+                        log.debug("Guardando perfume actualizado");
+                        Perfume updatedPerfume = perfumeRepository.save(existingPerfume);
+                        eventPublisher.publishEvent(new CatalogoModificadoEvent(CatalogoModificadoEvent.Tipo.PERFUME, id));
+                        return updatedPerfume;
                     })
                     .orElseThrow(() -> {
-                        System.err.println("Perfume no encontrado con ID: " + id);
+                        log.error("Perfume no encontrado con ID: {}", id);
                         return new RuntimeException("Perfume no encontrado con ID: " + id);
                     });
         } catch (Exception e) {
-            System.err.println("Error al actualizar perfume: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al actualizar perfume: {}", e.getMessage(), e);
             throw e;
         }
     }
@@ -99,12 +167,12 @@ public class PerfumeService {
     @Transactional
     public void deleteById(Long id) {
         try {
-            System.out.println("Eliminando perfume con ID: " + id);
+            log.debug("Eliminando perfume con ID: {}", id);
             perfumeRepository.deleteById(id);
-            System.out.println("Perfume eliminado correctamente");
+            eventPublisher.publishEvent(new CatalogoModificadoEvent(CatalogoModificadoEvent.Tipo.PERFUME, id));
+            log.debug("Perfume eliminado correctamente");
         } catch (Exception e) {
-            System.err.println("Error al eliminar perfume: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al eliminar perfume: {}", e.getMessage(), e);
             throw e;
         }
     }
@@ -120,7 +188,7 @@ public class PerfumeService {
     @Transactional
     public void actualizarCategorias(Perfume perfume, List<Long> categoriasIds) {
         try {
-            System.out.println("Actualizando categorías del perfume: " + perfume.getId());
+            log.debug("Actualizando categorías del perfume: {}", perfume.getId());
             // Limpiar las categorías actuales
             perfume.getCategorias().clear();
             
@@ -131,10 +199,9 @@ public class PerfumeService {
                 });
             });
             
-            System.out.println("Categorías actualizadas");
+            log.debug("Categorías actualizadas");
         } catch (Exception e) {
-            System.err.println("Error al actualizar categorías: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al actualizar categorías: {}", e.getMessage(), e);
             throw e;
         }
     }
@@ -142,7 +209,7 @@ public class PerfumeService {
     @Transactional
     public void actualizarNotasOlfativas(Perfume perfume, List<Long> notasIds) {
         try {
-            System.out.println("Actualizando notas olfativas del perfume: " + perfume.getId());
+            log.debug("Actualizando notas olfativas del perfume: {}", perfume.getId());
             // Limpiar las notas actuales
             perfume.getNotasOlfativas().clear();
             
@@ -153,10 +220,9 @@ public class PerfumeService {
                 });
             });
             
-            System.out.println("Notas olfativas actualizadas");
+            log.debug("Notas olfativas actualizadas");
         } catch (Exception e) {
-            System.err.println("Error al actualizar notas olfativas: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al actualizar notas olfativas: {}", e.getMessage(), e);
             throw e;
         }
     }
@@ -0,0 +1,260 @@
+package com.example.proyectofinal.service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.proyectofinal.dto.VentasDiaDTO;
+import com.example.proyectofinal.dto.VentasPerfumeDTO;
+import com.example.proyectofinal.dto.VentasUsuarioDTO;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ventas agregadas por día, por perfume y día y por usuario (tablas ventas_*), para que los
+ * paneles de /api/estadisticas no recorran facturas ni detalles_factura. Cada checkout deja
+ * una tarea VENTAS_AGREGADAS en la bandeja de salida (BandejaSalidaService), que suma la
+ * factura poco después del commit sin alargar la petición. Las facturas creadas o borradas
+ * fuera del checkout no se reflejan hasta la siguiente reconstrucción.
+ */
+@Service
+@Slf4j
+public class VentasAgregadasService {
+
+    private static final String SUMAR_DIA =
+            "MERGE INTO ventas_diarias v USING (SELECT CAST(? AS DATE) AS dia, CAST(? AS BIGINT) AS unidades, " +
+            "CAST(? AS BIGINT) AS importe) s ON v.dia = s.dia " +
+            "WHEN MATCHED THEN UPDATE SET facturas = v.facturas + 1, unidades = v.unidades + s.unidades, " +
+            "importe_centimos = v.importe_centimos + s.importe " +
+            "WHEN NOT MATCHED THEN INSERT (dia, facturas, unidades, importe_centimos) VALUES (s.dia, 1, s.unidades, s.importe)";
+
+    private static final String SUMAR_PERFUME =
+            "MERGE INTO ventas_perfumes_diarias v USING (SELECT CAST(? AS DATE) AS dia, CAST(? AS BIGINT) AS perfume_id, " +
+            "CAST(? AS BIGINT) AS unidades, CAST(? AS BIGINT) AS importe) s ON v.dia = s.dia AND v.perfume_id = s.perfume_id " +
+            "WHEN MATCHED THEN UPDATE SET unidades = v.unidades + s.unidades, importe_centimos = v.importe_centimos + s.importe " +
+            "WHEN NOT MATCHED THEN INSERT (dia, perfume_id, unidades, importe_centimos) VALUES (s.dia, s.perfume_id, s.unidades, s.importe)";
+
+    private static final String SUMAR_USUARIO =
+            "MERGE INTO ventas_usuarios v USING (SELECT CAST(? AS BIGINT) AS usuario_id, CAST(? AS BIGINT) AS unidades, " +
+            "CAST(? AS BIGINT) AS importe, CAST(? AS TIMESTAMP(6)) AS fecha) s ON v.usuario_id = s.usuario_id " +
+            "WHEN MATCHED THEN UPDATE SET facturas = v.facturas + 1, unidades = v.unidades + s.unidades, " +
+            "importe_centimos = v.importe_centimos + s.importe, primera_compra = LEAST(v.primera_compra, s.fecha), " +
+            "ultima_compra = GREATEST(v.ultima_compra, s.fecha) " +
+            "WHEN NOT MATCHED THEN INSERT (usuario_id, facturas, unidades, importe_centimos, primera_compra, ultima_compra) " +
+            "VALUES (s.usuario_id, 1, s.unidades, s.importe, s.fecha, s.fecha)";
+
+    // Las mismas consultas que rellenaron las tablas en V10__ventas_agregadas.sql, sin las
+    // facturas cuya tarea VENTAS_AGREGADAS sigue pendiente: esas las sumará la tarea
+    private static final String SIN_TAREA_PENDIENTE =
+            "NOT EXISTS (SELECT 1 FROM eventos_salida e WHERE e.factura_id = f.id " +
+            "AND e.tipo = 'VENTAS_AGREGADAS' AND e.estado = 'PENDIENTE') ";
+
+    private static final String RECALCULAR_DIAS =
+            "INSERT INTO ventas_diarias (dia, facturas, unidades, importe_centimos) " +
+            "SELECT CAST(f.fecha_emision AS DATE), COUNT(DISTINCT f.id), COALESCE(SUM(d.cantidad), 0), " +
+            "COALESCE(SUM(d.cantidad * CAST(ROUND(d.precio_unitario * 100) AS BIGINT)), 0) " +
+            "FROM facturas f LEFT JOIN detalles_factura d ON d.factura_id = f.id " +
+            "WHERE " + SIN_TAREA_PENDIENTE +
+            "GROUP BY CAST(f.fecha_emision AS DATE)";
+
+    private static final String RECALCULAR_PERFUMES =
+            "INSERT INTO ventas_perfumes_diarias (dia, perfume_id, unidades, importe_centimos) " +
+            "SELECT CAST(f.fecha_emision AS DATE), d.perfume_id, SUM(d.cantidad), " +
+            "SUM(d.cantidad * CAST(ROUND(d.precio_unitario * 100) AS BIGINT)) " +
+            "FROM facturas f JOIN detalles_factura d ON d.factura_id = f.id " +
+            "WHERE d.perfume_id IS NOT NULL AND " + SIN_TAREA_PENDIENTE +
+            "GROUP BY CAST(f.fecha_emision AS DATE), d.perfume_id";
+
+    private static final String RECALCULAR_USUARIOS =
+            "INSERT INTO ventas_usuarios (usuario_id, facturas, unidades, importe_centimos, primera_compra, ultima_compra) " +
+            "SELECT f.usuario_id, COUNT(DISTINCT f.id), COALESCE(SUM(d.cantidad), 0), " +
+            "COALESCE(SUM(d.cantidad * CAST(ROUND(d.precio_unitario * 100) AS BIGINT)), 0), " +
+            "MIN(f.fecha_emision), MAX(f.fecha_emision) " +
+            "FROM facturas f LEFT JOIN detalles_factura d ON d.factura_id = f.id " +
+            "WHERE " + SIN_TAREA_PENDIENTE +
+            "GROUP BY f.usuario_id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transaccion;
+
+    public VentasAgregadasService(PlatformTransactionManager transactionManager) {
+        this.transaccion = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Suma a las ventas agregadas la factura {@code facturaId}. La llama la tarea
+     * VENTAS_AGREGADAS de BandejaSalidaService dentro de la transacción que la marca como
+     * procesada, así que cada factura se suma una sola vez. Si dos facturas crean a la vez la
+     * misma fila, la segunda falla por clave duplicada y la bandeja la repite.
+     */
+    public void registrarFactura(Long facturaId) {
+        List<LineaVendida> lineas = jdbcTemplate.query("SELECT f.usuario_id, f.fecha_emision, d.perfume_id, d.cantidad, " +
+                "d.precio_unitario FROM facturas f LEFT JOIN detalles_factura d ON d.factura_id = f.id WHERE f.id = ?",
+                (rs, fila) -> new LineaVendida(rs.getLong("usuario_id"), rs.getObject("fecha_emision", LocalDateTime.class),
+                        rs.getObject("perfume_id", Long.class), rs.getInt("cantidad"),
+                        rs.getObject("precio_unitario") == null ? 0 : CarritoService.centimos(rs.getDouble("precio_unitario"))),
+                facturaId);
+        if (lineas.isEmpty()) {
+            log.debug("Factura ID: {} ya no existe; no se suma a las ventas agregadas", facturaId);
+            return;
+        }
+
+        LineaVendida primera = lineas.get(0);
+        LocalDate dia = primera.fechaEmision().toLocalDate();
+        long unidades = 0;
+        long importe = 0;
+        Map<Long, long[]> porPerfume = new TreeMap<>();
+        for (LineaVendida linea : lineas) {
+            unidades += linea.cantidad();
+            importe += linea.importeCentimos();
+            if (linea.perfumeId() != null) {
+                long[] acumulado = porPerfume.computeIfAbsent(linea.perfumeId(), id -> new long[2]);
+                acumulado[0] += linea.cantidad();
+                acumulado[1] += linea.importeCentimos();
+            }
+        }
+
+        jdbcTemplate.update(SUMAR_DIA, dia, unidades, importe);
+        if (!porPerfume.isEmpty()) {
+            List<Object[]> filas = new ArrayList<>(porPerfume.size());
+            porPerfume.forEach((perfumeId, acumulado) -> filas.add(new Object[] {dia, perfumeId, acumulado[0], acumulado[1]}));
+            jdbcTemplate.batchUpdate(SUMAR_PERFUME, filas);
+        }
+        jdbcTemplate.update(SUMAR_USUARIO, primera.usuarioId(), unidades, importe, primera.fechaEmision());
+        log.debug("Ventas agregadas actualizadas con la factura ID: {}", facturaId);
+    }
+
+    // Una línea de la factura con su cabecera; una factura sin líneas da una fila con cantidad 0
+    private record LineaVendida(Long usuarioId, LocalDateTime fechaEmision, Long perfumeId, int cantidad, long precioCentimos) {
+        long importeCentimos() {
+            return cantidad * precioCentimos;
+        }
+    }
+
+    // Si la migración no encontró facturas pero la base ya las tiene (datos cargados después
+    // sin pasar por el checkout), las tablas se rellenan al arrancar
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconstruirSiVacias() {
+        Long dias = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ventas_diarias", Long.class);
+        Long facturas = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM facturas", Long.class);
+        if (dias == 0 && facturas > 0) {
+            log.info("Ventas agregadas vacías con {} facturas en la base de datos; reconstruyendo", facturas);
+            reconstruir();
+        }
+    }
+
+    /**
+     * Vuelve a calcular todas las ventas agregadas desde facturas y detalles_factura en una sola
+     * transacción, para el histórico o para corregir facturas creadas o borradas fuera del
+     * checkout. Deja fuera las facturas con la tarea VENTAS_AGREGADAS aún pendiente, que se
+     * sumarán al ejecutarse. Las tareas que coinciden con ella esperan a que termine o la hacen
+     * fallar por clave duplicada; en ese caso basta con repetirla.
+     */
+    public synchronized Map<String, Object> reconstruir() {
+        long inicio = System.currentTimeMillis();
+        int[] filas = transaccion.execute(status -> {
+            // Las tareas que agotaron sus intentos quedan incluidas aquí y ya no deben sumarse
+            jdbcTemplate.update("UPDATE eventos_salida SET estado = 'PROCESADO', fecha_procesado = LOCALTIMESTAMP, " +
+                    "ultimo_error = 'Incluida en la reconstrucción de ventas' WHERE tipo = 'VENTAS_AGREGADAS' AND estado = 'FALLIDO'");
+            jdbcTemplate.update("DELETE FROM ventas_diarias");
+            jdbcTemplate.update("DELETE FROM ventas_perfumes_diarias");
+            jdbcTemplate.update("DELETE FROM ventas_usuarios");
+            return new int[] {
+                jdbcTemplate.update(RECALCULAR_DIAS),
+                jdbcTemplate.update(RECALCULAR_PERFUMES),
+                jdbcTemplate.update(RECALCULAR_USUARIOS)
+            };
+        });
+        long duracion = System.currentTimeMillis() - inicio;
+        log.info("Ventas agregadas reconstruidas en {} ms: {} días, {} perfumes por día, {} usuarios",
+                duracion, filas[0], filas[1], filas[2]);
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("dias", filas[0]);
+        resultado.put("perfumesPorDia", filas[1]);
+        resultado.put("usuarios", filas[2]);
+        resultado.put("duracionMs", duracion);
+        resultado.put("fecha", LocalDateTime.now());
+        return resultado;
+    }
+
+    /**
+     * Ventas de cada día entre {@code desde} y {@code hasta}, ambos incluidos; los días sin
+     * ventas aparecen con ceros para que la serie no tenga huecos.
+     */
+    public List<VentasDiaDTO> findVentasDiarias(LocalDate desde, LocalDate hasta) {
+        Map<LocalDate, VentasDiaDTO> conVentas = new TreeMap<>();
+        jdbcTemplate.query("SELECT dia, facturas, unidades, importe_centimos FROM ventas_diarias " +
+                "WHERE dia >= ? AND dia <= ? ORDER BY dia", rs -> {
+            LocalDate dia = rs.getObject("dia", LocalDate.class);
+            conVentas.put(dia, new VentasDiaDTO(dia, rs.getLong("facturas"), rs.getLong("unidades"), rs.getLong("importe_centimos")));
+        }, desde, hasta);
+
+        List<VentasDiaDTO> serie = new ArrayList<>();
+        for (LocalDate dia = desde; !dia.isAfter(hasta); dia = dia.plusDays(1)) {
+            serie.add(conVentas.getOrDefault(dia, new VentasDiaDTO(dia, 0L, 0L, 0L)));
+        }
+        return serie;
+    }
+
+    /**
+     * Los {@code limit} perfumes más vendidos por {@code orden} ("unidades" o "importe") entre
+     * {@code desde} y {@code hasta}; sin fechas, desde siempre.
+     */
+    public List<VentasPerfumeDTO> findPerfumesMasVendidos(LocalDate desde, LocalDate hasta, String orden, int limit) {
+        String columna = switch (orden) {
+            case "unidades" -> "unidades DESC, importe_centimos DESC";
+            case "importe" -> "importe_centimos DESC, unidades DESC";
+            default -> throw new IllegalArgumentException("Orden no soportado: " + orden + " (unidades o importe)");
+        };
+        return jdbcTemplate.query("SELECT v.perfume_id, p.nombre, SUM(v.unidades) AS unidades, " +
+                "SUM(v.importe_centimos) AS importe_centimos FROM ventas_perfumes_diarias v " +
+                "LEFT JOIN perfumes p ON p.id = v.perfume_id " +
+                "WHERE (CAST(? AS DATE) IS NULL OR v.dia >= ?) AND (CAST(? AS DATE) IS NULL OR v.dia <= ?) " +
+                "GROUP BY v.perfume_id, p.nombre ORDER BY " + columna + ", v.perfume_id LIMIT ?",
+                (rs, fila) -> new VentasPerfumeDTO(rs.getLong("perfume_id"), rs.getString("nombre"),
+                        rs.getLong("unidades"), rs.getLong("importe_centimos")),
+                desde, desde, hasta, hasta, limit);
+    }
+
+    /**
+     * Los {@code limit} clientes con más compras por {@code orden} ("importe" o "facturas").
+     */
+    public List<VentasUsuarioDTO> findMejoresClientes(String orden, int limit) {
+        String columna = switch (orden) {
+            case "importe" -> "v.importe_centimos DESC, v.facturas DESC";
+            case "facturas" -> "v.facturas DESC, v.importe_centimos DESC";
+            default -> throw new IllegalArgumentException("Orden no soportado: " + orden + " (importe o facturas)");
+        };
+        return jdbcTemplate.query("SELECT v.*, u.nombre FROM ventas_usuarios v LEFT JOIN usuarios u ON u.id = v.usuario_id " +
+                "ORDER BY " + columna + ", v.usuario_id LIMIT ?", (rs, fila) -> ventasUsuario(rs), limit);
+    }
+
+    public Optional<VentasUsuarioDTO> findVentasUsuario(Long usuarioId) {
+        return jdbcTemplate.query("SELECT v.*, u.nombre FROM ventas_usuarios v LEFT JOIN usuarios u ON u.id = v.usuario_id " +
+                "WHERE v.usuario_id = ?", (rs, fila) -> ventasUsuario(rs), usuarioId).stream().findFirst();
+    }
+
+    private static VentasUsuarioDTO ventasUsuario(ResultSet rs) throws SQLException {
+        return new VentasUsuarioDTO(rs.getLong("usuario_id"), rs.getString("nombre"), rs.getLong("facturas"),
+                rs.getLong("unidades"), rs.getLong("importe_centimos"),
+                rs.getObject("primera_compra", LocalDateTime.class), rs.getObject("ultima_compra", LocalDateTime.class));
+    }
+}
@@ -0,0 +1,52 @@
+-- Ventas agregadas para los paneles de /api/estadisticas: por día, por perfume y día y por
+-- usuario. Se actualizan en la misma transacción que cada factura del checkout (ver
+-- VentasAgregadasService), así que leerlas no recorre facturas ni detalles_factura. Los
+-- importes van en céntimos, como los totales del carrito
+create table ventas_diarias (
+    dia date not null,
+    facturas bigint not null,
+    unidades bigint not null,
+    importe_centimos bigint not null,
+    primary key (dia)
+);
+
+-- Sin clave ajena: las ventas de un perfume se conservan aunque se borre del catálogo. Los
+-- perfumes personalizados solo cuentan en los totales por día y por usuario
+create table ventas_perfumes_diarias (
+    dia date not null,
+    perfume_id bigint not null,
+    unidades bigint not null,
+    importe_centimos bigint not null,
+    primary key (dia, perfume_id)
+);
+
+create table ventas_usuarios (
+    usuario_id bigint not null,
+    facturas bigint not null,
+    unidades bigint not null,
+    importe_centimos bigint not null,
+    primera_compra timestamp(6) not null,
+    ultima_compra timestamp(6) not null,
+    primary key (usuario_id)
+);
+
+-- Histórico: las facturas emitidas antes de esta migración
+insert into ventas_diarias (dia, facturas, unidades, importe_centimos)
+select cast(f.fecha_emision as date), count(distinct f.id), coalesce(sum(d.cantidad), 0),
+       coalesce(sum(d.cantidad * cast(round(d.precio_unitario * 100) as bigint)), 0)
+from facturas f left join detalles_factura d on d.factura_id = f.id
+group by cast(f.fecha_emision as date);
+
+insert into ventas_perfumes_diarias (dia, perfume_id, unidades, importe_centimos)
+select cast(f.fecha_emision as date), d.perfume_id, sum(d.cantidad),
+       sum(d.cantidad * cast(round(d.precio_unitario * 100) as bigint))
+from facturas f join detalles_factura d on d.factura_id = f.id
+where d.perfume_id is not null
+group by cast(f.fecha_emision as date), d.perfume_id;
+
+insert into ventas_usuarios (usuario_id, facturas, unidades, importe_centimos, primera_compra, ultima_compra)
+select f.usuario_id, count(distinct f.id), coalesce(sum(d.cantidad), 0),
+       coalesce(sum(d.cantidad * cast(round(d.precio_unitario * 100) as bigint)), 0),
+       min(f.fecha_emision), max(f.fecha_emision)
+from facturas f left join detalles_factura d on d.factura_id = f.id
+group by f.usuario_id;
@@ -0,0 +1,22 @@
+-- Bandeja de salida del checkout: una fila por cada tarea posterior a una compra (ventas
+-- agregadas, carrito siguiente, correo de confirmación...). Se escriben en la misma
+-- transacción que la factura y las ejecuta después BandejaSalidaService, fuera de la petición
+create sequence eventos_salida_seq start with 50 increment by 50;
+
+create table eventos_salida (
+    id bigint not null,
+    tipo varchar(50) not null,
+    factura_id bigint not null,
+    usuario_id bigint not null,
+    estado varchar(20) not null,
+    intentos integer not null,
+    proximo_intento timestamp(6) not null,
+    ultimo_error varchar(1000),
+    fecha_creacion timestamp(6) not null,
+    fecha_procesado timestamp(6),
+    primary key (id)
+);
+
+-- Pendientes por orden de vencimiento, y las tareas de una factura (reconstrucción de ventas)
+create index idx_eventos_salida_estado_proximo on eventos_salida (estado, proximo_intento);
+create index idx_eventos_salida_factura on eventos_salida (factura_id, tipo);
@@ -0,0 +1,118 @@
+-- Esquema inicial, equivalente al que generaba ddl-auto=update a partir de las entidades
+
+create table usuarios (
+    id bigint generated by default as identity,
+    nombre varchar(255) not null,
+    correo varchar(255) not null,
+    contrasena varchar(255) not null,
+    rol varchar(255) not null,
+    primary key (id),
+    constraint uk_usuarios_correo unique (correo)
+);
+
+create table categorias (
+    id bigint generated by default as identity,
+    nombre varchar(255) not null,
+    primary key (id),
+    constraint uk_categorias_nombre unique (nombre)
+);
+
+create table notas_olfativas (
+    id bigint generated by default as identity,
+    nombre varchar(255) not null,
+    descripcion varchar(255) not null,
+    primary key (id),
+    constraint uk_notas_olfativas_nombre unique (nombre)
+);
+
+create table perfumes (
+    id bigint generated by default as identity,
+    nombre varchar(255) not null,
+    precio float(53) not null,
+    descripcion varchar(1000),
+    imagen varchar(255),
+    primary key (id)
+);
+
+create table perfume_categoria (
+    perfume_id bigint not null,
+    categoria_id bigint not null,
+    constraint fk_perfume_categoria_perfume foreign key (perfume_id) references perfumes,
+    constraint fk_perfume_categoria_categoria foreign key (categoria_id) references categorias
+);
+
+create table perfume_nota (
+    perfume_id bigint not null,
+    nota_id bigint not null,
+    constraint fk_perfume_nota_perfume foreign key (perfume_id) references perfumes,
+    constraint fk_perfume_nota_nota foreign key (nota_id) references notas_olfativas
+);
+
+create table perfume_personalizado (
+    id bigint generated by default as identity,
+    nombre varchar(255),
+    descripcion text,
+    precio float(53) not null,
+    aprobado boolean not null,
+    fecha_creacion timestamp(6),
+    imagen_url varchar(1000),
+    usuario_id bigint,
+    primary key (id),
+    constraint fk_perfume_personalizado_usuario foreign key (usuario_id) references usuarios
+);
+
+create table perfume_personalizado_nota (
+    perfume_personalizado_id bigint not null,
+    nota_olfativa_id bigint not null,
+    constraint fk_pp_nota_perfume_personalizado foreign key (perfume_personalizado_id) references perfume_personalizado,
+    constraint fk_pp_nota_nota foreign key (nota_olfativa_id) references notas_olfativas
+);
+
+create table carritos (
+    id bigint generated by default as identity,
+    usuario_id bigint not null,
+    fecha_creacion timestamp(6) not null,
+    estado varchar(255) not null,
+    primary key (id),
+    constraint fk_carritos_usuario foreign key (usuario_id) references usuarios
+);
+
+create table detalles_carrito (
+    id bigint generated by default as identity,
+    carrito_id bigint not null,
+    perfume_id bigint,
+    perfume_personalizado_id bigint,
+    cantidad integer not null,
+    precio_unitario float(53) not null,
+    subtotal float(53) not null,
+    primary key (id),
+    constraint fk_detalles_carrito_carrito foreign key (carrito_id) references carritos,
+    constraint fk_detalles_carrito_perfume foreign key (perfume_id) references perfumes,
+    constraint fk_detalles_carrito_perfume_personalizado foreign key (perfume_personalizado_id) references perfume_personalizado
+);
+
+create table facturas (
+    id bigint generated by default as identity,
+    usuario_id bigint not null,
+    fecha_emision timestamp(6) not null,
+    metodo_pago varchar(255) not null,
+    direccion_envio varchar(255) not null,
+    total float(53) not null,
+    primary key (id),
+    constraint fk_facturas_usuario foreign key (usuario_id) references usuarios
+);
+
+create table detalles_factura (
+    id bigint generated by default as identity,
+    factura_id bigint not null,
+    perfume_id bigint,
+    perfume_personalizado_id bigint,
+    nombre_producto varchar(255) not null,
+    cantidad integer not null,
+    precio_unitario float(53) not null,
+    subtotal float(53) not null,
+    primary key (id),
+    constraint fk_detalles_factura_factura foreign key (factura_id) references facturas,
+    constraint fk_detalles_factura_perfume foreign key (perfume_id) references perfumes on delete set null,
+    constraint fk_detalles_factura_perfume_personalizado foreign key (perfume_personalizado_id) references perfume_personalizado on delete set null
+);
@@ -0,0 +1,14 @@
+-- Índices para los accesos más frecuentes: carrito activo del usuario, líneas de un
+-- carrito o factura, facturas del usuario y las tablas de unión en ambos sentidos
+
+create index idx_carritos_usuario_estado on carritos (usuario_id, estado);
+create index idx_detalles_carrito_carrito on detalles_carrito (carrito_id);
+create index idx_facturas_usuario on facturas (usuario_id);
+create index idx_detalles_factura_factura on detalles_factura (factura_id);
+
+create index idx_perfume_categoria_perfume on perfume_categoria (perfume_id, categoria_id);
+create index idx_perfume_categoria_categoria on perfume_categoria (categoria_id, perfume_id);
+create index idx_perfume_nota_perfume on perfume_nota (perfume_id, nota_id);
+create index idx_perfume_nota_nota on perfume_nota (nota_id, perfume_id);
+create index idx_pp_nota_perfume_personalizado on perfume_personalizado_nota (perfume_personalizado_id, nota_olfativa_id);
+create index idx_pp_nota_nota on perfume_personalizado_nota (nota_olfativa_id, perfume_personalizado_id);
@@ -0,0 +1,19 @@
+-- Los pedidos pasan de columnas identity a secuencias con incremento 50 (optimizador
+-- pooled de Hibernate), lo que permite agrupar los INSERT en lotes JDBC.
+-- Cada secuencia arranca en max(id) + 50 porque Hibernate reserva el bloque
+-- (valor - 49 .. valor) a partir del primer valor que lee.
+
+create sequence carritos_seq start with 50 increment by 50;
+create sequence detalles_carrito_seq start with 50 increment by 50;
+create sequence facturas_seq start with 50 increment by 50;
+create sequence detalles_factura_seq start with 50 increment by 50;
+
+alter sequence carritos_seq restart with (select coalesce(max(id), 0) + 50 from carritos);
+alter sequence detalles_carrito_seq restart with (select coalesce(max(id), 0) + 50 from detalles_carrito);
+alter sequence facturas_seq restart with (select coalesce(max(id), 0) + 50 from facturas);
+alter sequence detalles_factura_seq restart with (select coalesce(max(id), 0) + 50 from detalles_factura);
+
+alter table carritos alter column id drop identity;
+alter table detalles_carrito alter column id drop identity;
+alter table facturas alter column id drop identity;
+alter table detalles_factura alter column id drop identity;
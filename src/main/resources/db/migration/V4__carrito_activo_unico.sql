@@ -0,0 +1,13 @@
+-- Como mucho un carrito ACTIVO por usuario. H2 no tiene índices parciales, así que se
+-- usa una columna calculada que solo vale usuario_id mientras el carrito está activo
+-- (en PostgreSQL sería: create unique index ... on carritos (usuario_id) where estado = 'ACTIVO').
+
+-- Los duplicados que pudieran existir se desactivan, conservando el más antiguo
+update carritos set estado = 'INACTIVO'
+where estado = 'ACTIVO'
+  and id not in (select min(id) from carritos where estado = 'ACTIVO' group by usuario_id);
+
+alter table carritos add column usuario_activo_id bigint
+    generated always as (case when estado = 'ACTIVO' then usuario_id end);
+
+alter table carritos add constraint uk_carritos_usuario_activo unique (usuario_activo_id);
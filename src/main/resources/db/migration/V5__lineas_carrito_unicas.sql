@@ -0,0 +1,33 @@
+-- Como mucho una línea por producto en cada carrito. Añadir un producto que ya está en el
+-- carrito suma la cantidad a su línea en lugar de crear otra.
+
+-- Las líneas repetidas que pudieran existir se funden en la más antigua
+update detalles_carrito d
+set cantidad = (select sum(o.cantidad) from detalles_carrito o
+                where o.carrito_id = d.carrito_id and o.perfume_id = d.perfume_id),
+    subtotal = precio_unitario * (select sum(o.cantidad) from detalles_carrito o
+                                  where o.carrito_id = d.carrito_id and o.perfume_id = d.perfume_id)
+where d.perfume_id is not null
+  and d.id in (select min(id) from detalles_carrito where perfume_id is not null group by carrito_id, perfume_id having count(*) > 1);
+
+delete from detalles_carrito
+where perfume_id is not null
+  and id not in (select min(id) from detalles_carrito where perfume_id is not null group by carrito_id, perfume_id);
+
+update detalles_carrito d
+set cantidad = (select sum(o.cantidad) from detalles_carrito o
+                where o.carrito_id = d.carrito_id and o.perfume_personalizado_id = d.perfume_personalizado_id),
+    subtotal = precio_unitario * (select sum(o.cantidad) from detalles_carrito o
+                                  where o.carrito_id = d.carrito_id and o.perfume_personalizado_id = d.perfume_personalizado_id)
+where d.perfume_personalizado_id is not null
+  and d.id in (select min(id) from detalles_carrito where perfume_personalizado_id is not null
+               group by carrito_id, perfume_personalizado_id having count(*) > 1);
+
+delete from detalles_carrito
+where perfume_personalizado_id is not null
+  and id not in (select min(id) from detalles_carrito where perfume_personalizado_id is not null
+                 group by carrito_id, perfume_personalizado_id);
+
+-- Los NULL no se consideran iguales, así que cada restricción solo afecta a su tipo de línea
+alter table detalles_carrito add constraint uk_detalles_carrito_perfume unique (carrito_id, perfume_id);
+alter table detalles_carrito add constraint uk_detalles_carrito_perfume_personalizado unique (carrito_id, perfume_personalizado_id);
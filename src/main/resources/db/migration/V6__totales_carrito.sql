@@ -0,0 +1,9 @@
+-- Totales del carrito mantenidos en cada cambio de línea, para poder leerlos sin cargar las
+-- líneas. El importe va en céntimos para que las sumas sucesivas sean exactas.
+alter table carritos add column cantidad_articulos integer default 0 not null;
+alter table carritos add column total_centimos bigint default 0 not null;
+
+update carritos c
+set cantidad_articulos = coalesce((select sum(d.cantidad) from detalles_carrito d where d.carrito_id = c.id), 0),
+    total_centimos = coalesce((select sum(d.cantidad * cast(round(d.precio_unitario * 100) as bigint))
+                               from detalles_carrito d where d.carrito_id = c.id), 0);
@@ -0,0 +1,7 @@
+-- Última modificación de las líneas de cada carrito, para caducar los carritos activos que
+-- llevan tiempo sin usarse y borrar los cerrados antiguos
+alter table carritos add column fecha_actualizacion timestamp(6);
+update carritos set fecha_actualizacion = fecha_creacion;
+alter table carritos alter column fecha_actualizacion set not null;
+
+create index idx_carritos_estado_actualizacion on carritos (estado, fecha_actualizacion);
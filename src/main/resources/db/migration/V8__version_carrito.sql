@@ -0,0 +1,4 @@
+-- Versión para el bloqueo optimista del carrito y sus líneas. Los UPDATE masivos y el motor
+-- en memoria la incrementan a mano; el valor por defecto cubre las líneas que inserta por JDBC
+alter table carritos add column version bigint default 0 not null;
+alter table detalles_carrito add column version bigint default 0 not null;
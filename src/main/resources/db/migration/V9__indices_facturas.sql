@@ -0,0 +1,5 @@
+-- Listado paginado de facturas (GET /api/facturas): por usuario recorriendo el id hacia atrás
+-- y por rango de fechas de emisión. El índice por usuario se rehace incluyendo el id
+drop index idx_facturas_usuario;
+create index idx_facturas_usuario on facturas (usuario_id, id);
+create index idx_facturas_fecha_emision on facturas (fecha_emision);
@@ -0,0 +1,305 @@
+package com.example.proyectofinal.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.http.ResponseEntity;
+
+import com.example.proyectofinal.ProyectofinalApplication;
+import com.example.proyectofinal.controller.CarritoController;
+import com.example.proyectofinal.model.DetalleCarrito;
+import com.example.proyectofinal.model.Perfume;
+import com.example.proyectofinal.model.Usuario;
+import com.example.proyectofinal.repository.PerfumeRepository;
+import com.example.proyectofinal.repository.UsuarioRepository;
+import com.example.proyectofinal.service.CarritoService;
+
+/**
+ * Prueba de carga del carrito. Arranca la aplicación sin servidor web, crea carga.usuarios
+ * usuarios y carga.perfumes perfumes con los repositorios y lanza un hilo virtual por cada
+ * pestaña (carga.pestanas por usuario) que llama a CarritoController con una mezcla de
+ * agregar, actualizar, eliminar y checkout (carga.mezcla, pesos relativos) durante
+ * carga.duracion-s segundos, tras carga.calentamiento-s segundos que no se miden.
+ *
+ * Por operación informa de operaciones por segundo, errores, latencia p50/p99/máxima y
+ * sentencias SQL por operación (ver ContadorSentencias). El resultado se guarda en
+ * target/carga/{carga.etiqueta}.csv; con carga.base apuntando a un CSV anterior se muestra
+ * además la diferencia con él. Con más de una pestaña por usuario las pestañas compiten por
+ * el mismo carrito, y algunas operaciones fallan porque otra pestaña ya quitó la línea.
+ *
+ * Ejecutar con el classpath de LoggingBenchmark:
+ *     java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *         com.example.proyectofinal.benchmark.CargaCarritoBenchmark --carga.usuarios=200 --carga.etiqueta=base
+ * Cualquier otra propiedad de la aplicación se puede pasar igual, por ejemplo
+ * --carrito.memoria.enabled=true o --spring.datasource.url=... para otra base de datos.
+ */
+public class CargaCarritoBenchmark {
+
+    enum Operacion { AGREGAR, ACTUALIZAR, ELIMINAR, CHECKOUT }
+
+    // Latencias, errores y sentencias de una operación; cada pestaña tiene las suyas y se suman al final
+    static class Medidas {
+        private long[] latencias = new long[1024];
+        private int operaciones;
+        private long errores;
+        private long sentencias;
+
+        void registrar(long nanos, boolean correcta, long sentenciasOperacion) {
+            if (operaciones == latencias.length) {
+                latencias = Arrays.copyOf(latencias, operaciones * 2);
+            }
+            latencias[operaciones++] = nanos;
+            sentencias += sentenciasOperacion;
+            if (!correcta) {
+                errores++;
+            }
+        }
+
+        void sumar(Medidas otras) {
+            if (operaciones + otras.operaciones > latencias.length) {
+                latencias = Arrays.copyOf(latencias, operaciones + otras.operaciones);
+            }
+            System.arraycopy(otras.latencias, 0, latencias, operaciones, otras.operaciones);
+            operaciones += otras.operaciones;
+            errores += otras.errores;
+            sentencias += otras.sentencias;
+        }
+
+        double percentilMs(long[] ordenadas, double percentil) {
+            if (ordenadas.length == 0) {
+                return 0;
+            }
+            int posicion = (int) Math.ceil(percentil / 100 * ordenadas.length) - 1;
+            return ordenadas[Math.max(posicion, 0)] / 1_000_000.0;
+        }
+    }
+
+    private final ConfigurableApplicationContext contexto;
+    private final CarritoController carritoController;
+    private final Map<Operacion, Integer> mezcla;
+    private final int pesoTotal;
+    private final List<Long> perfumeIds = new ArrayList<>();
+    private final List<Long> usuarioIds = new ArrayList<>();
+
+    CargaCarritoBenchmark(ConfigurableApplicationContext contexto) {
+        this.contexto = contexto;
+        this.carritoController = contexto.getBean(CarritoController.class);
+        this.mezcla = leerMezcla(contexto.getEnvironment().getProperty("carga.mezcla", "agregar:50,actualizar:25,eliminar:15,checkout:10"));
+        this.pesoTotal = mezcla.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    public static void main(String[] args) throws Exception {
+        // DevTools volvería a lanzar main en otro hilo al arrancar
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        Map<String, String> propiedades = new LinkedHashMap<>();
+        propiedades.put("spring.datasource.url", "jdbc:h2:mem:cargacarrito;DB_CLOSE_ON_EXIT=FALSE");
+        propiedades.put("spring.jpa.show-sql", "false");
+        propiedades.put("spring.jpa.properties.hibernate.session_factory.statement_inspector", ContadorSentencias.class.getName());
+        propiedades.put("logging.level.root", "WARN");
+        // Los errores esperados (líneas quitadas por otra pestaña) se cuentan en el informe
+        propiedades.put("logging.level.com.example.proyectofinal", "OFF");
+        // Los argumentos de la línea de comandos sustituyen a estos valores
+        for (String argumento : args) {
+            if (argumento.startsWith("--") && argumento.contains("=")) {
+                propiedades.put(argumento.substring(2, argumento.indexOf('=')), argumento.substring(argumento.indexOf('=') + 1));
+            }
+        }
+        String[] argumentos = propiedades.entrySet().stream()
+                .map(propiedad -> "--" + propiedad.getKey() + "=" + propiedad.getValue())
+                .toArray(String[]::new);
+
+        ConfigurableApplicationContext contexto = new SpringApplicationBuilder(ProyectofinalApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(argumentos);
+        try {
+            new CargaCarritoBenchmark(contexto).ejecutar();
+        } finally {
+            contexto.close();
+        }
+    }
+
+    void ejecutar() throws Exception {
+        Environment entorno = contexto.getEnvironment();
+        int usuarios = entorno.getProperty("carga.usuarios", Integer.class, 100);
+        int perfumes = entorno.getProperty("carga.perfumes", Integer.class, 200);
+        int pestanas = entorno.getProperty("carga.pestanas", Integer.class, 1);
+        int calentamiento = entorno.getProperty("carga.calentamiento-s", Integer.class, 5);
+        int duracion = entorno.getProperty("carga.duracion-s", Integer.class, 20);
+        String etiqueta = entorno.getProperty("carga.etiqueta", "carga");
+        String base = entorno.getProperty("carga.base");
+
+        sembrar(usuarios, perfumes);
+        System.out.printf("Carga: %d usuarios x %d pestañas, %d perfumes, mezcla %s, %d s + %d s de calentamiento%n",
+                usuarios, pestanas, perfumes, mezcla, duracion, calentamiento);
+
+        long inicioMedida = System.nanoTime() + calentamiento * 1_000_000_000L;
+        long fin = inicioMedida + duracion * 1_000_000_000L;
+        List<Future<Map<Operacion, Medidas>>> resultados = new ArrayList<>();
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Long usuarioId : usuarioIds) {
+                for (int i = 0; i < pestanas; i++) {
+                    resultados.add(hilos.submit(() -> pestana(usuarioId, inicioMedida, fin)));
+                }
+            }
+        }
+
+        Map<Operacion, Medidas> total = new EnumMap<>(Operacion.class);
+        for (Future<Map<Operacion, Medidas>> resultado : resultados) {
+            resultado.get().forEach((operacion, medidas) -> total.computeIfAbsent(operacion, clave -> new Medidas()).sumar(medidas));
+        }
+        List<String> filas = informe(total, duracion, base != null ? leerBase(Path.of(base)) : Map.of());
+        guardar(Path.of("target", "carga", etiqueta + ".csv"), filas);
+        System.out.println("Concurrencia del carrito: " + contexto.getBean(CarritoService.class).getEstadisticasConcurrencia());
+    }
+
+    private void sembrar(int usuarios, int perfumes) {
+        List<Perfume> nuevosPerfumes = new ArrayList<>();
+        for (int i = 0; i < perfumes; i++) {
+            Perfume perfume = new Perfume();
+            perfume.setNombre("Carga " + i);
+            perfume.setPrecio(10.0 + i % 90 + 0.99);
+            nuevosPerfumes.add(perfume);
+        }
+        contexto.getBean(PerfumeRepository.class).saveAll(nuevosPerfumes).forEach(perfume -> perfumeIds.add(perfume.getId()));
+
+        // El prefijo evita choques de correo si se repite contra una base de datos persistente
+        String prefijo = "carga" + System.currentTimeMillis() + "-";
+        List<Usuario> nuevosUsuarios = new ArrayList<>();
+        for (int i = 0; i < usuarios; i++) {
+            Usuario usuario = new Usuario();
+            usuario.setNombre("Carga " + i);
+            usuario.setCorreo(prefijo + i + "@perfumes.com");
+            usuario.setContrasena("-");
+            nuevosUsuarios.add(usuario);
+        }
+        contexto.getBean(UsuarioRepository.class).saveAll(nuevosUsuarios).forEach(usuario -> usuarioIds.add(usuario.getId()));
+    }
+
+    // Una pestaña del navegador: recuerda las líneas que ha creado para actualizarlas y quitarlas
+    private Map<Operacion, Medidas> pestana(Long usuarioId, long inicioMedida, long fin) {
+        Map<Operacion, Medidas> medidas = new EnumMap<>(Operacion.class);
+        List<Long> lineas = new ArrayList<>();
+        ThreadLocalRandom azar = ThreadLocalRandom.current();
+        while (System.nanoTime() < fin) {
+            Operacion operacion = elegir(azar.nextInt(pesoTotal));
+            if (lineas.isEmpty() && operacion != Operacion.AGREGAR) {
+                operacion = Operacion.AGREGAR;
+            }
+
+            long sentencias = ContadorSentencias.actual();
+            long inicio = System.nanoTime();
+            ResponseEntity<?> respuesta = switch (operacion) {
+                case AGREGAR -> carritoController.agregarItem(Map.of(
+                        "usuarioId", usuarioId,
+                        "perfumeId", perfumeIds.get(azar.nextInt(perfumeIds.size())),
+                        "cantidad", 1 + azar.nextInt(3)));
+                case ACTUALIZAR -> carritoController.actualizarCantidadItem(
+                        lineas.get(azar.nextInt(lineas.size())), Map.of("cantidad", 1 + azar.nextInt(5)));
+                case ELIMINAR -> carritoController.eliminarItem(lineas.remove(azar.nextInt(lineas.size())), usuarioId);
+                case CHECKOUT -> carritoController.checkout(Map.of(
+                        "usuarioId", usuarioId, "direccionEnvio", "Calle Carga 1", "metodoPago", "TARJETA"), null);
+            };
+            long nanos = System.nanoTime() - inicio;
+
+            if (operacion == Operacion.AGREGAR && respuesta.getBody() instanceof DetalleCarrito detalle && !lineas.contains(detalle.getId())) {
+                lineas.add(detalle.getId());
+            } else if (operacion == Operacion.CHECKOUT && respuesta.getStatusCode().is2xxSuccessful()) {
+                lineas.clear();
+            }
+            if (inicio >= inicioMedida) {
+                medidas.computeIfAbsent(operacion, clave -> new Medidas())
+                        .registrar(nanos, respuesta.getStatusCode().is2xxSuccessful(), ContadorSentencias.actual() - sentencias);
+            }
+        }
+        return medidas;
+    }
+
+    private Operacion elegir(int valor) {
+        for (Map.Entry<Operacion, Integer> entrada : mezcla.entrySet()) {
+            valor -= entrada.getValue();
+            if (valor < 0) {
+                return entrada.getKey();
+            }
+        }
+        return Operacion.AGREGAR;
+    }
+
+    private List<String> informe(Map<Operacion, Medidas> total, int duracion, Map<String, double[]> base) {
+        List<String> filas = new ArrayList<>();
+        filas.add("operacion,operaciones,errores,ops_s,p50_ms,p99_ms,max_ms,sentencias_op");
+        System.out.printf("%n%-11s %11s %8s %10s %9s %9s %9s %11s%s%n", "operación", "operaciones", "errores", "ops/s",
+                "p50 ms", "p99 ms", "máx ms", "sentencias", base.isEmpty() ? "" : "   ops/s vs base  p99 vs base");
+        Medidas todas = new Medidas();
+        total.values().forEach(todas::sumar);
+        Map<String, Medidas> porNombre = new LinkedHashMap<>();
+        total.forEach((operacion, medidas) -> porNombre.put(operacion.name().toLowerCase(), medidas));
+        porNombre.put("total", todas);
+
+        porNombre.forEach((nombre, medidas) -> {
+            long[] ordenadas = Arrays.copyOf(medidas.latencias, medidas.operaciones);
+            Arrays.sort(ordenadas);
+            double opsPorSegundo = medidas.operaciones / (double) duracion;
+            double p50 = medidas.percentilMs(ordenadas, 50);
+            double p99 = medidas.percentilMs(ordenadas, 99);
+            double maximo = ordenadas.length > 0 ? ordenadas[ordenadas.length - 1] / 1_000_000.0 : 0;
+            double sentencias = medidas.operaciones > 0 ? medidas.sentencias / (double) medidas.operaciones : 0;
+            String comparacion = "";
+            if (base.containsKey(nombre)) {
+                double[] anterior = base.get(nombre);
+                comparacion = String.format("   %+13.1f%%  %+10.1f%%", variacion(opsPorSegundo, anterior[0]), variacion(p99, anterior[1]));
+            }
+            System.out.printf("%-11s %11d %8d %10.1f %9.2f %9.2f %9.2f %11.1f%s%n", nombre, medidas.operaciones,
+                    medidas.errores, opsPorSegundo, p50, p99, maximo, sentencias, comparacion);
+            filas.add(String.format(Locale.ROOT, "%s,%d,%d,%.1f,%.3f,%.3f,%.3f,%.2f", nombre, medidas.operaciones,
+                    medidas.errores, opsPorSegundo, p50, p99, maximo, sentencias));
+        });
+        return filas;
+    }
+
+    private static double variacion(double actual, double anterior) {
+        return anterior == 0 ? 0 : (actual - anterior) / anterior * 100;
+    }
+
+    // ops/s y p99 de cada fila de un CSV guardado antes
+    private static Map<String, double[]> leerBase(Path fichero) throws IOException {
+        Map<String, double[]> base = new HashMap<>();
+        List<String> lineas = Files.readAllLines(fichero);
+        for (String linea : lineas.subList(1, lineas.size())) {
+            String[] campos = linea.split(",");
+            base.put(campos[0], new double[] {Double.parseDouble(campos[3]), Double.parseDouble(campos[5])});
+        }
+        return base;
+    }
+
+    private static void guardar(Path fichero, List<String> filas) throws IOException {
+        Files.createDirectories(fichero.getParent());
+        Files.write(fichero, filas);
+        System.out.println("\nResultado guardado en " + fichero);
+    }
+
+    private static Map<Operacion, Integer> leerMezcla(String texto) {
+        Map<Operacion, Integer> mezcla = new EnumMap<>(Operacion.class);
+        for (String parte : texto.split(",")) {
+            String[] pesoPorOperacion = parte.trim().split(":");
+            mezcla.put(Operacion.valueOf(pesoPorOperacion[0].trim().toUpperCase()), Integer.parseInt(pesoPorOperacion[1].trim()));
+        }
+        return mezcla;
+    }
+}
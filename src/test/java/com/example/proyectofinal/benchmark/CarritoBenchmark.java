@@ -0,0 +1,122 @@
+package com.example.proyectofinal.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.proyectofinal.ProyectofinalApplication;
+import com.example.proyectofinal.model.DetalleCarrito;
+import com.example.proyectofinal.model.Usuario;
+import com.example.proyectofinal.repository.PerfumeRepository;
+import com.example.proyectofinal.repository.UsuarioRepository;
+import com.example.proyectofinal.service.CarritoMemoriaService;
+import com.example.proyectofinal.service.CarritoService;
+
+/**
+ * Operaciones de carrito por segundo con el motor JPA y con el motor en memoria
+ * (carrito.memoria.enabled). Cada hilo trabaja sobre su propio usuario y en cada
+ * invocación agrega una línea, cambia su cantidad y la elimina: tres escrituras.
+ *
+ * Ejecutar igual que LoggingBenchmark, cambiando el nombre de la clase.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CarritoBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Aplicacion {
+
+        @Param({"jpa", "memoria"})
+        private String motor;
+
+        private ConfigurableApplicationContext contexto;
+        private CarritoService carritoService;
+        private CarritoMemoriaService carritoMemoriaService;
+        private List<Long> perfumeIds = new ArrayList<>();
+        private final AtomicInteger usuarios = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void arrancar() {
+            contexto = new SpringApplicationBuilder(ProyectofinalApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .run("--spring.datasource.url=jdbc:h2:mem:carritobenchmark;DB_CLOSE_ON_EXIT=FALSE",
+                            "--spring.jpa.show-sql=false",
+                            "--logging.level.root=WARN",
+                            "--carrito.memoria.enabled=" + motor.equals("memoria"));
+            carritoService = contexto.getBean(CarritoService.class);
+            if (motor.equals("memoria")) {
+                carritoMemoriaService = contexto.getBean(CarritoMemoriaService.class);
+            }
+            contexto.getBean(PerfumeRepository.class).findAll().forEach(perfume -> perfumeIds.add(perfume.getId()));
+        }
+
+        @TearDown(Level.Trial)
+        public void parar() {
+            contexto.close();
+        }
+
+        Long nuevoUsuario() {
+            Usuario usuario = new Usuario();
+            usuario.setNombre("Benchmark");
+            usuario.setCorreo("benchmark" + usuarios.incrementAndGet() + "@perfumes.com");
+            usuario.setContrasena("-");
+            return contexto.getBean(UsuarioRepository.class).save(usuario).getId();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cliente {
+        private Long usuarioId;
+        private int siguiente;
+
+        @Setup(Level.Trial)
+        public void crearUsuario(Aplicacion aplicacion) {
+            usuarioId = aplicacion.nuevoUsuario();
+        }
+    }
+
+    @Benchmark
+    public DetalleCarrito agregarActualizarEliminar(Aplicacion aplicacion, Cliente cliente) {
+        Long perfumeId = aplicacion.perfumeIds.get(cliente.siguiente++ % aplicacion.perfumeIds.size());
+        if (aplicacion.carritoMemoriaService != null) {
+            DetalleCarrito detalle = aplicacion.carritoMemoriaService.agregarItem(cliente.usuarioId, perfumeId, 1);
+            DetalleCarrito actualizado = aplicacion.carritoMemoriaService.actualizarCantidadItem(detalle.getId(), 2);
+            aplicacion.carritoMemoriaService.eliminarItem(cliente.usuarioId, detalle.getId());
+            return actualizado;
+        }
+        DetalleCarrito detalle = aplicacion.carritoService.agregarItem(cliente.usuarioId, perfumeId, 1);
+        DetalleCarrito actualizado = aplicacion.carritoService.actualizarCantidadItem(detalle.getId(), 2);
+        aplicacion.carritoService.eliminarItem(cliente.usuarioId, detalle.getId());
+        return actualizado;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CarritoBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.proyectofinal.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.proyectofinal.ProyectofinalApplication;
+import com.example.proyectofinal.model.Carrito;
+import com.example.proyectofinal.model.DetalleCarrito;
+import com.example.proyectofinal.model.Factura;
+import com.example.proyectofinal.model.Perfume;
+import com.example.proyectofinal.model.Usuario;
+import com.example.proyectofinal.repository.CarritoRepository;
+import com.example.proyectofinal.repository.PerfumeRepository;
+import com.example.proyectofinal.repository.UsuarioRepository;
+import com.example.proyectofinal.service.CarritoService;
+
+/**
+ * Latencia de la compra (CarritoService.checkout, que delega en PedidoService, el mismo
+ * camino que usa FacturaController) según el número de líneas del carrito. Antes de
+ * cada llamada se llena el carrito activo con {@code lineas} perfumes distintos; ese
+ * llenado no cuenta en la medida.
+ *
+ * Ejecutar igual que LoggingBenchmark, cambiando el nombre de la clase.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CheckoutBenchmark {
+
+    @Param({"1", "10", "50", "200"})
+    private int lineas;
+
+    private ConfigurableApplicationContext contexto;
+    private CarritoService carritoService;
+    private CarritoRepository carritoRepository;
+    private TransactionTemplate transaccion;
+    private List<Perfume> perfumes;
+    private Long usuarioId;
+
+    @Setup(Level.Trial)
+    public void arrancar() {
+        contexto = new SpringApplicationBuilder(ProyectofinalApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:checkoutbenchmark;DB_CLOSE_ON_EXIT=FALSE",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN");
+        carritoService = contexto.getBean(CarritoService.class);
+        carritoRepository = contexto.getBean(CarritoRepository.class);
+        transaccion = contexto.getBean(TransactionTemplate.class);
+        PerfumeRepository perfumeRepository = contexto.getBean(PerfumeRepository.class);
+
+        List<Perfume> nuevos = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Perfume perfume = new Perfume();
+            perfume.setNombre("Benchmark " + i);
+            perfume.setPrecio(10.0 + i);
+            nuevos.add(perfume);
+        }
+        perfumes = perfumeRepository.saveAll(nuevos);
+
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Benchmark");
+        usuario.setCorreo("benchmark@perfumes.com");
+        usuario.setContrasena("-");
+        usuarioId = contexto.getBean(UsuarioRepository.class).save(usuario).getId();
+    }
+
+    @Setup(Level.Invocation)
+    public void llenarCarrito() {
+        transaccion.executeWithoutResult(estado -> {
+            Carrito carrito = carritoService.getCarritoActivo(usuarioId);
+            for (int i = 0; i < lineas; i++) {
+                Perfume perfume = perfumes.get(i);
+                DetalleCarrito detalle = new DetalleCarrito();
+                detalle.setCarrito(carrito);
+                detalle.setPerfume(perfume);
+                detalle.setCantidad(1);
+                detalle.setPrecioUnitario(perfume.getPrecio());
+                detalle.setSubtotal(perfume.getPrecio());
+                carrito.getDetalles().add(detalle);
+            }
+            carritoRepository.save(carrito);
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void parar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public Factura checkout() {
+        return carritoService.checkout(usuarioId, "Calle Benchmark 1", "TARJETA");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CheckoutBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.proyectofinal.benchmark;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Cuenta las sentencias SQL que Hibernate prepara en cada hilo, para que CargaCarritoBenchmark
+ * pueda atribuirlas a la operación que las lanzó aunque haya muchas a la vez. Se activa con
+ * spring.jpa.properties.hibernate.session_factory.statement_inspector. Las escrituras por JDBC
+ * del motor en memoria no pasan por aquí.
+ */
+public class ContadorSentencias implements StatementInspector {
+
+    private static final ThreadLocal<long[]> SENTENCIAS = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public String inspect(String sql) {
+        SENTENCIAS.get()[0]++;
+        return sql;
+    }
+
+    public static long actual() {
+        return SENTENCIAS.get()[0];
+    }
+}
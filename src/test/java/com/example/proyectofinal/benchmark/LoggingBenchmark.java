@@ -0,0 +1,116 @@
+package com.example.proyectofinal.benchmark;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+
+/**
+ * Compara el coste por llamada de los System.out.println con concatenación que había en
+ * los servicios frente al logger con mensajes parametrizados y appender asíncrono.
+ * Ambas salidas escriben en /dev/null, así cada línea sigue costando una llamada write
+ * como en la consola real, pero el resultado no depende de la velocidad del terminal.
+ *
+ * Ejecutar con:
+ *     mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ *     java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main LoggingBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Threads(8)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LoggingBenchmark {
+
+    private static final String DESCARTE = "/dev/null";
+
+    private PrintStream consola;
+    private LoggerContext contexto;
+    private Logger logger;
+
+    private Long usuarioId = 42L;
+    private Long perfumeId = 1234L;
+    private Integer cantidad = 3;
+
+    @Setup
+    public void setUp() throws FileNotFoundException {
+        // PrintStream sincronizado con autoflush sobre un descriptor real, igual que System.out
+        consola = new PrintStream(new FileOutputStream(DESCARTE), true);
+
+        contexto = new LoggerContext();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(contexto);
+        encoder.setPattern("%d level=%-5level thread=%thread correlationId=%X{correlationId:--} logger=%logger{40} msg=\"%msg\"%n");
+        encoder.start();
+
+        OutputStreamAppender<ILoggingEvent> salida = new OutputStreamAppender<>();
+        salida.setContext(contexto);
+        salida.setEncoder(encoder);
+        salida.setOutputStream(new FileOutputStream(DESCARTE));
+        salida.start();
+
+        AsyncAppender asincrono = new AsyncAppender();
+        asincrono.setContext(contexto);
+        asincrono.setQueueSize(8192);
+        asincrono.setDiscardingThreshold(0);
+        asincrono.setNeverBlock(true);
+        asincrono.addAppender(salida);
+        asincrono.start();
+
+        contexto.start();
+        logger = contexto.getLogger("benchmark");
+        logger.setLevel(Level.INFO);
+        logger.addAppender(asincrono);
+    }
+
+    @TearDown
+    public void tearDown() {
+        consola.close();
+        contexto.stop();
+    }
+
+    @Benchmark
+    public void systemOutConcatenado() {
+        consola.println("Agregando item al carrito - Usuario ID: " + usuarioId + ", Perfume ID: " + perfumeId + ", Cantidad: " + cantidad);
+    }
+
+    @Benchmark
+    public void loggerNivelDeshabilitado() {
+        logger.debug("Agregando item al carrito - Usuario ID: {}, Perfume ID: {}, Cantidad: {}", usuarioId, perfumeId, cantidad);
+    }
+
+    @Benchmark
+    public void loggerAsincrono() {
+        logger.info("Agregando item al carrito - Usuario ID: {}, Perfume ID: {}, Cantidad: {}", usuarioId, perfumeId, cantidad);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LoggingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
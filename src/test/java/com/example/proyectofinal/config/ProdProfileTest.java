@@ -0,0 +1,84 @@
+package com.example.proyectofinal.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.example.proyectofinal.repository.CategoriaRepository;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+@SpringBootTest
+@ActiveProfiles("prod")
+class ProdProfileTest {
+
+    @TempDir
+    static Path directorio;
+
+    @DynamicPropertySource
+    static void baseDeDatos(DynamicPropertyRegistry registry) {
+        registry.add("PERFUMES_DB_PATH", () -> directorio.resolve("perfumesdb").toString());
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private HikariDataSource dataSource;
+
+    @Autowired
+    private DataInitializer dataInitializer;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private Environment environment;
+
+    @Test
+    void usaFicheroPoolFijoYMigraciones() {
+        assertTrue(Files.exists(directorio.resolve("perfumesdb.mv.db")));
+        assertEquals(10, dataSource.getMaximumPoolSize());
+        assertEquals(10, dataSource.getMinimumIdle());
+
+        Integer fallidas = jdbcTemplate.queryForObject(
+                "select count(*) from \"flyway_schema_history\" where not \"success\"", Integer.class);
+        assertEquals(0, fallidas);
+
+        List<String> indices = jdbcTemplate.queryForList(
+                "select lower(index_name) from information_schema.indexes where table_schema = 'PUBLIC'", String.class);
+        assertTrue(indices.contains("idx_carritos_usuario_estado"));
+        assertTrue(indices.contains("idx_detalles_carrito_carrito"));
+        assertTrue(indices.contains("idx_facturas_usuario"));
+        assertTrue(indices.contains("idx_perfume_categoria_categoria"));
+    }
+
+    @Test
+    void noVuelcaElSqlALaConsola() {
+        assertEquals("false", environment.getProperty("spring.jpa.show-sql"));
+        assertEquals("false", environment.getProperty("spring.jpa.properties.hibernate.format_sql"));
+        assertEquals("true", environment.getProperty("spring.jpa.properties.hibernate.generate_statistics"));
+    }
+
+    @Test
+    void noVuelveACargarLosDatosDeEjemplo() throws Exception {
+        long categorias = categoriaRepository.count();
+
+        dataInitializer.run();
+
+        assertEquals(categorias, categoriaRepository.count());
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.proyectofinal.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.proyectofinal.model.Perfume;
+import com.example.proyectofinal.repository.PerfumeRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:catalogoetagtest",
+    "bandeja-salida.enabled=false"
+})
+@AutoConfigureMockMvc
+class CatalogoEtagTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PerfumeRepository perfumeRepository;
+
+    @Test
+    void lasCategoriasRespondenNoModificadoHastaQueCambian() throws Exception {
+        String etag = comprobarNoModificado("/api/categorias");
+
+        mockMvc.perform(post("/api/categorias").contentType(MediaType.APPLICATION_JSON).content("{\"nombre\":\"Acuáticos\"}"));
+
+        comprobarModificado("/api/categorias", etag);
+    }
+
+    @Test
+    void losPerfumesRespondenNoModificadoHastaQueCambian() throws Exception {
+        String etag = comprobarNoModificado("/api/perfumes");
+
+        Perfume perfume = perfumeRepository.findAll().get(0);
+        mockMvc.perform(put("/api/perfumes/" + perfume.getId()).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"nombre\":\"" + perfume.getNombre() + "\",\"precio\":" + (perfume.getPrecio() + 1) + "}"));
+
+        comprobarModificado("/api/perfumes", etag);
+    }
+
+    @Test
+    void lasNotasRespondenNoModificadoHastaQueSeBorraUna() throws Exception {
+        MockHttpServletResponse creada = mockMvc.perform(post("/api/notas-olfativas").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"nombre\":\"Ámbar\",\"descripcion\":\"Cálida\"}")).andReturn().getResponse();
+        long notaId = objectMapper.readTree(creada.getContentAsString()).get("id").asLong();
+        String etag = comprobarNoModificado("/api/notas-olfativas");
+
+        mockMvc.perform(delete("/api/notas-olfativas/" + notaId));
+
+        comprobarModificado("/api/notas-olfativas", etag);
+    }
+
+    // Devuelve el ETag actual tras comprobar que repetirlo da un 304 sin cuerpo
+    private String comprobarNoModificado(String url) throws Exception {
+        MockHttpServletResponse primera = mockMvc.perform(get(url)).andReturn().getResponse();
+        assertEquals(200, primera.getStatus());
+        String etag = primera.getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        MockHttpServletResponse repetida = mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag)).andReturn().getResponse();
+        assertEquals(304, repetida.getStatus());
+        assertEquals(0, repetida.getContentAsByteArray().length);
+        return etag;
+    }
+
+    private void comprobarModificado(String url, String etagAnterior) throws Exception {
+        MockHttpServletResponse respuesta = mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etagAnterior)).andReturn().getResponse();
+        assertEquals(200, respuesta.getStatus());
+        assertNotEquals(etagAnterior, respuesta.getHeader(HttpHeaders.ETAG));
+        assertNotEquals(0, respuesta.getContentAsByteArray().length);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.proyectofinal.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.proyectofinal.model.Perfume;
+import com.example.proyectofinal.model.Usuario;
+import com.example.proyectofinal.repository.PerfumeRepository;
+import com.example.proyectofinal.repository.UsuarioRepository;
+import com.example.proyectofinal.service.CarritoService;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:documentofacturacontrollertest",
+    "upload.dir=target/documentos-test",
+    "bandeja-salida.enabled=false"
+})
+@AutoConfigureMockMvc
+class DocumentoFacturaControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private PerfumeRepository perfumeRepository;
+
+    @Test
+    void respondeNoModificadoConListasYEtiquetasDebiles() throws Exception {
+        Perfume perfume = perfumeRepository.findAll().get(0);
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Documento");
+        usuario.setCorreo("documento.controller@perfumes.com");
+        usuario.setContrasena("-");
+        Long usuarioId = usuarioRepository.save(usuario).getId();
+        carritoService.agregarItem(usuarioId, perfume.getId(), 1);
+        String url = "/api/facturas/" + carritoService.checkout(usuarioId, "Calle Mayor 1", "TARJETA").getId() + "/documento";
+
+        MockHttpServletResponse documento = mockMvc.perform(get(url)).andReturn().getResponse();
+        assertEquals(200, documento.getStatus());
+        assertEquals("text/html;charset=UTF-8", documento.getContentType());
+        String etag = documento.getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        for (String ifNoneMatch : new String[] {etag, "\"otra\", " + etag, "W/" + etag}) {
+            MockHttpServletResponse repetido = mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch)).andReturn().getResponse();
+            assertEquals(304, repetido.getStatus(), ifNoneMatch);
+            assertEquals(0, repetido.getContentAsByteArray().length);
+        }
+        assertEquals(200, mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, "\"otra\"")).andReturn().getResponse().getStatus());
+        assertEquals(404, mockMvc.perform(get("/api/facturas/999999/documento")).andReturn().getResponse().getStatus());
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.proyectofinal.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.proyectofinal.model.Perfume;
+import com.example.proyectofinal.repository.PerfumeRepository;
+import com.example.proyectofinal.util.CursorCodec;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:perfumepaginaciontest",
+    "bandeja-salida.enabled=false"
+})
+@AutoConfigureMockMvc
+class PerfumePaginacionTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PerfumeRepository perfumeRepository;
+
+    @Test
+    void elCursorSeDecodificaComoSeCodifico() {
+        assertEquals(42L, CursorCodec.decode(CursorCodec.encode(42L)));
+        assertEquals(Long.MAX_VALUE, CursorCodec.decode(CursorCodec.encode(Long.MAX_VALUE)));
+        assertNull(CursorCodec.encode(null));
+        assertNull(CursorCodec.decode(null));
+        assertNull(CursorCodec.decode(" "));
+
+        assertThrows(IllegalArgumentException.class, () -> CursorCodec.decode("%%%"));
+        assertThrows(IllegalArgumentException.class, () -> CursorCodec.decode(base64("otro:1")));
+        assertThrows(IllegalArgumentException.class, () -> CursorCodec.decode(base64("id:abc")));
+    }
+
+    @Test
+    void sinParametrosSeDevuelveLaListaCompleta() throws Exception {
+        JsonNode respuesta = leer("/api/perfumes", 200);
+
+        assertTrue(respuesta.isArray());
+        assertEquals(perfumeRepository.count(), respuesta.size());
+    }
+
+    @Test
+    void lasPaginasRecorrenTodoElCatalogoSinRepetir() throws Exception {
+        List<Long> esperados = perfumeRepository.findAll().stream().map(Perfume::getId).sorted().toList();
+        List<Long> recorridos = new ArrayList<>();
+
+        JsonNode pagina = leer("/api/perfumes?limit=2", 200);
+        while (pagina.get("hasMore").asBoolean()) {
+            assertEquals(2, pagina.get("items").size());
+            pagina.get("items").forEach(item -> recorridos.add(item.get("id").asLong()));
+            pagina = leer("/api/perfumes?limit=2&after=" + pagina.get("nextCursor").asText(), 200);
+        }
+        pagina.get("items").forEach(item -> recorridos.add(item.get("id").asLong()));
+
+        // La última página no ofrece cursor
+        assertTrue(pagina.get("nextCursor").isNull());
+        assertEquals(esperados, recorridos);
+
+        JsonNode trasElUltimo = leer("/api/perfumes?after=" + CursorCodec.encode(esperados.get(esperados.size() - 1)), 200);
+        assertEquals(0, trasElUltimo.get("items").size());
+        assertFalse(trasElUltimo.get("hasMore").asBoolean());
+    }
+
+    @Test
+    void elLimiteSeAjustaAlRangoPermitido() throws Exception {
+        assertEquals(1, leer("/api/perfumes?limit=0", 200).get("limit").asInt());
+        assertEquals(1, leer("/api/perfumes?limit=-5", 200).get("limit").asInt());
+        assertEquals(100, leer("/api/perfumes?limit=1000", 200).get("limit").asInt());
+
+        JsonNode porDefecto = leer("/api/perfumes?after=", 200);
+        assertEquals(20, porDefecto.get("limit").asInt());
+        assertTrue(porDefecto.get("items").size() <= 20);
+    }
+
+    @Test
+    void unCursorMalFormadoDevuelve400() throws Exception {
+        JsonNode error = leer("/api/perfumes?after=no-es-un-cursor", 400);
+        assertTrue(error.get("message").asText().startsWith("Cursor inválido"));
+
+        leer("/api/perfumes?limit=5&after=" + base64("otro:1"), 400);
+    }
+
+    private JsonNode leer(String url, int estadoEsperado) throws Exception {
+        MockHttpServletResponse respuesta = mockMvc.perform(get(url)).andReturn().getResponse();
+        assertEquals(estadoEsperado, respuesta.getStatus(), url);
+        return objectMapper.readTree(respuesta.getContentAsString(StandardCharsets.UTF_8));
+    }
+
+    private static String base64(String valor) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(valor.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.proyectofinal.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.example.proyectofinal.model.EventoSalida;
+import com.example.proyectofinal.model.Usuario;
+import com.example.proyectofinal.repository.CarritoRepository;
+import com.example.proyectofinal.repository.EventoSalidaRepository;
+import com.example.proyectofinal.repository.PerfumeRepository;
+import com.example.proyectofinal.repository.UsuarioRepository;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:bandejasalidatest",
+    "bandeja-salida.enabled=false",
+    "bandeja-salida.max-intentos=3",
+    "bandeja-salida.espera-inicial-ms=0"
+})
+class BandejaSalidaServiceTest {
+
+    @Autowired
+    private BandejaSalidaService bandejaSalidaService;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private EventoSalidaRepository eventoSalidaRepository;
+
+    @Autowired
+    private CarritoRepository carritoRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private PerfumeRepository perfumeRepository;
+
+    @Test
+    void elCheckoutDejaSusTareasEnLaBandejaYElDespachadorLasEjecuta() {
+        Long usuarioId = nuevoUsuario("bandeja@perfumes.com");
+        carritoService.agregarItem(usuarioId, perfumeRepository.findAll().get(0).getId(), 1);
+        Long facturaId = carritoService.checkout(usuarioId, "Calle Mayor 1", "TARJETA").getId();
+
+        List<EventoSalida> tareas = eventoSalidaRepository.findAll().stream()
+                .filter(evento -> evento.getFacturaId().equals(facturaId)).toList();
+        assertEquals(3, tareas.size());
+        assertTrue(tareas.stream().allMatch(evento -> evento.getEstado().equals("PENDIENTE")));
+        assertTrue(carritoRepository.findResumenActivo(usuarioId).isEmpty());
+
+        bandejaSalidaService.despachar();
+        assertTrue(eventoSalidaRepository.findAllById(tareas.stream().map(EventoSalida::getId).toList()).stream()
+                .allMatch(evento -> evento.getEstado().equals("PROCESADO") && evento.getIntentos() == 1));
+        // El carrito siguiente ya está creado cuando el usuario vuelve
+        assertTrue(carritoRepository.findResumenActivo(usuarioId).isPresent());
+    }
+
+    @Test
+    void unaTareaQueSiempreFallaAcabaComoFallidoYSePuedeReactivar() {
+        Long usuarioId = nuevoUsuario("fallida@perfumes.com");
+        LocalDateTime ahora = LocalDateTime.now();
+        Long id = eventoSalidaRepository.save(
+                new EventoSalida(null, "DESCONOCIDA", 0L, usuarioId, "PENDIENTE", 0, ahora, null, ahora, null)).getId();
+
+        bandejaSalidaService.despachar();
+        EventoSalida fallida = eventoSalidaRepository.findById(id).orElseThrow();
+        assertEquals("FALLIDO", fallida.getEstado());
+        assertEquals(3, fallida.getIntentos());
+        assertTrue(fallida.getUltimoError().contains("DESCONOCIDA"));
+        assertTrue(bandejaSalidaService.getFallidos(10).stream().anyMatch(evento -> evento.getId().equals(id)));
+
+        assertTrue(bandejaSalidaService.reintentar(id));
+        assertFalse(bandejaSalidaService.reintentar(id));
+        assertEquals("PENDIENTE", eventoSalidaRepository.findById(id).orElseThrow().getEstado());
+    }
+
+    private Long nuevoUsuario(String correo) {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Bandeja");
+        usuario.setCorreo(correo);
+        usuario.setContrasena("-");
+        return usuarioRepository.save(usuario).getId();
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.proyectofinal.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.proyectofinal.model.Carrito;
+import com.example.proyectofinal.model.DetalleCarrito;
+import com.example.proyectofinal.model.Factura;
+import com.example.proyectofinal.model.Perfume;
+import com.example.proyectofinal.repository.DetalleCarritoRepository;
+import com.example.proyectofinal.repository.PerfumeRepository;
+import com.example.proyectofinal.repository.UsuarioRepository;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:carritomemoriatest",
+    "carrito.memoria.enabled=true",
+    // La escritura periódica se lanza a mano en las pruebas
+    "carrito.memoria.intervalo-ms=3600000"
+})
+class CarritoMemoriaServiceTest {
+
+    @Autowired
+    private CarritoMemoriaService carritoMemoriaService;
+
+    @Autowired
+    private DetalleCarritoRepository detalleCarritoRepository;
+
+    @Autowired
+    private PerfumeRepository perfumeRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long usuarioId;
+    private List<Perfume> perfumes;
+
+    @BeforeEach
+    void setUp() {
+        usuarioId = usuarioRepository.findByCorreo("usuario@perfumes.com").orElseThrow().getId();
+        perfumes = perfumeRepository.findAll();
+        carritoMemoriaService.getCarritoActivo(usuarioId).getDetalles()
+                .forEach(detalle -> carritoMemoriaService.eliminarItem(usuarioId, detalle.getId()));
+        carritoMemoriaService.persistirPendientes();
+    }
+
+    @Test
+    void losCambiosSeEscribenAlPersistirPendientes() {
+        Long carritoId = carritoMemoriaService.getCarritoActivo(usuarioId).getId();
+        DetalleCarrito primero = carritoMemoriaService.agregarItem(usuarioId, perfumes.get(0).getId(), 1);
+        carritoMemoriaService.agregarItem(usuarioId, perfumes.get(1).getId(), 2);
+        carritoMemoriaService.actualizarCantidadItem(primero.getId(), 5);
+
+        assertTrue(detalleCarritoRepository.findByCarritoId(carritoId).isEmpty());
+        assertEquals(1, carritoMemoriaService.getCarritosPendientes());
+
+        carritoMemoriaService.persistirPendientes();
+
+        List<DetalleCarrito> guardados = detalleCarritoRepository.findByCarritoId(carritoId);
+        assertEquals(2, guardados.size());
+        DetalleCarrito guardado = guardados.stream().filter(d -> d.getId().equals(primero.getId())).findFirst().orElseThrow();
+        assertEquals(5, guardado.getCantidad());
+        assertEquals(0, carritoMemoriaService.getCarritosPendientes());
+    }
+
+    @Test
+    void losCarritosYaEscritosEInactivosSalenDeMemoria() {
+        DetalleCarrito detalle = carritoMemoriaService.agregarItem(usuarioId, perfumes.get(0).getId(), 2);
+        assertThrows(IllegalArgumentException.class, () -> carritoMemoriaService.actualizarCantidadItem(detalle.getId(), 0));
+
+        // Con cambios sin escribir se queda aunque esté inactivo
+        carritoMemoriaService.descartarInactivos(System.currentTimeMillis() + 1);
+        assertEquals(1, carritoMemoriaService.getCarritosEnMemoria());
+
+        carritoMemoriaService.persistirPendientes();
+        carritoMemoriaService.descartarInactivos(System.currentTimeMillis() + 1);
+        assertEquals(0, carritoMemoriaService.getCarritosEnMemoria());
+
+        // Al volver a usarlo se carga de la base de datos
+        Carrito recargado = carritoMemoriaService.getCarritoActivo(usuarioId);
+        assertEquals(1, recargado.getDetalles().size());
+        assertEquals(2, recargado.getDetalles().get(0).getCantidad());
+        assertEquals(1, carritoMemoriaService.getCarritosEnMemoria());
+    }
+
+    @Test
+    void unCarritoAbandonadoMientrasEstaEnMemoriaNoSeEscribeYSeDescarta() {
+        Long carritoId = carritoMemoriaService.getCarritoActivo(usuarioId).getId();
+        carritoMemoriaService.agregarItem(usuarioId, perfumes.get(0).getId(), 1);
+        carritoMemoriaService.persistirPendientes();
+        carritoMemoriaService.agregarItem(usuarioId, perfumes.get(1).getId(), 1);
+
+        // La limpieza lo abandona entre dos escrituras
+        jdbcTemplate.update("UPDATE carritos SET estado = 'ABANDONADO' WHERE id = ?", carritoId);
+        carritoMemoriaService.persistirPendientes();
+
+        assertEquals(1, detalleCarritoRepository.findByCarritoId(carritoId).size());
+        assertEquals(0, carritoMemoriaService.getCarritosEnMemoria());
+        Carrito nuevo = carritoMemoriaService.getCarritoActivo(usuarioId);
+        assertTrue(nuevo.getId() > carritoId);
+        assertTrue(nuevo.getDetalles().isEmpty());
+    }
+
+    @Test
+    void checkoutEscribeElCarritoAntesDeFacturar() {
+        carritoMemoriaService.agregarItem(usuarioId, perfumes.get(0).getId(), 1);
+        carritoMemoriaService.agregarItem(usuarioId, perfumes.get(1).getId(), 3);
+        Carrito antes = carritoMemoriaService.getCarritoActivo(usuarioId);
+
+        Factura factura = carritoMemoriaService.checkout(usuarioId, "Calle Mayor 1", "TARJETA");
+
+        assertEquals(2, factura.getDetalles().size());
+        assertEquals(perfumes.get(0).getPrecio() + 3 * perfumes.get(1).getPrecio(), factura.getTotal(), 0.001);
+        Carrito despues = carritoMemoriaService.getCarritoActivo(usuarioId);
+        assertTrue(despues.getId() > antes.getId());
+        assertTrue(despues.getDetalles().isEmpty());
+    }
+}
@@ -0,0 +1,348 @@
+package com.example.proyectofinal.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.proyectofinal.dto.OperacionCarritoDTO;
+import com.example.proyectofinal.dto.ResumenCarritoDTO;
+import com.example.proyectofinal.model.Carrito;
+import com.example.proyectofinal.model.DetalleCarrito;
+import com.example.proyectofinal.model.Factura;
+import com.example.proyectofinal.model.Perfume;
+import com.example.proyectofinal.model.Usuario;
+import com.example.proyectofinal.repository.CarritoRepository;
+import com.example.proyectofinal.repository.PerfumeRepository;
+import com.example.proyectofinal.repository.UsuarioRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+@SpringBootTest(properties = {
+    // Base de datos propia para no compartir los datos iniciales con otros contextos de prueba
+    "spring.datasource.url=jdbc:h2:mem:carritoservicetest",
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    // Sin despacho en segundo plano, que sumaría sus consultas a las estadísticas medidas
+    "bandeja-salida.enabled=false"
+})
+class CarritoServiceTest {
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private PerfumeRepository perfumeRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private CarritoRepository carritoRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+    private Long usuarioId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        usuarioId = usuarioRepository.findByCorreo("usuario@perfumes.com").orElseThrow().getId();
+        // Cada prueba empieza con el carrito vacío
+        carritoService.getCarritoActivo(usuarioId).getDetalles()
+                .forEach(detalle -> carritoService.eliminarItem(usuarioId, detalle.getId()));
+    }
+
+    @Test
+    void checkoutInsertaLasLineasEnUnSoloLote() {
+        llenarCarrito(10);
+        statistics.clear();
+
+        carritoService.checkout(usuarioId, "Calle Mayor 1", "TARJETA");
+
+        // Sin lotes harían falta al menos diez INSERT solo para las líneas de la factura
+        assertTrue(statistics.getPrepareStatementCount() < 10,
+                "sentencias preparadas: " + statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void checkoutCopiaLasLineasYCreaUnCarritoNuevo() {
+        llenarCarrito(3);
+        Long carritoId = carritoService.getCarritoActivo(usuarioId).getId();
+
+        Factura factura = carritoService.checkout(usuarioId, "Calle Mayor 1", "TARJETA");
+
+        assertEquals(3, factura.getDetalles().size());
+        assertTrue(factura.getDetalles().stream().allMatch(detalle -> detalle.getId() != null));
+        assertTrue(carritoService.getCarritoActivo(usuarioId).getId() > carritoId);
+    }
+
+    @Test
+    void checkoutLeeElCarritoYSusPerfumesEnUnaSolaConsulta() {
+        llenarCarrito(5);
+        statistics.clear();
+
+        Factura factura = carritoService.checkout(usuarioId, "Calle Mayor 1", "TARJETA");
+
+        assertEquals(1, statistics.getQueryExecutionCount());
+        assertEquals(0, statistics.getEntityFetchCount());
+        assertTrue(factura.getDetalles().stream().allMatch(detalle -> detalle.getNombreProducto() != null));
+        assertThrows(IllegalStateException.class,
+                () -> carritoService.checkout(usuarioId, "Calle Mayor 1", "TARJETA"));
+    }
+
+    @Test
+    void getCarritoActivoCreaUnSoloCarritoConPeticionesConcurrentes() throws Exception {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Concurrente");
+        usuario.setCorreo("concurrente@perfumes.com");
+        usuario.setContrasena("-");
+        Long nuevoUsuarioId = usuarioRepository.save(usuario).getId();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Long>> tareas = Collections.nCopies(8, () -> carritoService.getCarritoActivo(nuevoUsuarioId).getId());
+            Set<Long> ids = new HashSet<>();
+            for (Future<Long> resultado : executor.invokeAll(tareas)) {
+                ids.add(resultado.get());
+            }
+            assertEquals(1, ids.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void laBaseDeDatosRechazaUnSegundoCarritoActivo() {
+        Carrito activo = carritoService.getCarritoActivo(usuarioId);
+
+        Carrito duplicado = new Carrito();
+        duplicado.setUsuario(activo.getUsuario());
+        duplicado.setEstado("ACTIVO");
+
+        assertThrows(DataIntegrityViolationException.class, () -> carritoRepository.saveAndFlush(duplicado));
+    }
+
+    @Test
+    void getCarritoActivoCargaCarritoYLineasEnUnaConsulta() {
+        llenarCarrito(3);
+        statistics.clear();
+
+        Carrito carrito = carritoService.getCarritoActivo(usuarioId);
+
+        assertEquals(3, carrito.getDetalles().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void agregarElMismoPerfumeSumaCantidadEnUnaSolaLinea() {
+        List<Perfume> perfumes = perfumeRepository.findAll();
+        Long perfumeId = perfumes.get(0).getId();
+        carritoService.agregarItem(usuarioId, perfumeId, 2);
+
+        Map<Long, Integer> lote = new LinkedHashMap<>();
+        lote.put(perfumes.get(1).getId(), 1);
+        lote.put(perfumeId, 3);
+        List<DetalleCarrito> lineas = carritoService.agregarItems(usuarioId, lote);
+
+        assertEquals(5, lineas.get(1).getCantidad());
+        assertEquals(perfumes.get(0).getPrecio() * 5, lineas.get(1).getSubtotal(), 0.001);
+        assertEquals(2, carritoService.getCarritoActivo(usuarioId).getDetalles().size());
+    }
+
+    @Test
+    void agregarSinPerfumeOCantidadSeRechazaComoArgumentoInvalido() {
+        Long perfumeId = perfumeRepository.findAll().get(0).getId();
+
+        assertThrows(IllegalArgumentException.class, () -> carritoService.agregarItem(usuarioId, perfumeId, null));
+        assertThrows(IllegalArgumentException.class, () -> carritoService.agregarItem(usuarioId, null, 1));
+        assertThrows(IllegalArgumentException.class, () -> carritoService.agregarItem(usuarioId, perfumeId, 0));
+        assertTrue(carritoService.getCarritoActivo(usuarioId).getDetalles().isEmpty());
+    }
+
+    @Test
+    void agregarConcurrenteDelMismoPerfumeNoPierdeIncrementos() throws Exception {
+        Long perfumeId = perfumeRepository.findAll().get(0).getId();
+        carritoService.getCarritoActivo(usuarioId);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<DetalleCarrito>> tareas = Collections.nCopies(8, () -> carritoService.agregarItem(usuarioId, perfumeId, 1));
+            for (Future<DetalleCarrito> resultado : executor.invokeAll(tareas)) {
+                resultado.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<DetalleCarrito> detalles = carritoService.getCarritoActivo(usuarioId).getDetalles();
+        assertEquals(1, detalles.size());
+        assertEquals(8, detalles.get(0).getCantidad());
+    }
+
+    @Test
+    void agregarConcurrenteSinCarritoCreaUnoSoloYNoPierdeIncrementos() throws Exception {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Sin carrito");
+        usuario.setCorreo("sincarrito@perfumes.com");
+        usuario.setContrasena("-");
+        Long nuevoUsuarioId = usuarioRepository.save(usuario).getId();
+        Long perfumeId = perfumeRepository.findAll().get(0).getId();
+
+        // El carrito se crea dentro de la transacción de cada petición; las que pierden se repiten
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<DetalleCarrito>> tareas = Collections.nCopies(8, () -> carritoService.agregarItem(nuevoUsuarioId, perfumeId, 1));
+            for (Future<DetalleCarrito> resultado : executor.invokeAll(tareas)) {
+                resultado.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        ResumenCarritoDTO resumen = carritoService.getResumen(nuevoUsuarioId);
+        assertEquals(8, resumen.getCantidadArticulos());
+        assertEquals(1, carritoService.getCarritoActivo(nuevoUsuarioId).getDetalles().size());
+    }
+
+    @Test
+    void aplicarOperacionesCambiaElCarritoEnUnaTransaccion() {
+        List<Perfume> perfumes = perfumeRepository.findAll();
+        DetalleCarrito primera = carritoService.agregarItem(usuarioId, perfumes.get(0).getId(), 1);
+        DetalleCarrito segunda = carritoService.agregarItem(usuarioId, perfumes.get(1).getId(), 1);
+
+        Carrito carrito = carritoService.aplicarOperaciones(usuarioId, List.of(
+                new OperacionCarritoDTO(OperacionCarritoDTO.Tipo.AGREGAR, perfumes.get(2).getId(), null, 2),
+                new OperacionCarritoDTO(OperacionCarritoDTO.Tipo.AGREGAR, perfumes.get(0).getId(), null, 1),
+                new OperacionCarritoDTO(OperacionCarritoDTO.Tipo.ACTUALIZAR, null, segunda.getId(), 4),
+                new OperacionCarritoDTO(OperacionCarritoDTO.Tipo.ELIMINAR, null, primera.getId(), null)));
+
+        Map<Long, Integer> cantidades = new HashMap<>();
+        carrito.getDetalles().forEach(detalle -> cantidades.put(detalle.getPerfume().getId(), detalle.getCantidad()));
+        assertEquals(Map.of(perfumes.get(1).getId(), 4, perfumes.get(2).getId(), 2), cantidades);
+        assertEquals(2, carritoService.getCarritoActivo(usuarioId).getDetalles().size());
+
+        // Una operación inválida deshace las anteriores del mismo lote
+        assertThrows(RuntimeException.class, () -> carritoService.aplicarOperaciones(usuarioId, List.of(
+                new OperacionCarritoDTO(OperacionCarritoDTO.Tipo.AGREGAR, perfumes.get(3).getId(), null, 1),
+                new OperacionCarritoDTO(OperacionCarritoDTO.Tipo.ACTUALIZAR, null, -1L, 1))));
+        assertEquals(2, carritoService.getCarritoActivo(usuarioId).getDetalles().size());
+        assertThrows(RuntimeException.class, () -> carritoService.aplicarOperaciones(usuarioId, List.of(
+                new OperacionCarritoDTO(OperacionCarritoDTO.Tipo.AGREGAR, perfumes.get(3).getId(), null, 1),
+                new OperacionCarritoDTO(OperacionCarritoDTO.Tipo.ELIMINAR, null, primera.getId(), null))));
+        assertEquals(2, carritoService.getCarritoActivo(usuarioId).getDetalles().size());
+    }
+
+    @Test
+    void losTotalesDelCarritoSeMantienenConCadaCambio() {
+        List<Perfume> perfumes = perfumeRepository.findAll();
+        long precio0 = CarritoService.centimos(perfumes.get(0).getPrecio());
+        long precio1 = CarritoService.centimos(perfumes.get(1).getPrecio());
+
+        DetalleCarrito primera = carritoService.agregarItem(usuarioId, perfumes.get(0).getId(), 2);
+        carritoService.agregarItems(usuarioId, Map.of(perfumes.get(1).getId(), 3, perfumes.get(0).getId(), 1));
+        carritoService.actualizarCantidadItem(primera.getId(), 5);
+        assertEquals(new ResumenCarritoDTO(primera.getCarrito().getId(), 8, 5 * precio0 + 3 * precio1),
+                carritoService.getResumen(usuarioId));
+
+        carritoService.eliminarItem(usuarioId, primera.getId());
+        statistics.clear();
+        assertEquals(new ResumenCarritoDTO(primera.getCarrito().getId(), 3, 3 * precio1), carritoService.getResumen(usuarioId));
+        // El resumen sale de la fila del carrito, sin cargar líneas
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+
+        Factura factura = carritoService.checkout(usuarioId, "Calle Mayor 1", "TARJETA");
+        assertEquals(3 * precio1 / 100.0, factura.getTotal(), 0.001);
+
+        // Un cambio que llega tarde no suma al carrito ya comprado
+        Long compradoId = primera.getCarrito().getId();
+        Integer sumados = new TransactionTemplate(transactionManager).execute(estado -> carritoRepository.sumarTotales(compradoId, 1, precio1));
+        assertEquals(0, sumados);
+        assertEquals(3 * precio1, carritoRepository.findById(compradoId).orElseThrow().getTotalCentimos().longValue());
+    }
+
+    @Test
+    void actualizarCantidadRechazaCantidadesNoPositivasYCarritosCerrados() {
+        Perfume perfume = perfumeRepository.findAll().get(0);
+        DetalleCarrito detalle = carritoService.agregarItem(usuarioId, perfume.getId(), 2);
+
+        assertThrows(IllegalArgumentException.class, () -> carritoService.actualizarCantidadItem(detalle.getId(), 0));
+        assertThrows(IllegalArgumentException.class, () -> carritoService.actualizarCantidadItem(detalle.getId(), -3));
+        assertThrows(IllegalArgumentException.class, () -> carritoService.actualizarCantidadItem(detalle.getId(), null));
+        assertEquals(2, carritoService.getResumen(usuarioId).getCantidadArticulos());
+
+        Long compradoId = detalle.getCarrito().getId();
+        carritoService.checkout(usuarioId, "Calle Mayor 1", "TARJETA");
+        assertThrows(IllegalStateException.class, () -> carritoService.actualizarCantidadItem(detalle.getId(), 5));
+        assertEquals(2, carritoRepository.findById(compradoId).orElseThrow().getCantidadArticulos());
+    }
+
+    @Test
+    void cambiosConcurrentesDelCarritoSeReintentanSinDescuadrarLosTotales() throws Exception {
+        llenarCarrito(5);
+        List<DetalleCarrito> detalles = carritoService.getCarritoActivo(usuarioId).getDetalles();
+        DetalleCarrito compartida = detalles.get(0);
+
+        // Varias pestañas cambian a la vez la misma línea y quitan otras del mismo carrito
+        List<Callable<Object>> tareas = new ArrayList<>();
+        for (int cantidad = 2; cantidad <= 5; cantidad++) {
+            int nuevaCantidad = cantidad;
+            tareas.add(() -> carritoService.actualizarCantidadItem(compartida.getId(), nuevaCantidad));
+        }
+        for (DetalleCarrito detalle : detalles.subList(1, 5)) {
+            tareas.add(() -> {
+                carritoService.eliminarItem(usuarioId, detalle.getId());
+                return null;
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(tareas.size());
+        try {
+            for (Future<Object> resultado : executor.invokeAll(tareas)) {
+                resultado.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Carrito carrito = carritoService.getCarritoActivo(usuarioId);
+        assertEquals(1, carrito.getDetalles().size());
+        DetalleCarrito restante = carrito.getDetalles().get(0);
+        assertEquals(new ResumenCarritoDTO(carrito.getId(), restante.getCantidad(), CarritoService.importeCentimos(restante)),
+                carritoService.getResumen(usuarioId));
+        assertTrue(carrito.getVersion() > 0);
+    }
+
+    private void llenarCarrito(int lineas) {
+        List<Perfume> perfumes = perfumeRepository.findAll();
+        for (int i = 0; i < lineas; i++) {
+            carritoService.agregarItem(usuarioId, perfumes.get(i).getId(), 1);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.proyectofinal.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.example.proyectofinal.config.CacheConfig;
+import com.example.proyectofinal.dto.CategoriaDTO;
+import com.example.proyectofinal.dto.NotaOlfativaDTO;
+import com.example.proyectofinal.model.Categoria;
+import com.example.proyectofinal.model.NotaOlfativa;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:catalogocachetest",
+    "bandeja-salida.enabled=false"
+})
+class CatalogoCacheServiceTest {
+
+    @Autowired
+    private CatalogoCacheService catalogoCacheService;
+
+    @Autowired
+    private CategoriaService categoriaService;
+
+    @Autowired
+    private NotaOlfativaService notaOlfativaService;
+
+    @BeforeEach
+    void setUp() {
+        catalogoCacheService.invalidarTodo();
+    }
+
+    @Test
+    void cadaCambioDeCategoriaInvalidaSuListado() {
+        long aciertos = aciertos(CacheConfig.CATEGORIAS);
+        categoriaService.findAllDTO();
+        categoriaService.findAllDTO();
+        assertEquals(aciertos + 1, aciertos(CacheConfig.CATEGORIAS));
+
+        Categoria nueva = new Categoria();
+        nueva.setNombre("Acuáticos");
+        Long id = categoriaService.save(nueva).getId();
+        assertTrue(nombresCategorias().contains("Acuáticos"));
+
+        Categoria renombrada = new Categoria();
+        renombrada.setNombre("Marinos");
+        categoriaService.update(id, renombrada);
+        assertTrue(nombresCategorias().contains("Marinos"));
+        assertFalse(nombresCategorias().contains("Acuáticos"));
+
+        categoriaService.deleteById(id);
+        assertFalse(nombresCategorias().contains("Marinos"));
+    }
+
+    @Test
+    void cadaCambioDeNotaInvalidaSuListado() {
+        notaOlfativaService.findAllDTO();
+
+        NotaOlfativa nueva = new NotaOlfativa();
+        nueva.setNombre("Ámbar");
+        nueva.setDescripcion("Cálida");
+        Long id = notaOlfativaService.save(nueva).getId();
+        assertTrue(notaOlfativaService.findAllDTO().contains(new NotaOlfativaDTO(id, "Ámbar", "Cálida")));
+
+        NotaOlfativa cambiada = new NotaOlfativa();
+        cambiada.setNombre("Ámbar gris");
+        cambiada.setDescripcion("Marina");
+        notaOlfativaService.update(id, cambiada);
+        assertTrue(notaOlfativaService.findAllDTO().contains(new NotaOlfativaDTO(id, "Ámbar gris", "Marina")));
+
+        notaOlfativaService.deleteById(id);
+        assertTrue(notaOlfativaService.findAllDTO().stream().noneMatch(nota -> nota.getId().equals(id)));
+    }
+
+    private List<String> nombresCategorias() {
+        return categoriaService.findAllDTO().stream().map(CategoriaDTO::getNombre).collect(Collectors.toList());
+    }
+
+    private long aciertos(String cache) {
+        return (long) catalogoCacheService.getEstadisticas().get(cache).get("hits");
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.proyectofinal.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.proyectofinal.model.Perfume;
+import com.example.proyectofinal.model.Usuario;
+import com.example.proyectofinal.repository.PerfumeRepository;
+import com.example.proyectofinal.repository.UsuarioRepository;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:documentofacturatest",
+    "upload.dir=target/documentos-test",
+    "bandeja-salida.enabled=false"
+})
+class DocumentoFacturaServiceTest {
+
+    @Autowired
+    private DocumentoFacturaService documentoFacturaService;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private PerfumeRepository perfumeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void elDocumentoSeGeneraUnaVezYSeRegeneraSiCambiaLaFactura() throws Exception {
+        Perfume perfume = perfumeRepository.findAll().get(0);
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Ana <García> & Cía");
+        usuario.setCorreo("documento@perfumes.com");
+        usuario.setContrasena("-");
+        Long usuarioId = usuarioRepository.save(usuario).getId();
+        carritoService.agregarItem(usuarioId, perfume.getId(), 2);
+        Long facturaId = carritoService.checkout(usuarioId, "Calle Mayor 1", "TARJETA").getId();
+
+        DocumentoFacturaService.Documento documento = documentoFacturaService.obtener(facturaId).orElseThrow();
+        String html = Files.readString(documento.fichero(), StandardCharsets.UTF_8);
+        assertEquals(Files.size(documento.fichero()), documento.tamano());
+        assertTrue(html.contains("Ana &lt;García&gt; &amp; Cía"));
+        assertFalse(html.contains("<García>"));
+        assertTrue(html.contains("Calle Mayor 1"));
+
+        // Sin cambios en la factura se sirve el mismo fichero, sin volver a generarlo
+        long generados = (long) documentoFacturaService.getEstadisticas().get("generados");
+        DocumentoFacturaService.Documento repetido = documentoFacturaService.obtener(facturaId).orElseThrow();
+        assertEquals(documento, repetido);
+        assertEquals(generados, documentoFacturaService.getEstadisticas().get("generados"));
+
+        jdbcTemplate.update("UPDATE facturas SET direccion_envio = ? WHERE id = ?", "Calle Menor 2", facturaId);
+        DocumentoFacturaService.Documento cambiado = documentoFacturaService.obtener(facturaId).orElseThrow();
+        assertNotEquals(documento.huella(), cambiado.huella());
+        assertTrue(Files.readString(cambiado.fichero(), StandardCharsets.UTF_8).contains("Calle Menor 2"));
+        assertEquals(generados + 1, documentoFacturaService.getEstadisticas().get("generados"));
+
+        assertTrue(documentoFacturaService.obtener(-1L).isEmpty());
+    }
+}
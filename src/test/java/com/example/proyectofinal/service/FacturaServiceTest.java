@@ -0,0 +1,134 @@
+package com.example.proyectofinal.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.proyectofinal.dto.FacturaDTO;
+import com.example.proyectofinal.model.Usuario;
+import com.example.proyectofinal.repository.PerfumeRepository;
+import com.example.proyectofinal.repository.UsuarioRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:facturaservicetest",
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    // Sin despacho en segundo plano, que sumaría sus consultas a las estadísticas medidas
+    "bandeja-salida.enabled=false"
+})
+class FacturaServiceTest {
+
+    @Autowired
+    private FacturaService facturaService;
+
+    @Autowired
+    private ExportacionFacturasService exportacionFacturasService;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private PerfumeRepository perfumeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void paginaLasFacturasConCabecerasYLineasEnDosConsultas() {
+        List<Long> perfumeIds = perfumeRepository.findAll().stream().map(perfume -> perfume.getId()).toList();
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Facturas");
+        usuario.setCorreo("facturas@perfumes.com");
+        usuario.setContrasena("-");
+        Long usuarioId = usuarioRepository.save(usuario).getId();
+        List<Long> facturaIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            carritoService.agregarItem(usuarioId, perfumeIds.get(0), 1);
+            carritoService.agregarItem(usuarioId, perfumeIds.get(1), 2);
+            facturaIds.add(carritoService.checkout(usuarioId, "Calle Mayor 1", "TARJETA").getId());
+        }
+        // La más antigua se emitió hace diez días
+        jdbcTemplate.update("UPDATE facturas SET fecha_emision = DATEADD('DAY', -10, fecha_emision) WHERE id = ?", facturaIds.get(0));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        List<FacturaDTO> primera = facturaService.findPaginaDTO(null, 3, usuarioId, null, null);
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(List.of(facturaIds.get(4), facturaIds.get(3), facturaIds.get(2)), primera.stream().map(FacturaDTO::getId).toList());
+        assertTrue(primera.stream().allMatch(factura -> factura.getDetalles().size() == 2 && factura.getUsuarioId().equals(usuarioId)));
+
+        List<FacturaDTO> segunda = facturaService.findPaginaDTO(primera.get(2).getId(), 3, usuarioId, null, null);
+        assertEquals(List.of(facturaIds.get(1), facturaIds.get(0)), segunda.stream().map(FacturaDTO::getId).toList());
+
+        LocalDate hoy = LocalDate.now();
+        assertEquals(4, facturaService.findPaginaDTO(null, 10, usuarioId, hoy, hoy).size());
+        assertEquals(List.of(facturaIds.get(0)), facturaService.findPaginaDTO(null, 10, usuarioId, null, hoy.minusDays(5))
+                .stream().map(FacturaDTO::getId).toList());
+        assertEquals(List.of(facturaIds.get(4), facturaIds.get(3)), facturaService.findPaginaDTO(facturaIds.get(4) + 1, 2, usuarioId, hoy, null)
+                .stream().map(FacturaDTO::getId).toList());
+
+        // Sin usuario: todas las facturas, o las del rango de fechas
+        assertEquals(List.of(facturaIds.get(4), facturaIds.get(3)), facturaService.findPaginaDTO(facturaIds.get(4) + 1, 2, null, null, null)
+                .stream().map(FacturaDTO::getId).toList());
+        assertTrue(facturaService.findPaginaDTO(null, 100, null, null, hoy.minusDays(5)).stream()
+                .map(FacturaDTO::getId).toList().contains(facturaIds.get(0)));
+        assertTrue(facturaService.findPaginaDTO(null, 100, null, hoy, hoy).stream()
+                .noneMatch(factura -> factura.getId().equals(facturaIds.get(0))));
+    }
+
+    @Test
+    void exportaLasLineasDelRangoEnCsvYNdjson() throws Exception {
+        List<Long> perfumeIds = perfumeRepository.findAll().stream().map(perfume -> perfume.getId()).toList();
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Exportación");
+        usuario.setCorreo("exportacion@perfumes.com");
+        usuario.setContrasena("-");
+        Long usuarioId = usuarioRepository.save(usuario).getId();
+        carritoService.agregarItem(usuarioId, perfumeIds.get(0), 1);
+        carritoService.agregarItem(usuarioId, perfumeIds.get(1), 2);
+        Long facturaId = carritoService.checkout(usuarioId, "Calle \"Mayor\", 1", "TARJETA").getId();
+        LocalDate hoy = LocalDate.now();
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        exportacionFacturasService.exportar(hoy, hoy, ExportacionFacturasService.Formato.CSV, false, csv);
+        List<String> filas = csv.toString(StandardCharsets.UTF_8).lines()
+                .filter(fila -> fila.startsWith(facturaId + ",")).toList();
+        assertEquals(2, filas.size());
+        // La dirección lleva comas y comillas, así que va entrecomillada y con las comillas duplicadas
+        assertTrue(filas.get(0).contains(",\"Calle \"\"Mayor\"\", 1\","));
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        exportacionFacturasService.exportar(hoy, hoy, ExportacionFacturasService.Formato.NDJSON, true, ndjson);
+        String descomprimido;
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(ndjson.toByteArray()))) {
+            descomprimido = new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertEquals(2, descomprimido.lines().filter(fila -> fila.startsWith("{\"facturaId\":" + facturaId + ",")).count());
+
+        ByteArrayOutputStream vacio = new ByteArrayOutputStream();
+        assertEquals(0, exportacionFacturasService.exportar(hoy.minusDays(3), hoy.minusDays(2),
+                ExportacionFacturasService.Formato.CSV, false, vacio));
+    }
+}
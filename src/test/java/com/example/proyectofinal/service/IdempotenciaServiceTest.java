@@ -0,0 +1,159 @@
+package com.example.proyectofinal.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+class IdempotenciaServiceTest {
+
+    private final IdempotenciaService idempotenciaService = new IdempotenciaService(100, 60, 5000);
+    private final AtomicInteger ejecuciones = new AtomicInteger();
+
+    @Test
+    void unaRepeticionDevuelveLaPrimeraRespuestaSinEjecutar() {
+        Map<String, Object> peticion = Map.of("usuarioId", 1);
+
+        ResponseEntity<?> primera = idempotenciaService.ejecutar("checkout", "clave-1", peticion, this::factura);
+        ResponseEntity<?> repetida = idempotenciaService.ejecutar("checkout", "clave-1", peticion, this::factura);
+
+        assertEquals(1, ejecuciones.get());
+        assertEquals(primera.getBody(), repetida.getBody());
+        assertNull(primera.getHeaders().getFirst(IdempotenciaService.CABECERA_REPETIDA));
+        assertEquals("true", repetida.getHeaders().getFirst(IdempotenciaService.CABECERA_REPETIDA));
+
+        // Misma clave con otra petición, o sin clave
+        assertEquals(422, idempotenciaService.ejecutar("checkout", "clave-1", Map.of("usuarioId", 2), this::factura).getStatusCode().value());
+        idempotenciaService.ejecutar("checkout", null, peticion, this::factura);
+        assertEquals(2, ejecuciones.get());
+    }
+
+    @Test
+    void losErroresNoSeGuardan() {
+        idempotenciaService.ejecutar("checkout", "clave-2", "peticion", () -> {
+            ejecuciones.incrementAndGet();
+            return ResponseEntity.status(500).body("error");
+        });
+        ResponseEntity<?> reintento = idempotenciaService.ejecutar("checkout", "clave-2", "peticion", this::factura);
+
+        assertEquals(2, ejecuciones.get());
+        assertEquals(200, reintento.getStatusCode().value());
+    }
+
+    @Test
+    void lasRepeticionesConcurrentesEsperanALaPrimera() throws Exception {
+        CountDownLatch enCurso = new CountDownLatch(1);
+        CountDownLatch terminar = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<ResponseEntity<?>> primera = executor.submit(() -> idempotenciaService.ejecutar("checkout", "clave-3", "peticion", () -> {
+                enCurso.countDown();
+                try {
+                    terminar.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return factura();
+            }));
+            enCurso.await(5, TimeUnit.SECONDS);
+
+            List<Future<ResponseEntity<?>>> repetidas = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                repetidas.add(executor.submit(() -> idempotenciaService.ejecutar("checkout", "clave-3", "peticion", this::factura)));
+            }
+            terminar.countDown();
+
+            for (Future<ResponseEntity<?>> repetida : repetidas) {
+                assertEquals(primera.get().getBody(), repetida.get().getBody());
+            }
+            assertEquals(1, ejecuciones.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void siLaPrimeraFallaLasQueEsperabanLaReintentan() throws Exception {
+        CountDownLatch enCurso = new CountDownLatch(1);
+        CountDownLatch fallar = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<ResponseEntity<?>> primera = executor.submit(() -> idempotenciaService.ejecutar("checkout", "clave-4", "peticion", () -> {
+                enCurso.countDown();
+                try {
+                    fallar.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("El carrito está vacío");
+            }));
+            enCurso.await(5, TimeUnit.SECONDS);
+
+            List<Future<ResponseEntity<?>>> repetidas = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                repetidas.add(executor.submit(() -> idempotenciaService.ejecutar("checkout", "clave-4", "peticion", this::factura)));
+            }
+            Thread.sleep(100);
+            fallar.countDown();
+
+            ExecutionException error = assertThrows(ExecutionException.class, primera::get);
+            assertEquals(IllegalStateException.class, error.getCause().getClass());
+            // Una de las que esperaban ejecuta de nuevo y las demás repiten su respuesta
+            for (Future<ResponseEntity<?>> repetida : repetidas) {
+                assertEquals(200, repetida.get().getStatusCode().value());
+                assertEquals(Map.of("id", 1), repetida.get().getBody());
+            }
+            assertEquals(1, ejecuciones.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void unaRepeticionNoEsperaMasDeLaEsperaMaxima() throws Exception {
+        IdempotenciaService conEsperaCorta = new IdempotenciaService(100, 60, 50);
+        CountDownLatch enCurso = new CountDownLatch(1);
+        CountDownLatch terminar = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<ResponseEntity<?>> primera = executor.submit(() -> conEsperaCorta.ejecutar("checkout", "clave-5", "peticion", () -> {
+                enCurso.countDown();
+                try {
+                    terminar.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return factura();
+            }));
+            enCurso.await(5, TimeUnit.SECONDS);
+
+            ResponseEntity<?> repetida = conEsperaCorta.ejecutar("checkout", "clave-5", "peticion", this::factura);
+            assertEquals(409, repetida.getStatusCode().value());
+            assertEquals("1", repetida.getHeaders().getFirst("Retry-After"));
+
+            terminar.countDown();
+            assertEquals(200, primera.get().getStatusCode().value());
+            assertEquals(1, ejecuciones.get());
+        } finally {
+            terminar.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private ResponseEntity<?> factura() {
+        return ResponseEntity.ok(Map.of("id", ejecuciones.incrementAndGet()));
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.proyectofinal.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.proyectofinal.model.Carrito;
+import com.example.proyectofinal.model.Usuario;
+import com.example.proyectofinal.repository.PerfumeRepository;
+import com.example.proyectofinal.repository.UsuarioRepository;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:limpiezacarritostest",
+    // Lotes pequeños para que la limpieza necesite varios
+    "carrito.limpieza.lote=2"
+})
+class LimpiezaCarritosServiceTest {
+
+    @Autowired
+    private LimpiezaCarritosService limpiezaCarritosService;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private PerfumeRepository perfumeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void abandonaLosActivosInactivosYBorraLosCerradosAntiguos() {
+        Long perfumeId = perfumeRepository.findAll().get(0).getId();
+        List<Long> usuarios = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Usuario usuario = new Usuario();
+            usuario.setNombre("Limpieza " + i);
+            usuario.setCorreo("limpieza" + i + "@perfumes.com");
+            usuario.setContrasena("-");
+            Long usuarioId = usuarioRepository.save(usuario).getId();
+            carritoService.agregarItem(usuarioId, perfumeId, 1);
+            usuarios.add(usuarioId);
+        }
+        Long abandonadoId = carritoService.getCarritoActivo(usuarios.get(0)).getId();
+        carritoService.checkout(usuarios.get(3), "Calle Mayor 1", "TARJETA");
+
+        // Tres carritos activos sin cambios desde hace 40 días y uno procesado hace 100;
+        // el del último usuario se usó ahora
+        envejecer(usuarios.subList(0, 3), 40);
+        envejecer(usuarios.subList(3, 4), 100);
+
+        Map<String, Object> resultado = limpiezaCarritosService.ejecutar();
+
+        assertEquals(3, resultado.get("carritosAbandonados"));
+        assertEquals(1, resultado.get("carritosEliminados"));
+        assertEquals(1, resultado.get("lineasEliminadas"));
+        assertEquals("ABANDONADO", jdbcTemplate.queryForObject("SELECT estado FROM carritos WHERE id = ?", String.class, abandonadoId));
+
+        Carrito nuevo = carritoService.getCarritoActivo(usuarios.get(0));
+        assertTrue(nuevo.getId() > abandonadoId);
+        assertTrue(nuevo.getDetalles().isEmpty());
+        assertEquals(1, carritoService.getCarritoActivo(usuarios.get(4)).getDetalles().size());
+    }
+
+    private void envejecer(List<Long> usuarioIds, int dias) {
+        for (Long usuarioId : usuarioIds) {
+            jdbcTemplate.update("UPDATE carritos SET fecha_actualizacion = DATEADD('DAY', ?, LOCALTIMESTAMP) WHERE usuario_id = ?",
+                    -dias, usuarioId);
+        }
+    }
+}
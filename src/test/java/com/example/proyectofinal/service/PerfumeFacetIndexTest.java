@@ -0,0 +1,183 @@
+package com.example.proyectofinal.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.example.proyectofinal.dto.BusquedaFacetadaDTO;
+import com.example.proyectofinal.dto.BusquedaFacetadaDTO.FacetaDTO;
+import com.example.proyectofinal.dto.PerfumeDTO;
+import com.example.proyectofinal.event.CatalogoModificadoEvent;
+import com.example.proyectofinal.model.Categoria;
+import com.example.proyectofinal.model.NotaOlfativa;
+import com.example.proyectofinal.repository.CategoriaRepository;
+import com.example.proyectofinal.repository.NotaOlfativaRepository;
+import com.example.proyectofinal.repository.PerfumeRepository;
+
+@ExtendWith(MockitoExtension.class)
+class PerfumeFacetIndexTest {
+
+    private static final long FLORALES = 10L;
+    private static final long CITRICOS = 11L;
+    private static final long ROSA = 20L;
+    private static final long LIMON = 21L;
+    private static final long JAZMIN = 22L;
+
+    @Mock
+    private PerfumeService perfumeService;
+
+    @Mock
+    private PerfumeRepository perfumeRepository;
+
+    @Mock
+    private CategoriaRepository categoriaRepository;
+
+    @Mock
+    private NotaOlfativaRepository notaOlfativaRepository;
+
+    @InjectMocks
+    private PerfumeFacetIndex index;
+
+    private final Map<Long, PerfumeDTO> catalogo = new TreeMap<>();
+    private final Map<Long, List<Long>> categoriasPorPerfume = new TreeMap<>();
+    private final Map<Long, List<Long>> notasPorPerfume = new TreeMap<>();
+    private final List<Categoria> categorias = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        categorias.add(categoria(FLORALES, "Florales"));
+        categorias.add(categoria(CITRICOS, "Cítricos"));
+        agregar(1L, "Rosa del Desierto", 89.99, List.of(FLORALES), List.of(ROSA, LIMON));
+        agregar(2L, "Citrus Fresh", 79.99, List.of(CITRICOS), List.of(LIMON));
+        agregar(3L, "Jardín de Jazmín", 92.75, List.of(FLORALES), List.of(JAZMIN));
+        agregar(4L, "Limón y Jazmín", 60.00, List.of(CITRICOS, FLORALES), List.of(LIMON, JAZMIN));
+
+        when(categoriaRepository.findAll()).thenAnswer(inv -> categorias);
+        when(notaOlfativaRepository.findAll()).thenReturn(List.of(nota(ROSA, "Rosa"), nota(LIMON, "Limón"), nota(JAZMIN, "Jazmín")));
+        when(perfumeService.findAllIds()).thenAnswer(inv -> new ArrayList<>(catalogo.keySet()));
+        when(perfumeService.findDTOsByIds(anyCollection())).thenAnswer(inv -> {
+            Collection<Long> ids = inv.getArgument(0);
+            return ids.stream().filter(catalogo::containsKey).map(catalogo::get).collect(Collectors.toList());
+        });
+        when(perfumeRepository.findCategoriaIdsByPerfumeIds(anyCollection())).thenAnswer(inv -> pares(categoriasPorPerfume, inv.getArgument(0)));
+        when(perfumeRepository.findNotaIdsByPerfumeIds(anyCollection())).thenAnswer(inv -> pares(notasPorPerfume, inv.getArgument(0)));
+        index.reconstruir();
+    }
+
+    @Test
+    void combinaConOrDentroDeUnaFacetaYConAndEntreFacetas() {
+        assertEquals(List.of(1L, 2L, 4L), ids(index.buscar(null, List.of(ROSA, LIMON), null, null, 0, 10)));
+        assertEquals(List.of(1L, 4L), ids(index.buscar(List.of(FLORALES), List.of(LIMON), null, null, 0, 10)));
+        assertEquals(List.of(1L, 2L, 3L, 4L), ids(index.buscar(List.of(FLORALES, CITRICOS), null, null, null, 0, 10)));
+        assertEquals(List.of(), ids(index.buscar(List.of(CITRICOS), List.of(ROSA), null, null, 0, 10)));
+    }
+
+    @Test
+    void filtraPorPrecioConAmbosLimitesIncluidos() {
+        BusquedaFacetadaDTO resultado = index.buscar(null, null, 79.99, 89.99, 0, 10);
+        assertEquals(List.of(1L, 2L), ids(resultado));
+        assertEquals(79.99, resultado.getPrecioMin());
+        assertEquals(89.99, resultado.getPrecioMax());
+
+        assertEquals(List.of(2L, 4L), ids(index.buscar(null, null, null, 80.0, 0, 10)));
+        BusquedaFacetadaDTO vacio = index.buscar(null, null, 100.0, null, 0, 10);
+        assertEquals(0, vacio.getTotal());
+        assertNull(vacio.getPrecioMin());
+    }
+
+    @Test
+    void losRecuentosDeUnaFacetaIgnoranSuPropioFiltro() {
+        BusquedaFacetadaDTO resultado = index.buscar(List.of(CITRICOS), List.of(LIMON), null, null, 0, 10);
+
+        assertEquals(List.of(2L, 4L), ids(resultado));
+        // Categorías contadas sobre los perfumes con limón; notas, sobre los cítricos
+        assertEquals(Map.of("Florales", 2, "Cítricos", 2), recuentos(resultado.getCategorias()));
+        assertEquals(Map.of("Rosa", 0, "Limón", 2, "Jazmín", 1), recuentos(resultado.getNotas()));
+        assertEquals(List.of(FLORALES, CITRICOS), resultado.getCategorias().stream().map(FacetaDTO::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void paginaSobreElTotalDeResultados() {
+        BusquedaFacetadaDTO primera = index.buscar(null, null, null, null, 0, 3);
+        BusquedaFacetadaDTO segunda = index.buscar(null, null, null, null, 1, 3);
+
+        assertEquals(List.of(1L, 2L, 3L), ids(primera));
+        assertEquals(List.of(4L), ids(segunda));
+        assertEquals(4, segunda.getTotal());
+        assertEquals(List.of(), ids(index.buscar(null, null, null, null, 2, 3)));
+        // page * size no cabe en un int: la página está vacía, no vuelve a la primera
+        assertEquals(List.of(), ids(index.buscar(null, null, null, null, Integer.MAX_VALUE / 2, 100)));
+    }
+
+    @Test
+    void seActualizaConLosCambiosDelCatalogo() {
+        agregar(5L, "Rosa Cítrica", 70.0, List.of(CITRICOS), List.of(ROSA));
+        index.onCatalogoModificado(new CatalogoModificadoEvent(CatalogoModificadoEvent.Tipo.PERFUME, 5L));
+        assertEquals(List.of(1L, 5L), ids(index.buscar(null, List.of(ROSA), null, null, 0, 10)));
+
+        catalogo.remove(1L);
+        index.onCatalogoModificado(new CatalogoModificadoEvent(CatalogoModificadoEvent.Tipo.PERFUME, 1L));
+        assertEquals(List.of(5L), ids(index.buscar(null, List.of(ROSA), null, null, 0, 10)));
+        assertEquals(4, index.buscar(null, null, null, null, 0, 10).getTotal());
+
+        // Una categoría nueva reconstruye el índice entero
+        categorias.add(categoria(12L, "Orientales"));
+        categoriasPorPerfume.put(3L, List.of(FLORALES, 12L));
+        index.onCatalogoModificado(new CatalogoModificadoEvent(CatalogoModificadoEvent.Tipo.CATEGORIA, 12L));
+        BusquedaFacetadaDTO orientales = index.buscar(List.of(12L), null, null, null, 0, 10);
+        assertEquals(List.of(3L), ids(orientales));
+        assertTrue(orientales.getCategorias().stream().anyMatch(f -> f.getNombre().equals("Orientales")));
+    }
+
+    private void agregar(Long id, String nombre, double precio, List<Long> categoriaIds, List<Long> notaIds) {
+        catalogo.put(id, new PerfumeDTO(id, nombre, precio, null, null, List.of(), List.of()));
+        categoriasPorPerfume.put(id, categoriaIds);
+        notasPorPerfume.put(id, notaIds);
+    }
+
+    private static List<Object[]> pares(Map<Long, List<Long>> valores, Collection<Long> ids) {
+        List<Object[]> pares = new ArrayList<>();
+        for (Long id : ids) {
+            valores.getOrDefault(id, List.of()).forEach(valor -> pares.add(new Object[] {id, valor}));
+        }
+        return pares;
+    }
+
+    private static Categoria categoria(Long id, String nombre) {
+        Categoria categoria = new Categoria();
+        categoria.setId(id);
+        categoria.setNombre(nombre);
+        return categoria;
+    }
+
+    private static NotaOlfativa nota(Long id, String nombre) {
+        NotaOlfativa nota = new NotaOlfativa();
+        nota.setId(id);
+        nota.setNombre(nombre);
+        return nota;
+    }
+
+    private static Map<String, Integer> recuentos(List<FacetaDTO> facetas) {
+        return facetas.stream().collect(Collectors.toMap(FacetaDTO::getNombre, FacetaDTO::getCount));
+    }
+
+    private static List<Long> ids(BusquedaFacetadaDTO resultado) {
+        return resultado.getItems().stream().map(PerfumeDTO::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.proyectofinal.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.example.proyectofinal.dto.PerfumeDTO;
+import com.example.proyectofinal.event.CatalogoModificadoEvent;
+
+@ExtendWith(MockitoExtension.class)
+class PerfumeSearchIndexTest {
+
+    @Mock
+    private PerfumeService perfumeService;
+
+    @InjectMocks
+    private PerfumeSearchIndex index;
+
+    private final Map<Long, PerfumeDTO> catalogo = new TreeMap<>();
+
+    @BeforeEach
+    void setUp() {
+        agregar(new PerfumeDTO(1L, "Rosa del Desierto", 89.99, "Un perfume floral con notas de rosa y jazmín",
+                null, List.of("Florales"), List.of("Rosa", "Limón")));
+        agregar(new PerfumeDTO(2L, "Citrus Fresh", 79.99, "Un perfume cítrico refrescante",
+                null, List.of("Cítricos"), List.of("Limón")));
+        agregar(new PerfumeDTO(3L, "Jardín de Jazmín", 92.75, "Perfume floral con predominio de jazmín",
+                null, List.of("Florales"), List.of("Jazmín")));
+
+        when(perfumeService.findAllIds()).thenAnswer(inv -> new ArrayList<>(catalogo.keySet()));
+        when(perfumeService.findDTOsByIds(anyCollection())).thenAnswer(inv -> {
+            Collection<Long> ids = inv.getArgument(0);
+            return ids.stream().filter(catalogo::containsKey).map(catalogo::get).collect(Collectors.toList());
+        });
+        index.reconstruir();
+    }
+
+    @Test
+    void ignoraTildesYMayusculas() {
+        assertEquals(List.of(2L), ids(index.buscar("CITRICOS", 10)));
+        assertEquals(List.of(1L, 2L), ids(index.buscar("limon", 10)));
+    }
+
+    @Test
+    void buscaPorPrefijo() {
+        assertEquals(List.of(3L, 1L), ids(index.buscar("jazm", 10)));
+        assertEquals(List.of(2L), ids(index.buscar("cit fre", 10)));
+    }
+
+    @Test
+    void ordenaPorRelevancia() {
+        // Coincidir en el nombre pesa más que en la descripción
+        assertEquals(3L, index.buscar("jazmin", 10).get(0).getId());
+        assertTrue(index.buscar("rosa", 10).size() == 1);
+    }
+
+    @Test
+    void actualizaIncrementalmente() {
+        agregar(new PerfumeDTO(4L, "Limón Salvaje", 50.0, null, null, List.of(), List.of()));
+        index.onCatalogoModificado(new CatalogoModificadoEvent(CatalogoModificadoEvent.Tipo.PERFUME, 4L));
+        assertEquals(4L, index.buscar("limon", 10).get(0).getId());
+
+        catalogo.remove(4L);
+        index.onCatalogoModificado(new CatalogoModificadoEvent(CatalogoModificadoEvent.Tipo.PERFUME, 4L));
+        assertEquals(List.of(1L, 2L), ids(index.buscar("limon", 10)));
+        assertEquals(3, index.size());
+    }
+
+    private void agregar(PerfumeDTO perfume) {
+        catalogo.put(perfume.getId(), perfume);
+    }
+
+    private static List<Long> ids(List<PerfumeDTO> perfumes) {
+        return perfumes.stream().map(PerfumeDTO::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.proyectofinal.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.example.proyectofinal.dto.PerfumeDTO;
+
+import jakarta.persistence.EntityManagerFactory;
+
+@SpringBootTest(properties = {
+    // Base de datos propia para no compartir los datos iniciales con otros contextos de prueba
+    "spring.datasource.url=jdbc:h2:mem:perfumeservicetest",
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    // Sin despacho en segundo plano: sus consultas se contarían en las estadísticas
+    "bandeja-salida.enabled=false"
+})
+class PerfumeServiceTest {
+
+    @Autowired
+    private PerfumeService perfumeService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CatalogoCacheService catalogoCacheService;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        // Las consultas deben llegar a la base de datos para poder contarlas
+        catalogoCacheService.invalidarTodo();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void findAllDTOUsaNumeroFijoDeConsultas() {
+        List<PerfumeDTO> perfumes = perfumeService.findAllDTO();
+
+        assertTrue(perfumes.size() > 2);
+        // Una consulta para los perfumes, otra para categorías y otra para notas
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionFetchCount());
+        // La lista queda en la caché y la comparten todos: no se puede modificar
+        assertThrows(UnsupportedOperationException.class, () -> perfumes.remove(0));
+        assertEquals(perfumes.size(), perfumeService.findAllDTO().size());
+    }
+
+    @Test
+    void findAllDTOAgregaCategoriasYNotas() {
+        PerfumeDTO rosa = perfumeService.findAllDTO().stream()
+                .filter(p -> p.getNombre().equals("Rosa del Desierto"))
+                .findFirst()
+                .orElseThrow();
+
+        assertEquals(List.of("Florales"), rosa.getCategorias());
+        assertTrue(rosa.getNotas().containsAll(List.of("Rosa", "Limón")));
+    }
+
+    @Test
+    void findDTOByCategoriaUsaNumeroFijoDeConsultas() {
+        List<PerfumeDTO> florales = perfumeService.findDTOByCategoria(1L);
+
+        assertFalse(florales.isEmpty());
+        assertTrue(florales.stream().allMatch(p -> p.getCategorias().contains("Florales")));
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findPageDTORespetaElCursor() {
+        List<PerfumeDTO> primera = perfumeService.findPageDTO(null, 2);
+        List<PerfumeDTO> segunda = perfumeService.findPageDTO(primera.get(1).getId(), 2);
+
+        assertEquals(2, primera.size());
+        assertTrue(segunda.get(0).getId() > primera.get(1).getId());
+    }
+}
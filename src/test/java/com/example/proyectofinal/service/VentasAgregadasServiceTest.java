@@ -0,0 +1,81 @@
+package com.example.proyectofinal.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.example.proyectofinal.dto.VentasDiaDTO;
+import com.example.proyectofinal.dto.VentasPerfumeDTO;
+import com.example.proyectofinal.dto.VentasUsuarioDTO;
+import com.example.proyectofinal.model.Perfume;
+import com.example.proyectofinal.model.Usuario;
+import com.example.proyectofinal.repository.PerfumeRepository;
+import com.example.proyectofinal.repository.UsuarioRepository;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:ventasagregadastest")
+class VentasAgregadasServiceTest {
+
+    @Autowired
+    private VentasAgregadasService ventasAgregadasService;
+
+    @Autowired
+    private BandejaSalidaService bandejaSalidaService;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private PerfumeRepository perfumeRepository;
+
+    @Test
+    void cadaFacturaSeSumaUnaVezYCoincideConLaReconstruccion() {
+        List<Perfume> perfumes = perfumeRepository.findAll();
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Ventas");
+        usuario.setCorreo("ventas@perfumes.com");
+        usuario.setContrasena("-");
+        Long usuarioId = usuarioRepository.save(usuario).getId();
+
+        carritoService.agregarItem(usuarioId, perfumes.get(0).getId(), 2);
+        carritoService.agregarItem(usuarioId, perfumes.get(1).getId(), 1);
+        carritoService.checkout(usuarioId, "Calle Mayor 1", "TARJETA");
+        carritoService.agregarItem(usuarioId, perfumes.get(0).getId(), 1);
+        carritoService.checkout(usuarioId, "Calle Mayor 1", "TARJETA");
+        // Un checkout que falla no deja rastro en los agregados
+        assertThrows(IllegalStateException.class, () -> carritoService.checkout(usuarioId, "Calle Mayor 1", "TARJETA"));
+        bandejaSalidaService.despachar();
+
+        long importe = 3 * CarritoService.centimos(perfumes.get(0).getPrecio()) + CarritoService.centimos(perfumes.get(1).getPrecio());
+        VentasUsuarioDTO ventasUsuario = ventasAgregadasService.findVentasUsuario(usuarioId).orElseThrow();
+        assertEquals(2, ventasUsuario.getFacturas());
+        assertEquals(4, ventasUsuario.getUnidades());
+        assertEquals(importe, ventasUsuario.getImporteCentimos());
+
+        LocalDate hoy = LocalDate.now();
+        List<VentasDiaDTO> semana = ventasAgregadasService.findVentasDiarias(hoy.minusDays(6), hoy);
+        assertEquals(7, semana.size());
+        assertEquals(0, semana.get(0).getFacturas());
+        VentasPerfumeDTO masVendido = ventasAgregadasService.findPerfumesMasVendidos(hoy, hoy, "unidades", 1).get(0);
+        assertEquals(perfumes.get(0).getId(), masVendido.getPerfumeId());
+        assertEquals(3, masVendido.getUnidades());
+
+        VentasDiaDTO dia = semana.get(6);
+        List<VentasPerfumeDTO> ranking = ventasAgregadasService.findPerfumesMasVendidos(null, null, "importe", 100);
+        List<VentasUsuarioDTO> clientes = ventasAgregadasService.findMejoresClientes("importe", 100);
+        ventasAgregadasService.reconstruir();
+        // Las tareas ya procesadas no vuelven a sumarse
+        assertEquals(0, bandejaSalidaService.despachar());
+        assertEquals(dia, ventasAgregadasService.findVentasDiarias(hoy, hoy).get(0));
+        assertEquals(ranking, ventasAgregadasService.findPerfumesMasVendidos(null, null, "importe", 100));
+        assertEquals(clientes, ventasAgregadasService.findMejoresClientes("importe", 100));
+    }
+}